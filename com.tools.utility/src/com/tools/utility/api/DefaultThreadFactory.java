@@ -15,33 +15,127 @@
  */
 package com.tools.utility.api;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * 默认线程创建工厂
+ * 默认线程创建工厂<br>
+ * 
+ * 可以创建守护线程，或者在运行环境支持时（JDK21及以上）创建虚拟线程，不支持时创建守护线程。
  *
  * @author wuyuhou
  *
  */
 public class DefaultThreadFactory implements ThreadFactory {
 	
+	//虚拟线程相关方法，运行环境不支持时为null
+	private static Method ofVirtualMethod = null;
+	
+	private static Method builderNameMethod = null;
+	
+	private static Method builderUnstartedMethod = null;
+	
+	private static Method newThreadPerTaskExecutorMethod = null;
+	
+	static {
+		try {
+			Class builderClass = Class.forName("java.lang.Thread$Builder");
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Method name = builderClass.getMethod("name", String.class);
+			Method unstarted = builderClass.getMethod("unstarted", Runnable.class);
+			Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			//预览特性没有打开时创建会失败
+			ofVirtual.invoke(null);
+			ofVirtualMethod = ofVirtual;
+			builderNameMethod = name;
+			builderUnstartedMethod = unstarted;
+			newThreadPerTaskExecutorMethod = newThreadPerTaskExecutor;
+		} catch (Throwable ignore) {
+			
+		}
+	}
+	
 	private ThreadGroup group = null;
 
 	private AtomicInteger threadNumber = new AtomicInteger(1);
 
 	private String namePrefix = null;
+	
+	private boolean isDaemon = false;
+	
+	private boolean isVirtual = false;
 
 	public DefaultThreadFactory(String prefixPoolName) {
+		this(prefixPoolName, false, false);
+	}
+
+	/**
+	 * 构造方法
+	 * 
+	 * @param prefixPoolName 线程名称前缀
+	 * @param isDaemon 是否守护线程
+	 * @param isVirtual 是否虚拟线程，运行环境不支持时创建守护线程
+	 */
+	public DefaultThreadFactory(String prefixPoolName, boolean isDaemon, boolean isVirtual) {
 		SecurityManager s = System.getSecurityManager();
 		group = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
 		namePrefix = prefixPoolName + "-thread-";
+		this.isVirtual = isVirtual && isVirtualThreadSupported();
+		//虚拟线程总是守护线程
+		this.isDaemon = isDaemon || isVirtual;
+	}
+	
+	/**
+	 * 运行环境是否支持虚拟线程
+	 * 
+	 * @return 是否支持
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return ofVirtualMethod != null;
+	}
+	
+	/**
+	 * 创建每个任务一个虚拟线程的线程池，运行环境不支持虚拟线程时返回null
+	 * 
+	 * @param prefixPoolName 线程名称前缀
+	 * @return 线程池
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor(String prefixPoolName) {
+		if (!isVirtualThreadSupported()) {
+			return null;
+		}
+		try {
+			return (ExecutorService) newThreadPerTaskExecutorMethod.invoke(null, new DefaultThreadFactory(prefixPoolName, true, true));
+		} catch (Throwable ignore) {
+			return null;
+		}
+	}
+	
+	public boolean isDaemon() {
+		return isDaemon;
+	}
+	
+	public boolean isVirtual() {
+		return isVirtual;
 	}
 
 	public Thread newThread(Runnable r) {
-		Thread t = new Thread(group, r, namePrefix + threadNumber.getAndIncrement(), 0);
-		if (t.isDaemon()) {
-			t.setDaemon(false);
+		String name = namePrefix + threadNumber.getAndIncrement();
+		if (isVirtual) {
+			try {
+				Object builder = ofVirtualMethod.invoke(null);
+				builder = builderNameMethod.invoke(builder, name);
+				return (Thread) builderUnstartedMethod.invoke(builder, r);
+			} catch (Throwable ignore) {
+				//创建虚拟线程失败时创建守护线程
+			}
+		}
+		Thread t = new Thread(group, r, name, 0);
+		if (t.isDaemon() != isDaemon) {
+			t.setDaemon(isDaemon);
 		}
 
 		if (t.getPriority() != Thread.NORM_PRIORITY) {
@@ -17,8 +17,7 @@ package com.tools.utility.api;
 
 import java.util.Date;
 
-import com.tools.utility.spi.format.DateFormatter;
-import com.tools.utility.spi.format.NumberFormatter;
+import com.tools.utility.spi.format.FormatterCache;
 
 /**
  * 格式化工具类
@@ -94,8 +93,7 @@ public class FormatUtil {
 	 * @return 格式化后的字符串
 	 */
 	public static String formatDate(Date date, String pattern) {
-		DateFormatter formatter = new DateFormatter().setPattern(pattern);
-		return formatter.format(date);
+		return FormatterCache.getDateFormatter(pattern).format(date);
 	}
 	
 	/**
@@ -106,8 +104,7 @@ public class FormatUtil {
 	 * @return 反格式化后的日期
 	 */
 	public static Date unformatDate(String dateString, String pattern) {
-		DateFormatter formatter = new DateFormatter().setPattern(pattern);
-		return formatter.unformat(dateString);
+		return FormatterCache.getDateFormatter(pattern).unformat(dateString);
 	}
 	
 	/**
@@ -118,8 +115,7 @@ public class FormatUtil {
 	 * @return 格式化后的字符串
 	 */
 	public static String formatNumber(Number number, String pattern) {
-		NumberFormatter formatter = new NumberFormatter().setPattern(pattern);
-		return (String)formatter.format(number);
+		return (String)FormatterCache.getNumberFormatter(pattern).format(number);
 	}
 	
 	/**
@@ -130,7 +126,6 @@ public class FormatUtil {
 	 * @return 反格式化后的日期
 	 */
 	public static <D> D unformatNumber(String numberString, String pattern, Class<D> clazz) {
-		NumberFormatter formatter = new NumberFormatter().setPattern(pattern);
-		return (D)formatter.unformat(numberString, clazz);
+		return (D)FormatterCache.getNumberFormatter(pattern).unformat(numberString, clazz);
 	}
 }
\ No newline at end of file
@@ -15,22 +15,29 @@
  */
 package com.tools.utility.api;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.security.AccessController;
-import java.security.PrivilegedActionException;
-import java.security.PrivilegedExceptionAction;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import com.tools.utility.spi.format.DateFormatter;
-import com.tools.utility.spi.json.JSONArray;
+import com.tools.utility.spi.format.FormatterCache;
+import com.tools.utility.spi.json.JSONBeanCodec;
+import com.tools.utility.spi.json.JSONFormatter;
 import com.tools.utility.spi.json.JSONObject;
-import com.tools.utility.spi.json.JSONTokener;
+import com.tools.utility.spi.json.JSONReader;
+import com.tools.utility.spi.json.JSONRuntimeException;
+import com.tools.utility.spi.json.JSONWriter;
 
 
 /**
@@ -57,83 +64,138 @@ public class JsonUtil {
 			return ReflectUtil.cast(null, toClass);
 		}
 		
-		/*
-		 * json对象<pr>
-		 * 
-		 * 如果jsonString是以"{"开始，则返回JSONObject对象；<br/>
-		 * 如果jsonString是以"["或者"("开始，则返回JSONArray对象；<br/>
-		 * 上述之外，则为简单类型的字符串，直接返回相应值（Boolean, Double, Integer, Long, String；特别注意，如果是null或者空字符串，则返回JSONObject.NULL对象）；<br/>
-		 * 
-		 */
-		Object json = new JSONTokener(jsonString).nextValue();
-		
-		return (T)doToJavaObject(json, toClass, fieldTypeMap, "");
+		return doReadJavaObject(new JSONReader(new StringReader(jsonString)), toClass, null, fieldTypeMap, getRootPath(fieldTypeMap));
+	}
+	
+	/**
+	 * 从输入流中直接读取指定Java对象，边读边绑定，不需要先读成字符串，也不构建中间的JSONObject树
+	 * 
+	 * @param in 输入流，不能为空，读取后不关闭
+	 * @param toClass 指定对象的Java类型，不能为空
+	 * @return
+	 */
+	public static <T> T toJavaObject(InputStream in, Class<T> toClass) {
+		return toJavaObject(in, null, toClass, null);
+	}
+	
+	/**
+	 * 从输入流中直接读取指定Java对象，边读边绑定，不需要先读成字符串，也不构建中间的JSONObject树
+	 * 
+	 * @param in 输入流，不能为空，读取后不关闭
+	 * @param charset 字符集，为空时使用UTF-8
+	 * @param toClass 指定对象的Java类型，不能为空
+	 * @param fieldTypeMap 指定对象字段的Java类型(一般是接口类型的属性字段)，可以为空，以xpath方式设置属性名称，比如：/data/user/name
+	 * @return
+	 */
+	public static <T> T toJavaObject(InputStream in, Charset charset, Class<T> toClass, Map<String, Class> fieldTypeMap) {
+		if (toClass == null) {
+			throw new IllegalArgumentException("toClass is null!");
+		}
+		if (in == null) {
+			return ReflectUtil.cast(null, toClass);
+		}
+		return doReadJavaObject(new JSONReader(in, charset), toClass, null, fieldTypeMap, getRootPath(fieldTypeMap));
 	}
 	
+	//没有指定字段类型时不需要计算属性路径
+	private static String getRootPath(Map<String, Class> fieldTypeMap) {
+		return fieldTypeMap == null || fieldTypeMap.isEmpty() ? null : "";
+	}
+	
+	/*
+	 * 边读边绑定
+	 * 
+	 * 字符串返回String；不带引号的值返回Boolean, Double, Integer, Long, String（特别注意，如果是null或者空字符串，则返回JSONObject.NULL对象）后再转换为指定类型；
+	 * 对象绑定到JavaBean、Map、sdo；数组绑定到数组、集合；elementType是集合、Map的元素类型，为空时元素不转换
+	 */
 	@SuppressWarnings("unchecked")
-	private static <T> T doToJavaObject(Object json, Class<T> toClass, Map<String, Class> fieldTypeMap, String prefix) {
+	private static <T> T doReadJavaObject(JSONReader reader, Class<T> toClass, Class elementType, Map<String, Class> fieldTypeMap, String path) {
 		if (toClass == null || toClass.equals(Object.class)) {
-			return (T)json;
+			return (T)reader.readValue();
 		}
-		if (json instanceof JSONObject) {
-			if (toClass.isArray()) {
-				throw new IllegalArgumentException("toClass'" + toClass.getName() + "' is array!");
-			} else {
-				Object returnObj = ReflectUtil.cast(null, toClass);	
-				for (String name : JSONObject.getNames((JSONObject)json)) {
+		switch (reader.peek()) {
+			case JSONReader.BEGIN_OBJECT:
+				if (toClass.isArray()) {
+					throw new IllegalArgumentException("toClass'" + toClass.getName() + "' is array!");
+				}
+				Object returnObj = ReflectUtil.cast(null, toClass);
+				JSONBeanCodec codec = null;
+				boolean isSdo = false;
+				boolean isMap = returnObj instanceof Map;
+				if (!isMap) {
+					isSdo = SdoUtil.isSdoType(toClass);
+					if (!isSdo) {
+						codec = JSONBeanCodec.forClass(toClass);
+					}
+				}
+				reader.nextToken();
+				while (reader.hasNext()) {
+					String name = reader.readString();
+					String subPath = path == null ? null : path + "/" + name;
 					try {
-						Object sub = ((JSONObject)json).get(name);
-						if (SdoUtil.isSdoType(toClass)) {
-							sub = doToJavaObject(sub, SdoUtil.getPropertyInstanceClass(sub, name), fieldTypeMap, prefix + "/" + name);
-						} else if (!Map.class.isAssignableFrom(toClass)) {
-							Field field = ReflectUtil.getField(toClass, name, false);
-							Class subToClass = field.getType();
-							if (fieldTypeMap != null) {
-								Class fieldClass = fieldTypeMap.get(prefix + "/" + name);
-								if (fieldClass != null) {
-									if (subToClass.isAssignableFrom(fieldClass)) {
-										subToClass = fieldClass;
-									}
+						if (isMap) {
+							((Map)returnObj).put(name, elementType == null ? reader.readValue() : doReadJavaObject(reader, elementType, null, fieldTypeMap, subPath));
+						} else if (isSdo) {
+							Object sub = doReadJavaObject(reader, SdoUtil.getPropertyInstanceClass(returnObj, name), null, fieldTypeMap, subPath);
+							ReflectUtil.setValue(returnObj, name, sub);
+						} else {
+							JSONBeanCodec.Property property = codec.getProperty(name);
+							if (property == null) {
+								throw new NoSuchFieldException(name);
+							}
+							Class subToClass = property.getType();
+							if (subPath != null) {
+								Class fieldClass = fieldTypeMap.get(subPath);
+								if (fieldClass != null && subToClass.isAssignableFrom(fieldClass)) {
+									subToClass = fieldClass;
 								}
 							}
-							
-							sub = doToJavaObject(sub, field.getType(), fieldTypeMap, prefix + "/" + name);
+							property.set(returnObj, doReadJavaObject(reader, subToClass, property.getElementType(), fieldTypeMap, subPath));
 						}
-						ReflectUtil.setValue(returnObj, name, sub);
+					} catch (JSONRuntimeException e) {
+						throw e;
 					} catch (Throwable e) {
-						throw new IllegalArgumentException("toClass'" + toClass.getName() + "' is not right class,  json is '" + json + "'!", e);
+						throw new IllegalArgumentException("toClass'" + toClass.getName() + "' is not right class, property is '" + name + "'!", e);
 					}
 				}
+				reader.nextToken();
 				return (T)returnObj;
-			}
-		} else if (json instanceof JSONArray) {
-			if (toClass.isArray() || Collection.class.isAssignableFrom(toClass)) {
-				JSONArray jsonArray = (JSONArray)json;
-				Object returnObj = null;
+			case JSONReader.BEGIN_ARRAY:
 				if (toClass.isArray()) {
-					returnObj = Array.newInstance(toClass.getComponentType(), jsonArray.length());
+					Class componentType = toClass.getComponentType();
+					ArrayList list = new ArrayList();
+					reader.nextToken();
+					while (reader.hasNext()) {
+						list.add(doReadJavaObject(reader, componentType, null, fieldTypeMap, path));
+					}
+					reader.nextToken();
+					Object array = Array.newInstance(componentType, list.size());
+					for (int i = 0; i < list.size(); i++) {
+						Array.set(array, i, list.get(i));
+					}
+					return (T)array;
+				} else if (Collection.class.isAssignableFrom(toClass)) {
+					Collection collection = (Collection)ReflectUtil.cast(null, toClass);
+					reader.nextToken();
+					while (reader.hasNext()) {
+						collection.add(elementType == null ? reader.readValue() : doReadJavaObject(reader, elementType, null, fieldTypeMap, path));
+					}
+					reader.nextToken();
+					return (T)collection;
 				} else {
-					returnObj = ReflectUtil.cast(null, toClass);
+					throw new IllegalArgumentException("toClass'" + toClass.getName() + "' is not array, but json is array!");
 				}
-				for (int i = 0; i < jsonArray.length(); i++) {
-					if (toClass.isArray()) {
-						Array.set(returnObj, i, doToJavaObject(jsonArray.get(i), toClass.getComponentType(), fieldTypeMap, prefix));
-					} else {
-						((Collection)returnObj).add(jsonArray.get(i));
-					}
+			default:
+				Object value = reader.readValue();
+				if (value == JSONObject.NULL) {
+					return ReflectUtil.cast(null, toClass);
 				}
-				return (T)returnObj;
-			} else {
-				throw new IllegalArgumentException("toClass'" + toClass.getName() + "' is not array, but json'" + json + "' is array!");
-			}
-		} else if (json == JSONObject.NULL) {
-			return ReflectUtil.cast(null, toClass);
-		} else {
-			return ReflectUtil.cast(json, toClass);
+				return ReflectUtil.cast(value, toClass);
 		}
 	}
 	
-	private static DateFormatter DEFAULT_DATE_FORMATER = new DateFormatter().setPattern(DateFormatter.YYYYMMDDHHMMSS2);
+	//默认的日期格式，格式化器按线程缓存
+	private static final String DEFAULT_DATE_PATTERN = DateFormatter.YYYYMMDDHHMMSS2;
 	
 	/**
 	 * 把对象转化为Json字符串
@@ -143,173 +205,47 @@ public class JsonUtil {
 	 */
 	public static String toJsonString(Object obj) {
 		StringBuilder json = new StringBuilder();
-		if (obj == null) {
-			json.append("\"\"");
-		} else if (obj instanceof Character || Character.TYPE.equals(obj.getClass())) {
-			json.append("'").append(string2json(String.valueOf(obj))).append("'");
-		} else if (obj instanceof String) {
-			json.append("\"").append(string2json((String) obj)).append("\"");		
-		} else if (obj instanceof Date) {// 默认时间格式
-			json.append("\"").append(DEFAULT_DATE_FORMATER.format(obj)).append("\"");
-		} else if (obj.getClass().isPrimitive() || Number.class.isAssignableFrom(obj.getClass()) || obj instanceof Boolean) {
-			json.append(obj);
-		} else if (obj.getClass().isArray()) {
-			json.append(array2json((Object[]) obj));
-		} else if (obj instanceof Collection) {
-			json.append(array2json(((Collection<?>) obj).toArray()));
-		} else if (obj instanceof Map) {
-			json.append(map2json((Map<?, ?>) obj));
-		} else if (SdoUtil.isSdoType(obj.getClass())) {//sdo
-			json.append(sdo2json(obj));
-		} else {
-			json.append(bean2json(obj));
-		}
-		return json.toString();
-	}
-
-	// 把数组转化为JSON字符串
-	private static String array2json(Object[] array) {
-		StringBuilder json = new StringBuilder();
-		json.append("[");
-		int count = 0;
-		for (Object obj : array) {
-			if (count > 0) {
-				json.append(",");
-			}			
-			json.append(toJsonString(obj));
-			count++;
-		}
-		json.append("]");
-		return json.toString();
-	}
-
-	// 把Map转化为JSON字符串
-	private static String map2json(Map<?, ?> map) {
-		StringBuilder json = new StringBuilder();
-		json.append("{");
-		int count = 0;
-		for (Object key : map.keySet()) {
-			if (count > 0) {
-				json.append(",");
-			}
-			json.append(toJsonString(key));
-			json.append(":");
-			json.append(toJsonString(map.get(key)));
-			count++;
-		}
-		json.append("}");
-		
-		return json.toString();
-	}
-
-	// 把sdo转化为JSON字符串
-	private static String sdo2json(Object sdo) {
-		StringBuilder json = new StringBuilder();
-		json.append("{");
-		int count = 0;
 		try {
-			List propertyList = SdoUtil.getInstanceProperties(sdo);
-			for (Object property : propertyList) {
-				String key = SdoUtil.getPropertyName(property);
-				Object propertyValue = SdoUtil.getPropertyValue(sdo, key);
-				if (count > 0) {
-					json.append(",");
-				}
-				json.append(toJsonString(key));
-				json.append(":");
-				json.append(toJsonString(propertyValue));
-				count++;
-			}
-		} catch (Throwable e) {				
+			new JSONWriter(json, FormatterCache.getDateFormatter(DEFAULT_DATE_PATTERN)).writeValue(obj);
+		} catch (IOException e) {
+			//StringBuilder不会抛出IOException
+			throw new JSONRuntimeException(e);
 		}
-		json.append("}");
-		
 		return json.toString();
 	}
-
-	// 把JavaBean转化为JSON字符串
-	private static String bean2json(final Object bean) {
-		StringBuilder json = new StringBuilder();
-		json.append("{");
-
-		int count = 0;
-		Map<String, Field> fieldMap = ReflectUtil.getAllField(bean.getClass());
-		for (Entry<String, Field> entry : fieldMap.entrySet()) {
-			String key = entry.getKey();
-			final Field field = entry.getValue();
-			Object fieldValue = null;
-			try {
-				fieldValue = AccessController.doPrivileged(new PrivilegedExceptionAction() {
-					public Object run() throws Exception {
-						boolean access = field.isAccessible();
-						try {
-							field.setAccessible(true);
-							return field.get(bean);
-						} finally {
-							field.setAccessible(access);
-						}
-					}					
-				});
-			} catch (PrivilegedActionException e) {				
-			}
-			if (count > 0) {
-				json.append(",");
-			}
-			json.append(toJsonString(key));
-			json.append(":");
-			json.append(toJsonString(fieldValue));
-			count++;
+	
+	/**
+	 * 把对象以Json格式直接写入到输出中，不产生中间字符串
+	 * 
+	 * @param obj 对象，可以为空
+	 * @param writer 输出，不可以为空，写完后flush，但不关闭
+	 * @throws IOException 输出出错
+	 */
+	public static void writeJson(Object obj, Writer writer) throws IOException {
+		if (writer == null) {
+			throw new IllegalArgumentException("writer is null!");
 		}
-		json.append("}");
-		return json.toString();
+		BufferedWriter bufferedWriter = writer instanceof BufferedWriter ? (BufferedWriter)writer : new BufferedWriter(writer);
+		new JSONWriter(bufferedWriter, FormatterCache.getDateFormatter(DEFAULT_DATE_PATTERN)).writeValue(obj);
+		bufferedWriter.flush();
 	}
-
-	// 把字符串转化为JSON字符串
-	private static String string2json(String s) {
-		if (s == null)
-			return "";
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < s.length(); i++) {
-			char ch = s.charAt(i);
-			switch (ch) {
-			case '"':
-				sb.append("\\\"");
-				break;
-			case '\\':
-				sb.append("\\\\");
-				break;
-			case '\b':
-				sb.append("\\b");
-				break;
-			case '\f':
-				sb.append("\\f");
-				break;
-			case '\n':
-				sb.append("\\n");
-				break;
-			case '\r':
-				sb.append("\\r");
-				break;
-			case '\t':
-				sb.append("\\t");
-				break;
-			case '/':
-				sb.append("\\/");
-				break;
-			default:
-				if (ch >= '\u0000' && ch <= '\u001F') {
-					String ss = Integer.toHexString(ch);
-					sb.append("\\u");
-					for (int k = 0; k < 4 - ss.length(); k++) {
-						sb.append('0');
-					}
-					sb.append(ss.toUpperCase());
-				} else {
-					sb.append(ch);
-				}
-			}
+	
+	/**
+	 * 把对象以Json格式直接写入到输出流中，不产生中间字符串
+	 * 
+	 * @param obj 对象，可以为空
+	 * @param out 输出流，不可以为空，写完后flush，但不关闭
+	 * @param charset 字符集，为空时使用UTF-8
+	 * @throws IOException 输出出错
+	 */
+	public static void writeJson(Object obj, OutputStream out, Charset charset) throws IOException {
+		if (out == null) {
+			throw new IllegalArgumentException("OutputStream is null!");
+		}
+		if (charset == null) {
+			charset = Charset.forName("UTF-8");
 		}
-		return sb.toString();
+		writeJson(obj, new OutputStreamWriter(out, charset));
 	}
 	
 	/**
@@ -323,136 +259,27 @@ public class JsonUtil {
 		if (json == null || json.trim().length() == 0) {
 			return null;
 		}
-		
-		int fixedLenth = 0;
-		ArrayList<String> tokenList = new ArrayList<String>();
-		{
-			String jsonTemp = json;
-			//预读取
-			while (jsonTemp.length() > 0) {
-				String token = getToken(jsonTemp);
-				jsonTemp = jsonTemp.substring(token.length());
-				token = token.trim();
-				tokenList.add(token);
-			}			
-		}
-		
-		for (int i = 0; i < tokenList.size(); i++) {
-			String token = tokenList.get(i);
-			int length = token.getBytes().length;
-			if (length > fixedLenth && i < tokenList.size() - 1 && tokenList.get(i + 1).equals(":")) {
-				fixedLenth = length;
-			}
-		}
-		
-		StringBuilder buf = new StringBuilder();
-		int count = 0;
-		for (int i = 0; i < tokenList.size(); i++) {
-			
-			String token = tokenList.get(i);
-			
-			if (token.equals(",")) {
-				buf.append(token);
-				doFill(buf, count, fillStringUnit);
-				continue;
-			}
-			if (token.equals(":")) {
-				buf.append(" ").append(token).append(" ");
-				continue;
-			}
-			if (token.equals("{")) {
-				String nextToken = tokenList.get(i + 1);
-				if (nextToken.equals("}")) {
-					i++;
-					buf.append("{ }");
-				} else {
-					count++;
-					buf.append(token);
-					doFill(buf, count, fillStringUnit);
-				}
-				continue;
-			}
-			if (token.equals("}")) {
-				count--;
-				doFill(buf, count, fillStringUnit);
-				buf.append(token);
-				continue;
-			}
-			if (token.equals("[")) {
-				String nextToken = tokenList.get(i + 1);
-				if (nextToken.equals("]")) {
-					i++;
-					buf.append("[ ]");
-				} else {
-					count++;
-					buf.append(token);
-					doFill(buf, count, fillStringUnit);
-				}
-				continue;
-			}
-			if (token.equals("]")) {
-				count--;
-				doFill(buf, count, fillStringUnit);
-				buf.append(token);
-				continue;
-			}
-			
-			buf.append(token);
-			//左对齐
-			if (i < tokenList.size() - 1 && tokenList.get(i + 1).equals(":")) {
-				int fillLength = fixedLenth - token.getBytes().length;
-				if (fillLength > 0) {
-					for(int j = 0; j < fillLength; j++) {
-						buf.append(" ");
-					}
-				}
-			}
+		StringWriter writer = new StringWriter(json.length() * 2);
+		try {
+			int keyWidth = JSONFormatter.measureKeyWidth(new StringReader(json));
+			new JSONFormatter(fillStringUnit, keyWidth).format(new StringReader(json), writer);
+		} catch (IOException e) {
+			//StringReader、StringWriter不会抛出IOException
+			throw new JSONRuntimeException(e);
 		}
-		return buf.toString();
+		return writer.toString();
 	}
 	
-	private static String getToken(String json) {
-		StringBuilder buf = new StringBuilder();
-		boolean isInYinHao = false;
-		while (json.length() > 0) {
-			String token = json.substring(0, 1);
-			json = json.substring(1);
-			
-			if (!isInYinHao && 
-					(token.equals(":") || token.equals("{") || token.equals("}") 
-							|| token.equals("[") || token.equals("]")
-							|| token.equals(","))) {
-				if (buf.toString().trim().length() == 0) {					
-					buf.append(token);
-				}
-				
-				break;
-			}
-
-			if (token.equals("\\")) {
-				buf.append(token);
-				buf.append(json.substring(0, 1));
-				json = json.substring(1);
-				continue;
-			}
-			if (token.equals("\"")) {
-				buf.append(token);
-				if (isInYinHao) {
-					break;
-				} else {
-					isInYinHao = true;
-					continue;
-				}				
-			}
-			buf.append(token);
-		}
-		return buf.toString();
-	}
-
-	private static void doFill(StringBuilder buf, int count, String fillStringUnit) {
-		buf.append("\n");
-		for (int i = 0; i < count; i++) {
-			buf.append(fillStringUnit);
-		}
+	/**
+	 * json的流式格式化，一次遍历，不需要把输入读成字符串
+	 * 
+	 * @param in 输入，不可以为空，读取后不关闭
+	 * @param out 输出，不可以为空，写完后flush，但不关闭
+	 * @param fillStringUnit 缩进单位
+	 * @param keyWidth 键对齐的宽度，小于等于0时不对齐，可以通过JSONFormatter.measureKeyWidth预先计算
+	 * @throws IOException 读取或者输出出错
+	 */
+	public static void formatJson(Reader in, Writer out, String fillStringUnit, int keyWidth) throws IOException {
+		new JSONFormatter(fillStringUnit, keyWidth).format(in, out);
 	}
 }
\ No newline at end of file
@@ -32,7 +32,6 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.security.PrivilegedExceptionAction;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -43,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.tools.utility.impl.reflect.ClassMetadata;
 import com.tools.utility.spi.convert.TypeConvertorManager;
 
 
@@ -242,6 +242,184 @@ public class ReflectUtil {
 		return null;
 	}
 
+	//ClassMetadata中缓存字段访问器的键
+	private static final Object FIELD_ACCESSOR_KEY = new Object();
+	
+	//ClassMetadata中缓存方法调用器的键
+	private static final Object METHOD_INVOKER_KEY = new Object();
+	
+	/**
+	 * 取得字段访问器（缓存），访问时不再需要权限检查
+	 * 
+	 * @param clazz 类，不可以为空
+	 * @param fieldName 字段名称，不可以为空
+	 * @return 字段访问器
+	 * @throws NoSuchFieldException 没有这个字段
+	 */
+	public static FieldAccessor accessor(Class clazz, String fieldName) throws NoSuchFieldException {
+		return accessor(clazz, fieldName, false);
+	}
+	
+	/**
+	 * 取得字段访问器（缓存），访问时不再需要权限检查
+	 * 
+	 * @param clazz 类，不可以为空
+	 * @param fieldName 字段名称，不可以为空
+	 * @param isOnlyPublic 是否只查找公有的字段
+	 * @return 字段访问器
+	 * @throws NoSuchFieldException 没有这个字段
+	 */
+	public static FieldAccessor accessor(Class clazz, String fieldName, boolean isOnlyPublic) throws NoSuchFieldException {
+		if (clazz == null) {
+			throw new IllegalArgumentException("clazz is null!");
+		}
+		if (fieldName == null) {
+			throw new IllegalArgumentException("fieldName is null!");
+		}
+		ConcurrentHashMap<String, FieldAccessor> accessorMap = getCacheMap(FIELD_ACCESSOR_KEY, clazz);
+		String key = isOnlyPublic ? fieldName + "#public" : fieldName;
+		FieldAccessor accessor = accessorMap.get(key);
+		if (accessor == null) {
+			accessor = new FieldAccessor(getField(clazz, fieldName, isOnlyPublic));
+			accessorMap.putIfAbsent(key, accessor);
+		}
+		return accessor;
+	}
+	
+	/**
+	 * 取得字段访问器（缓存），访问时不再需要权限检查
+	 * 
+	 * @param field 字段，不可以为空
+	 * @return 字段访问器
+	 */
+	public static FieldAccessor accessor(Field field) {
+		if (field == null) {
+			throw new IllegalArgumentException("field is null!");
+		}
+		try {
+			return accessor(field.getDeclaringClass(), field.getName(), false);
+		} catch (NoSuchFieldException e) {
+			//不会发生
+			throw new IllegalArgumentException(e);
+		}
+	}
+	
+	/**
+	 * 取得方法调用器（缓存），调用时不再需要权限检查
+	 * 
+	 * @param clazz 类，不可以为空
+	 * @param methodName 方法名称，不可以为空
+	 * @param parameterTypes 类型信息，可以为空
+	 * @param isOnlyPublic 是否只查找公有方法
+	 * @return 方法调用器
+	 * @throws NoSuchMethodException 方法不存在
+	 */
+	public static MethodInvoker invoker(Class clazz, String methodName, Class[] parameterTypes, boolean isOnlyPublic) throws NoSuchMethodException {
+		if (clazz == null) {
+			throw new IllegalArgumentException("clazz is null!");
+		}
+		if (methodName == null) {
+			throw new IllegalArgumentException("methodName is null!");
+		}
+		ConcurrentHashMap<String, MethodInvoker> invokerMap = getCacheMap(METHOD_INVOKER_KEY, clazz);
+		StringBuilder buf = new StringBuilder(methodName);
+		if (parameterTypes != null) {
+			for (Class parameterType : parameterTypes) {
+				buf.append(',').append(parameterType == null ? "null" : parameterType.getName());
+			}
+		}
+		if (isOnlyPublic) {
+			buf.append("#public");
+		}
+		String key = buf.toString();
+		MethodInvoker invoker = invokerMap.get(key);
+		if (invoker == null) {
+			invoker = new MethodInvoker(getMethod(clazz, methodName, parameterTypes, isOnlyPublic));
+			invokerMap.putIfAbsent(key, invoker);
+		}
+		return invoker;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <V> ConcurrentHashMap<String, V> getCacheMap(Object key, Class clazz) {
+		ClassMetadata metadata = ClassMetadata.forClass(clazz);
+		ConcurrentHashMap<String, V> map = (ConcurrentHashMap<String, V>)metadata.getAttribute(key);
+		if (map == null) {
+			map = (ConcurrentHashMap<String, V>)metadata.putAttributeIfAbsent(key, new ConcurrentHashMap<String, V>());
+		}
+		return map;
+	}
+	
+	/**
+	 * 字段访问器<br>
+	 * 
+	 * 持有字段的私有副本，创建时设置一次可访问，不影响其他地方共享的Field对象
+	 */
+	public static class FieldAccessor {
+		
+		private final Field field;
+		
+		private FieldAccessor(final Field field) {
+			this.field = (Field)AccessController.doPrivileged(new PrivilegedAction() {
+				public Object run() {
+					Field copy = field;
+					try {
+						copy = field.getDeclaringClass().getDeclaredField(field.getName());
+					} catch (NoSuchFieldException ignore) {
+						
+					}
+					copy.setAccessible(true);
+					return copy;
+				}
+			});
+		}
+		
+		public Field getField() {
+			return field;
+		}
+		
+		public Object get(Object target) throws IllegalAccessException {
+			return field.get(target);
+		}
+		
+		public void set(Object target, Object value) throws IllegalAccessException {
+			field.set(target, value);
+		}
+	}
+	
+	/**
+	 * 方法调用器<br>
+	 * 
+	 * 持有方法的私有副本，创建时设置一次可访问，不影响其他地方共享的Method对象
+	 */
+	public static class MethodInvoker {
+		
+		private final Method method;
+		
+		private MethodInvoker(final Method method) {
+			this.method = (Method)AccessController.doPrivileged(new PrivilegedAction() {
+				public Object run() {
+					Method copy = method;
+					try {
+						copy = method.getDeclaringClass().getDeclaredMethod(method.getName(), method.getParameterTypes());
+					} catch (NoSuchMethodException ignore) {
+						
+					}
+					copy.setAccessible(true);
+					return copy;
+				}
+			});
+		}
+		
+		public Method getMethod() {
+			return method;
+		}
+		
+		public Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+			return method.invoke(target, args);
+		}
+	}
+
 	/**
 	 * 取得某个字段的值
 	 * 
@@ -255,33 +433,12 @@ public class ReflectUtil {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <T> T getFieldValue(Class clazz, String fieldName, boolean isOnlyPublic, Object target) throws NoSuchFieldException, IllegalAccessException {
-		final Field field = getField(clazz, fieldName, isOnlyPublic);
-		if (!Modifier.isPublic(field.getModifiers())) {
-			final boolean isAccessible = field.isAccessible();
-			try {
-				AccessController.doPrivileged(new PrivilegedAction() {
-					public Object run() {
-						field.setAccessible(true);
-						return null;
-					}
-				});
-				return (T) doGetFieldValue(clazz, field, target);
-			} finally {
-				AccessController.doPrivileged(new PrivilegedAction() {
-					public Object run() {
-						field.setAccessible(isAccessible);
-						return null;
-					}
-				});
-			}
-		} else {
-			return (T) doGetFieldValue(clazz, field, target);
-		}
+		return (T) doGetFieldValue(clazz, accessor(clazz, fieldName, isOnlyPublic), target);
 	}
 
-	private static Object doGetFieldValue(Class clazz, Field field, Object target) throws IllegalAccessException {
-		if (Modifier.isStatic(field.getModifiers())) {
-			return field.get(null);
+	private static Object doGetFieldValue(Class clazz, FieldAccessor accessor, Object target) throws IllegalAccessException {
+		if (Modifier.isStatic(accessor.getField().getModifiers())) {
+			return accessor.get(null);
 		} else {
 			if (target == null) {
 				try {
@@ -290,7 +447,7 @@ public class ReflectUtil {
 					throw new IllegalArgumentException("target is null!");
 				}
 			}
-			return field.get(target);
+			return accessor.get(target);
 		}
 	}
 
@@ -317,35 +474,13 @@ public class ReflectUtil {
 		if (parameterTypes == null) {
 			parameterTypes = args2types(args);
 		}
-		final Method method = getMethod(clazz, methodName, parameterTypes, isOnlyPublic);
-		if (!Modifier.isPublic(method.getModifiers())) {
-			final boolean isAccessible = method.isAccessible();
-			try {
-				AccessController.doPrivileged(new PrivilegedAction() {
-					public Object run() {
-						method.setAccessible(true);
-						return null;
-					}
-				});
-
-				return (T) doInvokeMethod(clazz, method, target, args);
-			} finally {
-				AccessController.doPrivileged(new PrivilegedAction() {
-					public Object run() {
-						method.setAccessible(isAccessible);
-						return null;
-					}
-				});
-			}
-		} else {
-			return (T) doInvokeMethod(clazz, method, target, args);
-		}
+		return (T) doInvokeMethod(clazz, invoker(clazz, methodName, parameterTypes, isOnlyPublic), target, args);
 	}
 
-	private static Object doInvokeMethod(Class clazz, Method method, Object target, Object[] args) throws NoSuchMethodException, IllegalAccessException,
+	private static Object doInvokeMethod(Class clazz, MethodInvoker invoker, Object target, Object[] args) throws NoSuchMethodException, IllegalAccessException,
 			InvocationTargetException {
-		if (Modifier.isStatic(method.getModifiers())) {
-			return method.invoke(null, args);
+		if (Modifier.isStatic(invoker.getMethod().getModifiers())) {
+			return invoker.invoke(null, args);
 		} else {
 			if (target == null) {
 				try {
@@ -354,7 +489,7 @@ public class ReflectUtil {
 					throw new IllegalArgumentException("target is null!");
 				}
 			}
-			return method.invoke(target, args);
+			return invoker.invoke(target, args);
 		}
 	}
 
@@ -403,7 +538,7 @@ public class ReflectUtil {
 	 * @param name 字段名称
 	 * @param value 字段值
 	 */
-	public static void setValue(final Object obj, String name, final Object value) {
+	public static void setValue(Object obj, String name, Object value) {
 		if (obj == null) {
 			throw new IllegalArgumentException("obj is null!");
 		}
@@ -416,19 +551,8 @@ public class ReflectUtil {
 			} else if (SdoUtil.isSdoType(obj.getClass())) {// sdo
 				SdoUtil.setPropertyValue(obj, name, value);
 			} else {
-				final Field field = getField(obj.getClass(), name, false);
-				AccessController.doPrivileged(new PrivilegedExceptionAction() {
-					public Object run() throws Exception {
-						boolean access = field.isAccessible();
-						try {
-							field.setAccessible(true);
-							field.set(obj, cast(value, field.getType()));
-							return null;
-						} finally {
-							field.setAccessible(access);
-						}
-					}
-				});
+				FieldAccessor accessor = accessor(obj.getClass(), name);
+				accessor.set(obj, cast(value, accessor.getField().getType()));
 			}
 		} catch (Throwable e) {
 			throw new UnsupportedOperationException(e);
@@ -442,7 +566,7 @@ public class ReflectUtil {
 	 * @return 克隆后的对象
 	 */
 	@SuppressWarnings("unchecked")
-	public static <T> T deepClone(final Object value) {
+	public static <T> T deepClone(Object value) {
 		if (value == null || value instanceof String || value.getClass().isPrimitive()) {
 			return (T)value;
 		}
@@ -481,25 +605,14 @@ public class ReflectUtil {
 				ByteArrayInputStream byteIn = new ByteArrayInputStream(byteOut.toByteArray());
 				return (T)new ObjectInputStream(byteIn).readObject();
 			} else {
-				final Object ret = newInstance(value.getClass());
+				Object ret = newInstance(value.getClass());
 				Map<String, Field> fieldMap = getAllField(value.getClass());
-				for (String fieldName : fieldMap.keySet()) {
-					final Field field = fieldMap.get(fieldName);
+				for (Field field : fieldMap.values()) {
 					if (Modifier.isFinal(field.getModifiers())) {
 						continue;
 					}
-					AccessController.doPrivileged(new PrivilegedExceptionAction() {
-						public Object run() throws Exception {
-							boolean access = field.isAccessible();
-							try {
-								field.setAccessible(true);
-								field.set(ret, deepClone(field.get(value)));
-								return null;
-							} finally {
-								field.setAccessible(access);
-							}
-						}
-					});
+					FieldAccessor accessor = accessor(field);
+					accessor.set(ret, deepClone(accessor.get(value)));
 				}
 				return (T)ret;
 			}
@@ -517,7 +630,7 @@ public class ReflectUtil {
 	 * @return true：含有相同的内容
 	 */
 	@SuppressWarnings("unchecked")
-	public static boolean equals(final Object value1, final Object value2, boolean isIgnoreType) {
+	public static boolean equals(Object value1, Object value2, boolean isIgnoreType) {
 		if (value1 == value2) {
 			return true;
 		}
@@ -617,30 +730,12 @@ public class ReflectUtil {
 					return false;
 				}
 				for (String fieldName : fieldMap1.keySet()) {
-					final Field field1 = fieldMap1.get(fieldName);
-					final Field field2 = fieldMap2.get(fieldName);
-					Object fieldValue1 = AccessController.doPrivileged(new PrivilegedExceptionAction() {
-						public Object run() throws Exception {
-							boolean access = field1.isAccessible();
-							try {
-								field1.setAccessible(true);
-								return field1.get(value1);
-							} finally {
-								field1.setAccessible(access);
-							}
-						}
-					});
-					Object fieldValue2 = AccessController.doPrivileged(new PrivilegedExceptionAction() {
-						public Object run() throws Exception {
-							boolean access = field1.isAccessible();
-							try {
-								field2.setAccessible(true);
-								return field2.get(value2);
-							} finally {
-								field2.setAccessible(access);
-							}
-						}
-					});
+					Field field2 = fieldMap2.get(fieldName);
+					if (field2 == null) {
+						return false;
+					}
+					Object fieldValue1 = accessor(fieldMap1.get(fieldName)).get(value1);
+					Object fieldValue2 = accessor(field2).get(value2);
 					if (!equals(fieldValue1, fieldValue2, isIgnoreType)) {
 						return false;
 					}
@@ -652,8 +747,6 @@ public class ReflectUtil {
 		}
 	}
 	
-	private static ConcurrentHashMap<Class, Map<String, Field>> classFieldMap = new ConcurrentHashMap<Class, Map<String, Field>>();
-	
 	/**
 	 * 取得所有属性字段
 	 * 
@@ -664,35 +757,7 @@ public class ReflectUtil {
 		if (clazz == null) {
 			return null;
 		}
-		Map<String, Field> fieldMap = classFieldMap.get(clazz);
-		if (fieldMap == null) {
-			synchronized (ReflectUtil.class) {
-				if (classFieldMap.get(clazz) == null) {
-					fieldMap = new HashMap<String, Field>();
-					doGetAllField(clazz, fieldMap);
-					fieldMap = Collections.unmodifiableMap(fieldMap);
-					classFieldMap.put(clazz, fieldMap);
-				}
-			}
-		}
-		return fieldMap;
-	}
-
-	private static void doGetAllField(Class clazz, Map<String, Field> fieldMap) {
-		for (Field field : clazz.getDeclaredFields()) {
-			if (fieldMap.containsKey(field.getName())) {
-				continue;
-			}
-			int modifiers = field.getModifiers();
-			//不包含常量（final static）
-			if (Modifier.isFinal(modifiers) && Modifier.isStatic(modifiers)) {
-				continue;
-			}
-			fieldMap.put(field.getName(), field);
-		}
-		if (clazz.getSuperclass() != null) {
-			doGetAllField(clazz.getSuperclass(), fieldMap);
-		}
+		return ClassMetadata.forClass(clazz).getFields();
 	}
 
 	/**
@@ -20,10 +20,19 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 服务配置扩展点加载器<br>
@@ -31,6 +40,9 @@ import java.util.Map;
  * 支持下面格式的配置文件：<br>注意：默认以index排序（升序），或者priority排序（降序），如果没有这个字段，默认是100
  * com.primeton.XXXXListener;index=100;keyX=valueX;
  * com.primeton.XXXXListener;index=101;keyX=valueX;
+ * <br>
+ * 按资源名称加载的配置在进程内按类加载器缓存（只解析一次），多个配置文件并行解析；
+ * 扩展点在第一次调用Extension.getExtension()时才加载类、创建实例，notNeedInstance=true时不创建实例。
  *
  * @author wuyuhou
  *
@@ -38,14 +50,22 @@ import java.util.Map;
 public class ServiceExtensionLoader<X> {
 
 	private static final String PREFIX1 = "META-INF/";
-	
+
 	private static final String PREFIX2 = "META-INF/services/";
 
-	private String encoding = "UTF-8";
+	private static final String DEFAULT_ENCODING = "UTF-8";
+
+	//类加载器 -> 资源名称 -> 解析结果
+	private static Map<ClassLoader, ConcurrentHashMap<String, Definitions>> definitionCache = new WeakHashMap<ClassLoader, ConcurrentHashMap<String, Definitions>>();
+
+	//并行解析配置文件的线程池，空闲时回收线程，线程不够时在调用线程中解析
+	private static ExecutorService parseExecutor = null;
+
+	private String encoding = DEFAULT_ENCODING;
 
 	private List<Extension<X>> extensionList = new ArrayList<Extension<X>>();
-	
-	private List<Throwable> errorList = new ArrayList<Throwable>();
+
+	private List<Throwable> errorList = Collections.synchronizedList(new ArrayList<Throwable>());
 
 	private ClassLoader classLoader = ServiceExtensionLoader.class.getClassLoader();
 
@@ -57,99 +77,154 @@ public class ServiceExtensionLoader<X> {
 		this.classLoader = classLoader;
 	}
 
-	@SuppressWarnings("unchecked")
 	public ServiceExtensionLoader<X> load(InputStream in) {
 		if (in == null) {
 			throw new IllegalArgumentException("InputStream is null!");
 		}
+		Definitions definitions = new Definitions();
+		parse(in, encoding, definitions);
+		return add(definitions);
+	}
+
+	//添加解析结果
+	private ServiceExtensionLoader<X> add(Definitions definitions) {
+		for (Definition definition : definitions.definitionList) {
+			addListByIndex(new Extension<X>(definition, getClassLoader(), errorList));
+		}
+		errorList.addAll(definitions.errorList);
+		return this;
+	}
+
+	//解析配置
+	private static void parse(InputStream in, String encoding, Definitions definitions) {
 		try {
 			BufferedReader reader = new BufferedReader(new InputStreamReader(in, encoding));
 			String line = null;
 			while((line = reader.readLine()) != null) {
 				try {
-					//去掉注释
-					int indexComment = line.indexOf("#");
-					if (indexComment != -1) {
-						line = line.substring(0, indexComment);
-					}
-					indexComment = line.indexOf("--");
-					if (indexComment != -1) {
-						line = line.substring(0, indexComment);
-					}
-					indexComment = line.indexOf("//");
-					if (indexComment != -1) {
-						line = line.substring(0, indexComment);
-					}
-					line = line.trim();
-					if (line.length() == 0) {
-						continue;
-					}
-					String[] eles = line.split(";");
-
-					if (eles.length > 0) {
-						Extension<X> extension = new Extension<X>();
-						extension.setOriginalValue(eles[0]);
-						try {
-							Class<X> clazz = ReflectUtil.loadClass(getClassLoader(), eles[0]);
-							extension.setType(clazz);
-							String notNeedInstance = extension.getProperty("notNeedInstance", "false");
-							if ("false".equalsIgnoreCase(notNeedInstance)) {
-								extension.setExtension((X)ReflectUtil.newInstance(clazz));
-							}	
-						} catch (Throwable t) {
-							errorList.add(new Throwable("Load class [" + eles[0] + "] error!", t));
-						}
-
-						for (int i = 1; i < eles.length; i++) {
-							int index = eles[i].indexOf("=");
-							if (index >= 0) {
-								String key = eles[i].substring(0, index).trim();
-								String value = eles[i].substring(index + 1).trim();
-								if (key.equals("index")) {
-									extension.setIndex(Integer.parseInt(value));
-								} else if (key.equals("priority")) {
-									extension.setIndex(0 - Integer.parseInt(value));
-								} else {
-									extension.setProperty(key, value);
-								}
-							}
-						}					
-						addListByIndex(extension);
+					Definition definition = parseLine(line);
+					if (definition != null) {
+						definitions.definitionList.add(definition);
 					}
 				} catch (Throwable e) {
-					errorList.add(new Throwable("Parser [" + line + "] error!", e));
+					definitions.errorList.add(new Throwable("Parser [" + line + "] error!", e));
 				}
 			}
 		} catch (Throwable e) {
-			errorList.add(e);
+			definitions.errorList.add(e);
 		}
-		return this;
 	}
 
+	//解析一行，空行返回null
+	private static Definition parseLine(String line) {
+		//去掉注释
+		int end = line.length();
+		for (int i = 0; i < end; i++) {
+			char c = line.charAt(i);
+			if (c == '#' || (c == '-' || c == '/') && i + 1 < end && line.charAt(i + 1) == c) {
+				end = i;
+			}
+		}
+		Definition definition = null;
+		int begin = 0;
+		while (begin <= end) {
+			int next = line.indexOf(';', begin);
+			if (next < 0 || next > end) {
+				next = end;
+			}
+			if (definition == null) {
+				String className = line.substring(begin, next).trim();
+				if (className.length() == 0 && line.substring(next, end).trim().length() == 0) {
+					return null;
+				}
+				definition = new Definition(className);
+			} else {
+				int index = line.indexOf('=', begin);
+				if (index >= 0 && index < next) {
+					String key = line.substring(begin, index).trim();
+					String value = line.substring(index + 1, next).trim();
+					if (key.equals("index")) {
+						definition.index = Integer.parseInt(value);
+					} else if (key.equals("priority")) {
+						definition.index = 0 - Integer.parseInt(value);
+					} else {
+						definition.properties.put(key, value);
+					}
+				}
+			}
+			begin = next + 1;
+		}
+		return definition;
+	}
+
+	//按index稳定排序插入，index相同时在后面
 	private void addListByIndex(Extension<X> extension) {
-		if (extensionList.size() == 0) {
-			extensionList.add(extension);
-			return;
-		}
-		int i = extensionList.size() - 1;
-		for (; i >= 0; i--) {
-			if (extensionList.get(i).getIndex() <= extension.getIndex()) {
-				break;
+		int low = 0;
+		int high = extensionList.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (extensionList.get(mid).getIndex() <= extension.getIndex()) {
+				low = mid + 1;
+			} else {
+				high = mid;
 			}
 		}
-		extensionList.add(++i, extension);
+		extensionList.add(low, extension);
 	}
-	
+
 	public static <X> ServiceExtensionLoader<X> load(Class<X> clazz) {
 		ServiceExtensionLoader<X> loader = new ServiceExtensionLoader<X>();
 		loader.classLoader = clazz.getClassLoader();
-		loader.load(PREFIX1 + clazz.getName());
-		return loader.load(PREFIX2 + clazz.getName());
+		preload(clazz);
+		return loader.load(new String[]{PREFIX1 + clazz.getName(), PREFIX2 + clazz.getName()});
+	}
+
+	/**
+	 * 预先并行加载多个扩展点的配置，之后的load(Class)直接使用缓存
+	 *
+	 * @param classes 扩展点类型
+	 */
+	public static void preload(Class... classes) {
+		ConcurrentHashMap<String, Definitions> cache = getCache();
+		List<String> resourceList = new ArrayList<String>();
+		List<URL[]> resourceUrlList = new ArrayList<URL[]>();
+		List<URL> urlList = new ArrayList<URL>();
+		for (Class clazz : classes) {
+			for (String resource : new String[]{PREFIX1 + clazz.getName(), PREFIX2 + clazz.getName()}) {
+				if (cache.get(resource) == null && !resourceList.contains(resource)) {
+					URL[] urls = IOUtil.getAllResources(null, resource);
+					resourceList.add(resource);
+					resourceUrlList.add(urls);
+					Collections.addAll(urlList, urls);
+				}
+			}
+		}
+		//先并行解析所有配置文件，再按资源名称合并缓存
+		Definitions[] results = parse(urlList.toArray(new URL[0]), DEFAULT_ENCODING);
+		int offset = 0;
+		for (int i = 0; i < resourceList.size(); i++) {
+			int length = resourceUrlList.get(i).length;
+			cache.putIfAbsent(resourceList.get(i), merge(results, offset, offset + length));
+			offset += length;
+		}
+	}
+
+	/**
+	 * 清空进程内缓存的配置，配置文件变化后重新加载时使用
+	 */
+	public static void clearCache() {
+		synchronized (definitionCache) {
+			definitionCache.clear();
+		}
 	}
 
 	public ServiceExtensionLoader<X> load(String resource) {
-		for (URL url : IOUtil.getAllResources(null, resource)) {
-			load(url);
+		return load(new String[]{resource});
+	}
+
+	private ServiceExtensionLoader<X> load(String[] resources) {
+		for (String resource : resources) {
+			add(getDefinitions(resource, encoding));
 		}
 		return this;
 	}
@@ -158,16 +233,103 @@ public class ServiceExtensionLoader<X> {
 		if (url == null) {
 			throw new IllegalArgumentException("url is null!");
 		}
+		return add(parse(url, encoding));
+	}
+
+	//当前线程上下文类加载器的缓存
+	private static ConcurrentHashMap<String, Definitions> getCache() {
+		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+		synchronized (definitionCache) {
+			ConcurrentHashMap<String, Definitions> cache = definitionCache.get(contextLoader);
+			if (cache == null) {
+				cache = new ConcurrentHashMap<String, Definitions>();
+				definitionCache.put(contextLoader, cache);
+			}
+			return cache;
+		}
+	}
+
+	//取得资源的解析结果，没有缓存时并行解析所有同名资源
+	private static Definitions getDefinitions(String resource, String encoding) {
+		ConcurrentHashMap<String, Definitions> cache = getCache();
+		String key = DEFAULT_ENCODING.equals(encoding) ? resource : resource + "|" + encoding;
+		Definitions definitions = cache.get(key);
+		if (definitions == null) {
+			Definitions[] results = parse(IOUtil.getAllResources(null, resource), encoding);
+			definitions = merge(results, 0, results.length);
+			Definitions oldDefinitions = cache.putIfAbsent(key, definitions);
+			if (oldDefinitions != null) {
+				definitions = oldDefinitions;
+			}
+		}
+		return definitions;
+	}
+
+	private static Definitions merge(Definitions[] results, int from, int to) {
+		Definitions definitions = new Definitions();
+		for (int i = from; i < to; i++) {
+			definitions.definitionList.addAll(results[i].definitionList);
+			definitions.errorList.addAll(results[i].errorList);
+		}
+		return definitions;
+	}
+
+	//并行解析，结果和urls的顺序一致
+	private static Definitions[] parse(URL[] urls, final String encoding) {
+		Definitions[] results = new Definitions[urls.length];
+		if (urls.length == 1) {
+			results[0] = parse(urls[0], encoding);
+			return results;
+		}
+		Future[] futures = new Future[urls.length];
+		for (int i = 0; i < urls.length; i++) {
+			final URL url = urls[i];
+			try {
+				futures[i] = getParseExecutor().submit(new Callable<Definitions>() {
+					public Definitions call() throws Exception {
+						return parse(url, encoding);
+					}
+				});
+			} catch (Throwable ignore) {
+				//线程不够时在调用线程中解析
+				results[i] = parse(url, encoding);
+			}
+		}
+		for (int i = 0; i < urls.length; i++) {
+			if (futures[i] == null) {
+				continue;
+			}
+			try {
+				results[i] = (Definitions) futures[i].get();
+			} catch (Throwable e) {
+				results[i] = new Definitions();
+				results[i].errorList.add(new Throwable("load url[" + urls[i] + "] error!", e));
+			}
+		}
+		return results;
+	}
+
+	private static Definitions parse(URL url, String encoding) {
+		Definitions definitions = new Definitions();
 		InputStream in = null;
 		try {
 			in = url.openStream();
-			load(in);
+			parse(in, encoding, definitions);
 		} catch (Throwable e) {
-			errorList.add(new Throwable("load url[" + url + "] error!", e));
+			definitions.errorList.add(new Throwable("load url[" + url + "] error!", e));
 		} finally {
 			IOUtil.closeQuietly(in);
 		}
-		return this;
+		return definitions;
+	}
+
+	private static synchronized ExecutorService getParseExecutor() {
+		if (parseExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Runtime.getRuntime().availableProcessors(), 10000, TimeUnit.MILLISECONDS,
+					new SynchronousQueue<Runnable>(), new DefaultThreadFactory("service-extension-loader", true, false));
+			parseExecutor = executor;
+		}
+		return parseExecutor;
 	}
 
 	public String getEncoding() {
@@ -193,7 +355,7 @@ public class ServiceExtensionLoader<X> {
 		}
 		return returnList;
 	}
-	
+
 	public List<Throwable> getErrorList() {
 		return errorList;
 	}
@@ -202,18 +364,66 @@ public class ServiceExtensionLoader<X> {
 		return getExtensions().iterator();
 	}
 
+	/*
+	 * 一行配置的解析结果，不可修改，在进程内共享
+	 */
+	private static class Definition {
+
+		private final String className;
+
+		private int index = 100;
+
+		private Map<String, String> properties = new HashMap<String, String>();
+
+		Definition(String className) {
+			this.className = className;
+		}
+	}
+
+	/*
+	 * 一个资源的解析结果
+	 */
+	private static class Definitions {
+
+		private List<Definition> definitionList = new ArrayList<Definition>();
+
+		private List<Throwable> errorList = new ArrayList<Throwable>();
+	}
+
 	public static class Extension<X> {
 
-		private X extension = null;
-		
-		private Class<X> type = null;
+		private volatile X extension = null;
+
+		private volatile Class<X> type = null;
+
+		//类或者实例是否已经加载（加载失败时也不再重试）
+		private volatile boolean isTypeLoaded = false;
+
+		private volatile boolean isExtensionLoaded = false;
 
 		private int index = 100;
 
 		private Map<String, String> extProperty = new HashMap<String, String>();
-		
+
 		private String originalValue = null;
 
+		private ClassLoader classLoader = null;
+
+		private List<Throwable> errorList = null;
+
+		public Extension() {
+			isTypeLoaded = true;
+			isExtensionLoaded = true;
+		}
+
+		Extension(Definition definition, ClassLoader classLoader, List<Throwable> errorList) {
+			this.originalValue = definition.className;
+			this.index = definition.index;
+			this.extProperty.putAll(definition.properties);
+			this.classLoader = classLoader;
+			this.errorList = errorList;
+		}
+
 		public String getOriginalValue() {
 			return originalValue;
 		}
@@ -222,20 +432,68 @@ public class ServiceExtensionLoader<X> {
 			this.originalValue = originalValue;
 		}
 
+		/**
+		 * 取得扩展点实例，第一次调用时创建
+		 *
+		 * @return 扩展点实例，notNeedInstance=true或者创建失败时为null
+		 */
+		@SuppressWarnings("unchecked")
 		public X getExtension() {
+			if (!isExtensionLoaded) {
+				synchronized (this) {
+					if (!isExtensionLoaded) {
+						Class<X> clazz = getType();
+						if (clazz != null && "false".equalsIgnoreCase(getProperty("notNeedInstance", "false"))) {
+							try {
+								extension = (X)ReflectUtil.newInstance(clazz);
+							} catch (Throwable t) {
+								addError(new Throwable("Load class [" + originalValue + "] error!", t));
+							}
+						}
+						isExtensionLoaded = true;
+					}
+				}
+			}
 			return extension;
 		}
 
 		public void setExtension(X extension) {
 			this.extension = extension;
+			this.isExtensionLoaded = true;
 		}
 
+		/**
+		 * 取得扩展点类型，第一次调用时加载
+		 *
+		 * @return 扩展点类型，加载失败时为null
+		 */
+		@SuppressWarnings("unchecked")
 		public Class<X> getType() {
+			if (!isTypeLoaded) {
+				synchronized (this) {
+					if (!isTypeLoaded) {
+						try {
+							Class<X> clazz = ReflectUtil.loadClass(classLoader, originalValue);
+							type = clazz;
+						} catch (Throwable t) {
+							addError(new Throwable("Load class [" + originalValue + "] error!", t));
+						}
+						isTypeLoaded = true;
+					}
+				}
+			}
 			return type;
 		}
 
 		public void setType(Class<X> type) {
 			this.type = type;
+			this.isTypeLoaded = true;
+		}
+
+		private void addError(Throwable t) {
+			if (errorList != null) {
+				errorList.add(t);
+			}
 		}
 
 		public int getIndex() {
@@ -270,7 +528,7 @@ public class ServiceExtensionLoader<X> {
 		@Override
 		public String toString() {
 			StringBuffer buf = new StringBuffer();
-			buf.append("{index=").append(index).append(", ").append(extension.getClass().getName()).append("}");
+			buf.append("{index=").append(index).append(", ").append(originalValue).append("}");
 			return buf.toString();
 		}
 
@@ -18,6 +18,8 @@ package com.tools.utility.api;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.tools.utility.api.ServiceExtensionLoader.Extension;
+
 /**
  * 服务工厂类（根据配置）
  *
@@ -56,9 +58,11 @@ public class ServiceFactory {
 			synchronized(ServiceFactory.class) {
 				if (serviceMap.get(serviceClass) == null) {
 					ServiceExtensionLoader<S> loader = ServiceExtensionLoader.load(serviceClass);
-					List<S> serviceList = loader.getExtensions();
-					if (serviceList.size() > 0) {
-						serviceMap.put(serviceClass, serviceList.get(0));
+					//只创建第一个扩展点的实例
+					List<Extension<S>> extensionList = loader.getExtensionObjects();
+					S service = extensionList.isEmpty() ? null : extensionList.get(0).getExtension();
+					if (service != null) {
+						serviceMap.put(serviceClass, service);
 					}
 				}
 			}
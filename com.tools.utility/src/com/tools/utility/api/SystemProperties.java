@@ -24,6 +24,7 @@ import java.io.PrintStream;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 系统属性助手类
@@ -33,6 +34,9 @@ import java.util.Properties;
 public class SystemProperties {
 
 	private static Properties properties = new Properties();
+	
+	//属性版本号，通过本类修改属性时加一
+	private static AtomicLong version = new AtomicLong();
 
 	/**
 	 * 取得系统属性值.<br>
@@ -51,6 +55,28 @@ public class SystemProperties {
 		return value;
 	}
 
+	/**
+	 * 取得通过本类设置的属性值，不包括JVM系统属性.<br>
+	 * 
+	 * @param key key键
+	 * @return 属性值
+	 */
+	public static String getLocalProperty(String key) {
+		if (key == null) {
+			throw new IllegalArgumentException("key is null!");
+		}
+		return properties.getProperty(key);
+	}
+
+	/**
+	 * 取得属性版本号，通过本类修改属性后变化，不跟踪JVM系统属性的修改.<br>
+	 * 
+	 * @return 版本号
+	 */
+	public static long getVersion() {
+		return version.get();
+	}
+
 	/**
 	 * 取得系统属性值.<br>
 	 * 
@@ -107,6 +133,7 @@ public class SystemProperties {
 			throw new IllegalArgumentException("value is null!");
 		}
 		properties.setProperty(key, value);
+		version.incrementAndGet();
 	}
 
 	/**
@@ -119,6 +146,7 @@ public class SystemProperties {
 			return;
 		}
 		properties.putAll(props);
+		version.incrementAndGet();
 	}
 	
 	/**
@@ -147,7 +175,11 @@ public class SystemProperties {
 		if (inStream == null) {
 			throw new IllegalArgumentException("inStream is null!");
 		}
-		properties.load(inStream);
+		try {
+			properties.load(inStream);
+		} finally {
+			version.incrementAndGet();
+		}
 	}
 
 	/**
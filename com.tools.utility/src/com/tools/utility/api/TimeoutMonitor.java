@@ -15,32 +15,52 @@
  */
 package com.tools.utility.api;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.tools.logger.api.ILogger;
+import com.tools.logger.api.LoggerFactory;
 
 /**
- * 超时监控器
+ * 超时监控器<br>
+ * 
+ * 使用哈希时间轮：时间轮有wheelSize个槽，每隔idle毫秒（精度）前进一个槽，
+ * 超时对象按到期时间放入对应的槽，超过一圈的记录剩余圈数；
+ * 设置、删除超时监控都是O(1)的，监控线程每次只处理当前槽中的超时对象。
+ * 超时在到期后的一个精度之内触发。<br>
+ * 
+ * 每个超时对象只有一条记录（超时时间、起始时间、触发动作），记录不可修改，修改时整体替换；
+ * 同一个槽中到期的触发动作按dispatchBatchSize分批提交给timeoutExecutor执行。
  * 
  * @author wuyuhou
  *
  */
 public class TimeoutMonitor {
 	
+	private static ILogger logger = LoggerFactory.getLogger(TimeoutMonitor.class);
+	
 	/**
 	 * 静态实例，便于使用
 	 */
 	public static TimeoutMonitor INSTANCE = new TimeoutMonitor();
 	
-	//超时时间
-	private ConcurrentHashMap<Object, Long> timeoutMap = new ConcurrentHashMap<Object, Long>();
+	//超时对象 -> 超时记录
+	private ConcurrentHashMap<Object, TimeoutEntry> timeoutMap = new ConcurrentHashMap<Object, TimeoutEntry>();
 	
-	//超时的起始计时时间
-	private ConcurrentHashMap<Object, Long> beginTimeMap = new ConcurrentHashMap<Object, Long>();
+	//等待放入时间轮的超时对象，由监控线程放入
+	private Queue<TimeoutEntry> pendingQueue = new ConcurrentLinkedQueue<TimeoutEntry>();
 	
-	//超时触发策略
-	private ConcurrentHashMap<Object, Runnable> timeoutRunableMap = new ConcurrentHashMap<Object, Runnable>();
+	//已经取消的超时对象，由监控线程从时间轮中删除
+	private Queue<TimeoutEntry> cancelledQueue = new ConcurrentLinkedQueue<TimeoutEntry>();
 	
 	//超时监控线程
 	private Thread timeoutMonitorThread = null;
@@ -49,106 +69,268 @@ public class TimeoutMonitor {
 	private boolean isStarted = false;
 	
 	//是否停止监控
-	private boolean isStopMonitor = false;
+	private volatile boolean isStopMonitor = false;
 	
-	//空闲间隔时间
+	//空闲间隔时间，也就是时间轮每个槽的时间长度（精度）
 	private int idle = 50;
 	
-	//超时策略执行线程池
-	private ThreadPoolExecutor timeoutExecutor = null;
+	//时间轮的槽数
+	private int wheelSize = 512;
+	
+	//每批提交的触发动作个数
+	private int dispatchBatchSize = 32;
+	
+	//超时策略执行线程池，没有设置时启动时创建
+	private ExecutorService timeoutExecutor = null;
+	
+	//启动时创建的线程池是否使用虚拟线程（运行环境支持时）
+	private boolean isUseVirtualThread = true;
+	
+	//正在计时的超时对象个数
+	private AtomicLong liveCount = new AtomicLong();
+	
+	//累计触发次数
+	private AtomicLong expiredCount = new AtomicLong();
+	
+	//最近一秒的每秒触发次数
+	private volatile long expiredPerSecond = 0;
+	
+	//最近一次、最大的触发延迟（从到期到开始执行触发动作的毫秒数）
+	private volatile long dispatchLag = 0;
+	
+	private AtomicLong maxDispatchLag = new AtomicLong();
 	
 	public int getIdle() {
 		return idle;
 	}
 
+	/**
+	 * 设置精度（毫秒），启动前设置有效
+	 * 
+	 * @param idle 精度
+	 */
 	public void setIdle(int idle) {
 		this.idle = idle;
 	}
 
+	public int getWheelSize() {
+		return wheelSize;
+	}
+
+	/**
+	 * 设置时间轮的槽数，会调整为2的幂，启动前设置有效；
+	 * 槽数乘以精度小于大部分超时时间时，超时对象需要在时间轮上转多圈
+	 * 
+	 * @param wheelSize 槽数
+	 */
+	public void setWheelSize(int wheelSize) {
+		if (wheelSize <= 0 || wheelSize > (1 << 20)) {
+			throw new IllegalArgumentException("wheelSize'" + wheelSize + "' is error!");
+		}
+		this.wheelSize = wheelSize;
+	}
+
+	public int getDispatchBatchSize() {
+		return dispatchBatchSize;
+	}
+
+	/**
+	 * 设置每批提交的触发动作个数，1表示每个触发动作单独提交
+	 * 
+	 * @param dispatchBatchSize 每批个数
+	 */
+	public void setDispatchBatchSize(int dispatchBatchSize) {
+		if (dispatchBatchSize <= 0) {
+			throw new IllegalArgumentException("dispatchBatchSize'" + dispatchBatchSize + "' is error!");
+		}
+		this.dispatchBatchSize = dispatchBatchSize;
+	}
+
+	/**
+	 * 正在计时（已经设置超时时间、起始时间、触发动作，还没有触发）的超时对象个数
+	 * 
+	 * @return 个数
+	 */
+	public long getLiveCount() {
+		return liveCount.get();
+	}
+
+	/**
+	 * 累计触发次数
+	 * 
+	 * @return 次数
+	 */
+	public long getExpiredCount() {
+		return expiredCount.get();
+	}
+
+	/**
+	 * 最近一秒的触发次数
+	 * 
+	 * @return 次数
+	 */
+	public long getExpiredPerSecond() {
+		return expiredPerSecond;
+	}
+
+	/**
+	 * 最近一次触发的延迟，持续增大说明触发动作执行不过来
+	 * 
+	 * @return 从到期到开始执行触发动作的毫秒数
+	 */
+	public long getDispatchLag() {
+		return dispatchLag;
+	}
+
+	/**
+	 * 最大的触发延迟
+	 * 
+	 * @return 从到期到开始执行触发动作的毫秒数
+	 */
+	public long getMaxDispatchLag() {
+		return maxDispatchLag.get();
+	}
+
+	/**
+	 * 取得超时策略执行线程池
+	 * 
+	 * @return 线程池，不是ThreadPoolExecutor（比如虚拟线程的线程池）时返回null
+	 * @see #getTimeoutExecutorService()
+	 */
 	public ThreadPoolExecutor getTimeoutExecutor() {
+		ExecutorService executor = timeoutExecutor;
+		return executor instanceof ThreadPoolExecutor ? (ThreadPoolExecutor)executor : null;
+	}
+
+	/**
+	 * 取得超时策略执行线程池
+	 * 
+	 * @return 线程池，没有设置并且没有启动时返回null
+	 */
+	public ExecutorService getTimeoutExecutorService() {
 		return timeoutExecutor;
 	}
 
-	public void setTimeoutExecutor(ThreadPoolExecutor timeoutExecutor) {
+	public void setTimeoutExecutor(ExecutorService timeoutExecutor) {
 		this.timeoutExecutor = timeoutExecutor;
 	}
 
+	public boolean isUseVirtualThread() {
+		return isUseVirtualThread;
+	}
+
+	/**
+	 * 设置启动时创建的线程池是否使用虚拟线程，触发动作中有阻塞IO时不会占满线程池；
+	 * 运行环境不支持虚拟线程或者已经设置了线程池时不起作用
+	 * 
+	 * @param isUseVirtualThread 是否使用虚拟线程
+	 */
+	public void setUseVirtualThread(boolean isUseVirtualThread) {
+		this.isUseVirtualThread = isUseVirtualThread;
+	}
+
 	/**
 	 * 启动
 	 */
-	public void start() {
+	public synchronized void start() {
 		if (isStarted) {
 			return;
 		}
 		if (idle <= 0) {
 			idle = 50;
 		}
+		if (timeoutExecutor == null && isUseVirtualThread) {
+			timeoutExecutor = DefaultThreadFactory.newVirtualThreadPerTaskExecutor("timeout-run");
+		}
 		if (timeoutExecutor == null) {
-			timeoutExecutor = new ThreadPoolExecutor(5, 10, 60000, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new DefaultThreadFactory("timeout-run"));
+			//队列没有上限时线程数不会超过核心线程数，所以核心线程数取最大值，空闲时回收
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(10, 10, 60000, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new DefaultThreadFactory("timeout-run"));
+			executor.allowCoreThreadTimeOut(true);
+			timeoutExecutor = executor;
 		}
 		isStopMonitor = false;
+		//重新启动时，正在计时的超时对象重新放入新的时间轮
+		pendingQueue.clear();
+		cancelledQueue.clear();
+		for (TimeoutEntry entry : timeoutMap.values()) {
+			if (entry.isScheduled()) {
+				entry.bucket = null;
+				entry.prev = null;
+				entry.next = null;
+				pendingQueue.add(entry);
+			}
+		}
+		final TimingWheel wheel = new TimingWheel(idle, wheelSize);
 		timeoutMonitorThread = new Thread("timeoutMonitorThread") {
 			@Override
 			public void run() {
-				while(true) {
-					if (isStopMonitor) {
-						break;
-					}
-					if (!timeoutMap.isEmpty()) {
-						if (!beginTimeMap.isEmpty()) {
-							for (Object key : timeoutMap.keySet().toArray()) {
-								Long beginTime = beginTimeMap.get(key);
-								Runnable runable = timeoutRunableMap.get(key);
-								if (beginTime != null && runable != null) {
-									long timeout = timeoutMap.get(key);
-									//超时
-									if (System.currentTimeMillis() - beginTime > timeout) {
-										//触发后删除超时监控
-										beginTimeMap.remove(key);
-										timeout(runable);
-									}
-								}
-							}
-						}
-					}
-					try {
-						Thread.sleep(idle);
-					} catch (InterruptedException ignore) {
-					}
-				}
+				wheel.run();
 			}
 		};
 		timeoutMonitorThread.start();
 		isStarted = true;
 	}
 	
-	private void timeout(final Runnable runable) {
-		if (runable == null) {
-			return;
+	//分批执行触发动作
+	private void timeout(List<TimeoutEntry> expiredList) {
+		ExecutorService executor = timeoutExecutor;
+		for (int i = 0; i < expiredList.size(); i += dispatchBatchSize) {
+			final TimeoutEntry[] batch = expiredList.subList(i, Math.min(i + dispatchBatchSize, expiredList.size()))
+					.toArray(new TimeoutEntry[0]);
+			Runnable task = new Runnable() {
+				public void run() {
+					runBatch(batch);
+				}
+			};
+			if (executor == null) {
+				task.run();
+				continue;
+			}
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.run();
+			}
+		}
+	}
+	
+	private void runBatch(TimeoutEntry[] batch) {
+		for (TimeoutEntry entry : batch) {
+			long lag = System.currentTimeMillis() - entry.deadline;
+			dispatchLag = lag;
+			long max = maxDispatchLag.get();
+			while (lag > max && !maxDispatchLag.compareAndSet(max, lag)) {
+				max = maxDispatchLag.get();
+			}
+			try {
+				entry.runable.run();
+			} catch (Throwable t) {
+				logger.error("Timeout action of '" + entry.key + "' failed", t);
+			}
 		}
-		if (timeoutExecutor == null) {
-			runable.run();
-		} else {
-			timeoutExecutor.execute(runable);
-		}		
 	}
 	
 	/**
 	 * 停止
 	 */
-	public void stop() {
+	public synchronized void stop() {
 		if (!isStarted) {
 			return;
 		}
 		isStopMonitor = true;
-		if (timeoutExecutor != null) {
-			timeoutExecutor.shutdown();
-			timeoutExecutor = null;
-		}
 		if (timeoutMonitorThread != null) {
 			timeoutMonitorThread.interrupt();
+			try {
+				timeoutMonitorThread.join(5000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
 			timeoutMonitorThread = null;
 		}
+		if (timeoutExecutor != null) {
+			timeoutExecutor.shutdown();
+			timeoutExecutor = null;
+		}
 		isStarted = false;
 	}
 	
@@ -169,8 +351,13 @@ public class TimeoutMonitor {
 		if (run == null) {
 			throw new IllegalArgumentException("runnable is null!");
 		}
-		timeoutMap.put(obj, timeout);
-		timeoutRunableMap.put(obj, run);
+		TimeoutEntry oldEntry = null;
+		TimeoutEntry newEntry = null;
+		do {
+			oldEntry = timeoutMap.get(obj);
+			newEntry = new TimeoutEntry(obj, timeout, oldEntry == null ? 0 : oldEntry.beginTime, run);
+		} while (!replace(obj, oldEntry, newEntry));
+		schedule(oldEntry, newEntry);
 	}
 	
 	/**
@@ -182,9 +369,7 @@ public class TimeoutMonitor {
 		if (obj == null) {
 			throw new IllegalArgumentException("obj is null!");
 		}
-		timeoutMap.remove(obj);
-		beginTimeMap.remove(obj);
-		timeoutRunableMap.remove(obj);
+		schedule(timeoutMap.remove(obj), null);
 	}
 	
 	/**
@@ -200,6 +385,264 @@ public class TimeoutMonitor {
 		if (beginTime <= 0) {
 			throw new IllegalArgumentException("beginTime cannot less than zero!");
 		}
-		beginTimeMap.put(obj, beginTime);
+		TimeoutEntry oldEntry = null;
+		TimeoutEntry newEntry = null;
+		do {
+			oldEntry = timeoutMap.get(obj);
+			if (oldEntry == null) {
+				newEntry = new TimeoutEntry(obj, 0, beginTime, null);
+			} else {
+				newEntry = new TimeoutEntry(obj, oldEntry.timeout, beginTime, oldEntry.runable);
+			}
+		} while (!replace(obj, oldEntry, newEntry));
+		schedule(oldEntry, newEntry);
+	}
+	
+	private boolean replace(Object obj, TimeoutEntry oldEntry, TimeoutEntry newEntry) {
+		if (oldEntry == null) {
+			return timeoutMap.putIfAbsent(obj, newEntry) == null;
+		}
+		return timeoutMap.replace(obj, oldEntry, newEntry);
+	}
+	
+	//取消原来的计时，超时时间、起始时间、触发动作都设置后开始新的计时
+	private void schedule(TimeoutEntry oldEntry, TimeoutEntry newEntry) {
+		if (oldEntry != null && oldEntry.isScheduled()) {
+			oldEntry.isCancelled = true;
+			cancelledQueue.add(oldEntry);
+			liveCount.decrementAndGet();
+		}
+		if (newEntry != null && newEntry.isScheduled()) {
+			liveCount.incrementAndGet();
+			pendingQueue.add(newEntry);
+		}
+	}
+	
+	//到期，记录已经被替换或者删除时不触发；触发后删除起始时间，保留超时时间和触发动作
+	private boolean expire(TimeoutEntry entry) {
+		if (timeoutMap.replace(entry.key, entry, new TimeoutEntry(entry.key, entry.timeout, 0, entry.runable))) {
+			liveCount.decrementAndGet();
+			expiredCount.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+	
+	/*
+	 * 超时记录，同时是时间轮槽中双向链表的节点
+	 */
+	private static class TimeoutEntry {
+		
+		private final Object key;
+		
+		//超时时间，0表示没有设置
+		private final long timeout;
+		
+		//起始时间，0表示没有设置
+		private final long beginTime;
+		
+		//超时触发策略，null表示没有设置
+		private final Runnable runable;
+		
+		//到期时间，超过超时时间后才触发；溢出时为Long.MAX_VALUE，永不触发
+		private final long deadline;
+		
+		private volatile boolean isCancelled = false;
+		
+		//以下只由监控线程访问
+		private TimeoutEntry prev;
+		
+		private TimeoutEntry next;
+		
+		private Bucket bucket;
+		
+		private long remainingRounds;
+		
+		TimeoutEntry(Object key, long timeout, long beginTime, Runnable runable) {
+			this.key = key;
+			this.timeout = timeout;
+			this.beginTime = beginTime;
+			this.runable = runable;
+			this.deadline = timeout >= Long.MAX_VALUE - beginTime ? Long.MAX_VALUE : beginTime + timeout + 1;
+		}
+		
+		//是否需要计时
+		boolean isScheduled() {
+			return timeout > 0 && beginTime > 0 && runable != null && deadline != Long.MAX_VALUE;
+		}
+	}
+	
+	/*
+	 * 时间轮的槽
+	 */
+	private static class Bucket {
+		
+		private TimeoutEntry head;
+		
+		private TimeoutEntry tail;
+		
+		void add(TimeoutEntry entry) {
+			entry.bucket = this;
+			entry.prev = tail;
+			entry.next = null;
+			if (tail == null) {
+				head = entry;
+			} else {
+				tail.next = entry;
+			}
+			tail = entry;
+		}
+		
+		void remove(TimeoutEntry entry) {
+			if (entry.prev == null) {
+				head = entry.next;
+			} else {
+				entry.prev.next = entry.next;
+			}
+			if (entry.next == null) {
+				tail = entry.prev;
+			} else {
+				entry.next.prev = entry.prev;
+			}
+			entry.prev = null;
+			entry.next = null;
+			entry.bucket = null;
+		}
+	}
+	
+	/*
+	 * 时间轮，只在监控线程中运行
+	 */
+	private class TimingWheel {
+		
+		private final long tickDuration;
+		
+		private final Bucket[] buckets;
+		
+		private final int mask;
+		
+		//时间轮启动时的系统时间
+		private long startTime;
+		
+		private long tick = 0;
+		
+		//同一个槽中到期的超时记录，复用
+		private List<TimeoutEntry> expiredList = new ArrayList<TimeoutEntry>();
+		
+		//统计每秒触发次数的起始时间、起始累计次数
+		private long rateTime = 0;
+		
+		private long rateCount = 0;
+		
+		TimingWheel(long tickDuration, int wheelSize) {
+			int size = 1;
+			while (size < wheelSize) {
+				size <<= 1;
+			}
+			this.tickDuration = tickDuration;
+			this.buckets = new Bucket[size];
+			for (int i = 0; i < size; i++) {
+				buckets[i] = new Bucket();
+			}
+			this.mask = size - 1;
+		}
+		
+		void run() {
+			startTime = System.currentTimeMillis();
+			while (!isStopMonitor) {
+				long now = waitForNextTick();
+				if (isStopMonitor) {
+					break;
+				}
+				removeCancelled();
+				transferPending();
+				expireBucket(buckets[(int)(tick & mask)], now);
+				if (!expiredList.isEmpty()) {
+					timeout(expiredList);
+					expiredList.clear();
+				}
+				updateRate(now);
+				tick++;
+			}
+		}
+		
+		//等到当前槽的结束时间
+		private long waitForNextTick() {
+			long tickEnd = startTime + (tick + 1) * tickDuration;
+			for (;;) {
+				long now = System.currentTimeMillis();
+				long sleepTime = tickEnd - now;
+				//系统时间被调整时重新对齐
+				if (sleepTime > tickDuration) {
+					startTime = now - (tick + 1) * tickDuration;
+					return now;
+				}
+				if (sleepTime <= 0) {
+					return now;
+				}
+				try {
+					Thread.sleep(sleepTime);
+				} catch (InterruptedException ignore) {
+					if (isStopMonitor) {
+						return now;
+					}
+				}
+			}
+		}
+		
+		private void updateRate(long now) {
+			if (rateTime == 0) {
+				rateTime = now;
+				rateCount = expiredCount.get();
+			} else if (now - rateTime >= 1000) {
+				long count = expiredCount.get();
+				expiredPerSecond = (count - rateCount) * 1000 / (now - rateTime);
+				rateTime = now;
+				rateCount = count;
+			}
+		}
+		
+		private void removeCancelled() {
+			TimeoutEntry entry = null;
+			while ((entry = cancelledQueue.poll()) != null) {
+				if (entry.bucket != null) {
+					entry.bucket.remove(entry);
+				}
+			}
+		}
+		
+		private void transferPending() {
+			TimeoutEntry entry = null;
+			while ((entry = pendingQueue.poll()) != null) {
+				if (entry.isCancelled || entry.bucket != null) {
+					continue;
+				}
+				//到期时间所在的槽，已经到期的放入当前槽；先减再除，到期时间很大时不溢出
+				long expireTick = (entry.deadline - startTime - 1) / tickDuration;
+				if (expireTick < tick) {
+					expireTick = tick;
+				}
+				entry.remainingRounds = (expireTick - tick) / buckets.length;
+				buckets[(int)(expireTick & mask)].add(entry);
+			}
+		}
+		
+		private void expireBucket(Bucket bucket, long now) {
+			TimeoutEntry entry = bucket.head;
+			while (entry != null) {
+				TimeoutEntry next = entry.next;
+				if (entry.isCancelled) {
+					bucket.remove(entry);
+				} else if (entry.remainingRounds <= 0 && entry.deadline <= now) {
+					bucket.remove(entry);
+					if (expire(entry)) {
+						expiredList.add(entry);
+					}
+				} else if (entry.remainingRounds > 0) {
+					entry.remainingRounds--;
+				}
+				entry = next;
+			}
+		}
 	}
 }
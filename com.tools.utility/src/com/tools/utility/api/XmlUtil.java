@@ -15,6 +15,7 @@
  */
 package com.tools.utility.api;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -25,6 +26,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
 import java.util.StringTokenizer;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -37,7 +41,9 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
@@ -282,6 +288,153 @@ public final class XmlUtil {
 		}
 	}
 
+	/**
+	 * 按原样输出一个Node节点（不格式化，保留原有的空白），比save快得多，适合已经格式化过的Document
+	 *
+	 * @param node node节点
+	 * @param out 输出
+	 * @param encoding 编码，为空时为UTF-8
+	 * @throws IOException 输出出错
+	 */
+	public static void write(Node node, OutputStream out, String encoding) throws IOException {
+		if (node == null) {
+			throw new IllegalArgumentException("Node is null!");
+		}
+		if (out == null) {
+			throw new IllegalArgumentException("OutputStream is null!");
+		}
+		if (encoding == null || encoding.trim().length() == 0) {
+			encoding = "UTF-8";
+		}
+		Charset charset = Charset.forName(encoding);
+		//UTF编码可以输出所有字符，不用检查
+		CharsetEncoder encoder = charset.name().startsWith("UTF") ? null : charset.newEncoder();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset), 8192);
+		if (node.getNodeType() == Node.DOCUMENT_NODE) {
+			writer.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\" standalone=\"no\"?>");
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				writer.write('\n');
+				write(child, writer, encoder);
+			}
+			writer.write('\n');
+		} else {
+			write(node, writer, encoder);
+		}
+		writer.flush();
+	}
+
+	private static void write(Node node, Writer writer, CharsetEncoder encoder) throws IOException {
+		switch (node.getNodeType()) {
+		case Node.ELEMENT_NODE:
+			writer.write('<');
+			writer.write(node.getNodeName());
+			NamedNodeMap attributes = node.getAttributes();
+			for (int i = 0; i < attributes.getLength(); i++) {
+				Node attribute = attributes.item(i);
+				writer.write(' ');
+				writer.write(attribute.getNodeName());
+				writer.write("=\"");
+				writeEscaped(attribute.getNodeValue(), writer, encoder, true);
+				writer.write('"');
+			}
+			if (node.getFirstChild() == null) {
+				writer.write("/>");
+			} else {
+				writer.write('>');
+				for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+					write(child, writer, encoder);
+				}
+				writer.write("</");
+				writer.write(node.getNodeName());
+				writer.write('>');
+			}
+			break;
+		case Node.TEXT_NODE:
+			writeEscaped(node.getNodeValue(), writer, encoder, false);
+			break;
+		case Node.CDATA_SECTION_NODE:
+			writer.write("<![CDATA[");
+			writer.write(node.getNodeValue().replace("]]>", "]]]]><![CDATA[>"));
+			writer.write("]]>");
+			break;
+		case Node.COMMENT_NODE:
+			writer.write("<!--");
+			writer.write(node.getNodeValue());
+			writer.write("-->");
+			break;
+		case Node.PROCESSING_INSTRUCTION_NODE:
+			writer.write("<?");
+			writer.write(node.getNodeName());
+			String data = node.getNodeValue();
+			if (data != null && data.length() > 0) {
+				writer.write(' ');
+				writer.write(data);
+			}
+			writer.write("?>");
+			break;
+		case Node.DOCUMENT_TYPE_NODE:
+			DocumentType docType = (DocumentType)node;
+			writer.write("<!DOCTYPE ");
+			writer.write(docType.getName());
+			if (docType.getPublicId() != null) {
+				writer.write(" PUBLIC \"" + docType.getPublicId() + "\" \"" + docType.getSystemId() + "\"");
+			} else if (docType.getSystemId() != null) {
+				writer.write(" SYSTEM \"" + docType.getSystemId() + "\"");
+			}
+			if (docType.getInternalSubset() != null) {
+				writer.write(" [" + docType.getInternalSubset() + "]");
+			}
+			writer.write('>');
+			break;
+		default:
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				write(child, writer, encoder);
+			}
+		}
+	}
+
+	private static void writeEscaped(String value, Writer writer, CharsetEncoder encoder, boolean isAttribute) throws IOException {
+		int length = value.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			String replacement = null;
+			if (c == '&') {
+				replacement = "&amp;";
+			} else if (c == '<') {
+				replacement = "&lt;";
+			} else if (c == '>' && !isAttribute) {
+				replacement = "&gt;";
+			} else if (c == '"' && isAttribute) {
+				replacement = "&quot;";
+			} else if (c == '\r' || (isAttribute && (c == '\n' || c == '\t'))) {
+				replacement = "&#" + (int)c + ";";
+			} else if (c >= 0x80 && encoder != null) {
+				int codePoint = value.codePointAt(i);
+				String ch = new String(Character.toChars(codePoint));
+				if (!encoder.canEncode(ch)) {
+					replacement = "&#" + codePoint + ";";
+				}
+				if (Character.charCount(codePoint) == 2) {
+					if (replacement == null) {
+						i++;
+						continue;
+					}
+					writer.write(value, start, i - start);
+					writer.write(replacement);
+					start = ++i + 1;
+					continue;
+				}
+			}
+			if (replacement != null) {
+				writer.write(value, start, i - start);
+				writer.write(replacement);
+				start = i + 1;
+			}
+		}
+		writer.write(value, start, length - start);
+	}
+
 	/**
 	 * 通过Xpath查找一个节点<br><pre>
 	 *
@@ -24,10 +24,14 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -37,6 +41,7 @@ import org.w3c.dom.NodeList;
 import com.tools.utility.api.IOUtil;
 import com.tools.utility.api.XmlUtil;
 import com.tools.utility.impl.config.ConfigurationHelper;
+import com.tools.utility.impl.config.VersionedProperties;
 
 /**
  * 三段式配置信息类。<br>
@@ -83,6 +88,33 @@ import com.tools.utility.impl.config.ConfigurationHelper;
 public class Configuration implements Serializable, Cloneable {
 	
 	private static final long serialVersionUID = -3467623613804896461L;
+	
+	//POSIX文件权限相关方法，运行环境不支持时为null
+	private static Method toPathMethod = null;
+	
+	private static Method getPosixFilePermissionsMethod = null;
+	
+	private static Method setPosixFilePermissionsMethod = null;
+	
+	private static Object noLinkOptions = null;
+	
+	static {
+		try {
+			Class filesClass = Class.forName("java.nio.file.Files");
+			Class pathClass = Class.forName("java.nio.file.Path");
+			Class linkOptionClass = Class.forName("java.nio.file.LinkOption");
+			Object linkOptions = Array.newInstance(linkOptionClass, 0);
+			Method toPath = File.class.getMethod("toPath");
+			Method getPermissions = filesClass.getMethod("getPosixFilePermissions", pathClass, linkOptions.getClass());
+			Method setPermissions = filesClass.getMethod("setPosixFilePermissions", pathClass, Set.class);
+			toPathMethod = toPath;
+			getPosixFilePermissionsMethod = getPermissions;
+			setPosixFilePermissionsMethod = setPermissions;
+			noLinkOptions = linkOptions;
+		} catch (Throwable ignore) {
+			
+		}
+	}
 
 	/** 配置文件路径 */
 	private String filePath = null;
@@ -99,7 +131,10 @@ public class Configuration implements Serializable, Cloneable {
 	private Map<String, Module> modules = new LinkedHashMap<String, Module>();
 	
 	/** 属性信息 */
-	private Properties _prop = new Properties();
+	private Properties _prop = new VersionedProperties();
+	
+	//增加、删除、替换了Module，或者修改了描述，还没有保存到Document
+	private transient boolean isDirty = false;
 	
 	////////////////////////////////////////////////////////////
 	//下面是定义的常量
@@ -124,6 +159,9 @@ public class Configuration implements Serializable, Cloneable {
 	
 	final static String PROPERTY_VALUE = "value";
 	
+	//保存时新增节点的缩进
+	private final static String INDENT = "    ";
+	
 	/**
 	 * 
 	 * 构造方法（默认）
@@ -257,6 +295,7 @@ public class Configuration implements Serializable, Cloneable {
 
 	public void setDescription(String description) {
 		this.description = description;
+		isDirty = true;
 	}
 
 	/**
@@ -314,6 +353,7 @@ public class Configuration implements Serializable, Cloneable {
 		}
 		Module newModule = new Module(moduleName);
 		this.modules.put(moduleName, newModule);
+		isDirty = true;
 		return newModule;
 	}
 
@@ -331,6 +371,7 @@ public class Configuration implements Serializable, Cloneable {
 		} else {
 			this.modules.put(moduleName, module);
 			module._prop = _prop;
+			isDirty = true;
 			return module;
 		}
 	}
@@ -347,6 +388,7 @@ public class Configuration implements Serializable, Cloneable {
 		if (moduleRet == null) {
 			this.modules.put(moduleName, module);
 			module._prop = _prop;
+			isDirty = true;
 		} else {
 			for (Group group : module.groups.values()) {
 				moduleRet.mergeGroup(group);
@@ -385,6 +427,7 @@ public class Configuration implements Serializable, Cloneable {
 			return null;
 		}
 		this.modules.remove(moduleName);
+		isDirty = true;
 		return module;
 	}
 
@@ -541,6 +584,27 @@ public class Configuration implements Serializable, Cloneable {
 			return value;
 		}
 	}
+	
+	/**
+	 * 创建只读快照，按“module/group/key”平铺，并且已经替换了${}变量<br>
+	 * 
+	 * Configuration本身不是线程安全的，需要在修改配置的线程中（或者和修改使用同一个锁）创建快照；
+	 * 快照创建后不再随配置变化，可以在多个线程中无锁读取。
+	 *
+	 * @return 快照
+	 */
+	public ConfigurationSnapshot snapshot() {
+		Map<String, String> values = new HashMap<String, String>();
+		for (Entry<String, Module> moduleEntry : modules.entrySet()) {
+			for (Entry<String, Group> groupEntry : moduleEntry.getValue().getGroups().entrySet()) {
+				for (Entry<String, Value> valueEntry : groupEntry.getValue().getValues().entrySet()) {
+					values.put(ConfigurationSnapshot.toPath(moduleEntry.getKey(), groupEntry.getKey(), valueEntry.getKey()),
+							valueEntry.getValue().getValue());
+				}
+			}
+		}
+		return new ConfigurationSnapshot(values);
+	}
 
 	/**
 	 * 添加一个 configValue 配置项, moduleName groupName 如果不存在, 将被创建<br>
@@ -640,7 +704,21 @@ public class Configuration implements Serializable, Cloneable {
 	}
 
 	/**
-	 * 保存Configuration
+	 * 标记所有配置都已经修改，下次保存时和Document全部比较<br>
+	 * 
+	 * 通过getModules()、getGroups()、getValues()直接修改哈希表后需要调用，其他修改方法会自动记录修改的位置。
+	 */
+	public void markDirty() {
+		isDirty = true;
+		for (Module module : modules.values()) {
+			module._dirty = true;
+		}
+	}
+
+	/**
+	 * 保存Configuration，只更新修改过的节点，没有修改时不写文件<br>
+	 * 
+	 * 先写到同一个目录下的临时文件，再改名为配置文件，保存过程中出错时不会破坏原来的配置文件。
 	 *
 	 *  @throws ConfigurationRuntimeException 抛出条件：文件路径不存在，或者文件无法保存
 	 */
@@ -652,16 +730,12 @@ public class Configuration implements Serializable, Cloneable {
 			throw new ConfigurationRuntimeException("filepath is null!");
 		}
 		
-		OutputStream out = null;
 		try {
-			if (isModifyAndUpdateDocument(this, true)) {
-				out = new FileOutputStream(filePath);
-				XmlUtil.save(document, out, true, encoding);
-			}			
+			if (updateDocument()) {
+				write(new File(filePath));
+			}
 		} catch (Exception e) {
 			throw new ConfigurationRuntimeException("the document cannot save to [path={0}]!", new String[]{filePath}, e);
-		} finally {
-			IOUtil.closeQuietly(out);
 		}
 	}
  
@@ -684,18 +758,63 @@ public class Configuration implements Serializable, Cloneable {
 		if (this.document == null) {
 			throw new ConfigurationRuntimeException("the document is null!");
 		}
-		OutputStream out = null;
 		try {
-			isModifyAndUpdateDocument(this, true);
-			out = new FileOutputStream(configFile);
-			XmlUtil.save(document, out, true, encoding);
+			updateDocument();
+			write(configFile);
 		} catch (Exception e) {
 			throw new ConfigurationRuntimeException("the document cannot save to [path={0}]!", new Object[]{configFile}, e);
+		}
+	}
+	
+	//写到临时文件，再改名为目标文件；临时文件复制目标文件的权限，文件所有者和ACL不保留
+	private void write(File configFile) throws IOException {
+		File dir = configFile.getAbsoluteFile().getParentFile();
+		File tempFile = File.createTempFile(configFile.getName() + ".", ".tmp", dir);
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(tempFile);
+			if (isFormatted(document.getDocumentElement())) {
+				//已经格式化过，按原样输出
+				XmlUtil.write(document, out, encoding);
+			} else {
+				XmlUtil.save(document, out, true, encoding);
+			}
+			out.close();
+			out = null;
+			if (configFile.exists()) {
+				copyPermissions(configFile, tempFile);
+			}
+			if (!tempFile.renameTo(configFile)) {
+				//有的平台上目标文件存在时不能改名
+				if (!configFile.delete() || !tempFile.renameTo(configFile)) {
+					throw new IOException("Cannot rename '" + tempFile + "' to '" + configFile + "'!");
+				}
+			}
+			tempFile = null;
 		} finally {
 			IOUtil.closeQuietly(out);
+			if (tempFile != null) {
+				tempFile.delete();
+			}
 		}
 	}
 	
+	//复制文件权限：支持POSIX权限时复制全部权限位，否则只复制当前用户的读、写、执行权限
+	private static void copyPermissions(File from, File to) {
+		if (toPathMethod != null) {
+			try {
+				Object permissions = getPosixFilePermissionsMethod.invoke(null, toPathMethod.invoke(from), noLinkOptions);
+				setPosixFilePermissionsMethod.invoke(null, toPathMethod.invoke(to), permissions);
+				return;
+			} catch (Exception ignore) {
+				//文件系统不支持POSIX权限
+			}
+		}
+		to.setReadable(from.canRead());
+		to.setWritable(from.canWrite());
+		to.setExecutable(from.canExecute());
+	}
+	
 	/**
 	 * 深度拷贝
 	 */
@@ -794,119 +913,240 @@ public class Configuration implements Serializable, Cloneable {
 	}
 	
 	/**
-	 * 把Configuration对象转换为Document对象
+	 * 把修改过的配置更新到Document中，并清除修改标记
+	 * 
+	 * @return true:Document有变化
 	 */
-	private static boolean isModifyAndUpdateDocument(Configuration config, boolean updateFlag) {
-		
-		Configuration oldConfig = null;
-		if (config.filePath == null) {
-			oldConfig = new Configuration(config.document);
+	private boolean updateDocument() {
+		Element root = document.getDocumentElement();
+		boolean isChanged = false;
+		if (isDirty) {
+			isChanged |= setAttribute(root, Configuration.DESCRIPTION, description);
+			isChanged |= removeChildElements(root, Configuration.MODULE, Configuration.MODULE_NAME, modules);
+			Map<String, Element> moduleElems = getChildElements(root, Configuration.MODULE, Configuration.MODULE_NAME);
+			for (Entry<String, Module> entry : modules.entrySet()) {
+				Element moduleElem = moduleElems.get(entry.getKey());
+				if (moduleElem == null) {
+					moduleElem = appendChild(root, Configuration.MODULE, Configuration.MODULE_NAME, entry.getKey());
+					isChanged = true;
+				}
+				isChanged |= updateModule(moduleElem, entry.getValue(), true);
+			}
+			isDirty = false;
 		} else {
-			oldConfig = new Configuration(new File(config.filePath), config.encoding);
+			for (Entry<String, Module> entry : modules.entrySet()) {
+				if (isDirty(entry.getValue())) {
+					Element moduleElem = ConfigurationHelper.getChild(root, Configuration.MODULE, Configuration.MODULE_NAME, entry.getKey());
+					if (moduleElem == null) {
+						moduleElem = appendChild(root, Configuration.MODULE, Configuration.MODULE_NAME, entry.getKey());
+						isChanged = true;
+					}
+					isChanged |= updateModule(moduleElem, entry.getValue(), false);
+				}
+			}
 		}
-		
-		boolean modifyFlag = false;
-		if (!config.equals(oldConfig)) {
-			modifyFlag = true;
-			if (updateFlag) {
-				Element root = config.document.getDocumentElement();
-				root.setAttribute(Configuration.DESCRIPTION, config.description);
-				Map<String, Module> oldModuleMap = oldConfig.modules;
-
-				Map<String, Module> newModuleMap = config.clone().getModules();
-
-				// 修改module节点
-				for (String moduleName : oldModuleMap.keySet().toArray(new String[0])) {					
-					Module newModule = newModuleMap.get(moduleName);
-					//newModule不存在
-					if (newModule == null) {
-						ConfigurationHelper.removeChild(root, Configuration.MODULE, Configuration.MODULE_NAME, moduleName);
-						oldModuleMap.remove(moduleName);
-					} else {
-						//module
-						Module oldModule = oldModuleMap.get(moduleName);
-						for (String groupName : oldModule.groupNames()) {							
-							Group newGroup = newModule.getGroup(groupName);
-							//newGroup不存在
-							if (newGroup == null) {
-								ConfigurationHelper.removeChild(getElement(root, moduleName), getElement(root, moduleName, groupName));
-								oldModule.deleteGroup(groupName);
-							} else {
-								//group
-								Group oldGroup = oldModule.getGroup(groupName);
-								for (String key : oldGroup.valueNames()) {					
-									String value = oldGroup.getConfigValue(key);
-									Value newValue = newGroup.getValue(key);
-									//删除节点
-									if (newValue == null) {
-										ConfigurationHelper.removeChild(getElement(root, moduleName, groupName), getElement(root, moduleName, groupName, key));
-										oldGroup.deleteValue(key);
-									} else {
-										if (!ConfigurationHelper.equal(newValue.getValue(), value)) {
-											Element valueElem = getElement(root, moduleName, groupName, key);											
-											XmlUtil.removeAllChild(valueElem);
-											valueElem.setNodeValue(newValue.getValue());
-										}
-									}
-									newGroup.deleteValue(key);
-								}
-								
-								//增加Value节点
-								for (Entry<String, Value> addValueEntry : newGroup.getValues().entrySet()) {
-									Value value = addValueEntry.getValue();
-									Element valueElem = ConfigurationHelper.appendChild(getElement(root, moduleName, groupName), Configuration.VALUE, Configuration.VALUE_KEY, value.getName());
-									valueElem.setNodeValue(value.getValue());
-								}
-							}
-							
-							newModule.deleteGroup(groupName);					
-						}
-						
-						//增加Group节点
-						for (Entry<String, Group> addGroupEntry : newModule.getGroups().entrySet()) {
-							String groupName = addGroupEntry.getKey();
-							Element groupElem = ConfigurationHelper.appendChild(getElement(root, moduleName), Configuration.GROUP, Configuration.GROUP_NAME, groupName);
-							for (Value value : addGroupEntry.getValue().getValues().values()) {
-								Element valueElem = ConfigurationHelper.appendChild(groupElem, Configuration.VALUE, Configuration.VALUE_KEY, value.getName());
-								valueElem.setNodeValue(value.getValue());
-							}
-						}
+		return isChanged;
+	}
+	
+	private static boolean updateModule(Element moduleElem, Module module, boolean isFull) {
+		boolean isChanged = false;
+		if (isFull || module._dirty) {
+			isChanged |= setAttribute(moduleElem, Configuration.MODULE_NAME, module.getName());
+			isChanged |= setAttribute(moduleElem, Configuration.DESCRIPTION, module.getDescription());
+			isChanged |= removeChildElements(moduleElem, Configuration.GROUP, Configuration.GROUP_NAME, module.groups);
+			Map<String, Element> groupElems = getChildElements(moduleElem, Configuration.GROUP, Configuration.GROUP_NAME);
+			for (Entry<String, Group> entry : module.groups.entrySet()) {
+				Element groupElem = groupElems.get(entry.getKey());
+				if (groupElem == null) {
+					groupElem = appendChild(moduleElem, Configuration.GROUP, Configuration.GROUP_NAME, entry.getKey());
+					isChanged = true;
+				}
+				isChanged |= updateGroup(groupElem, entry.getValue(), true);
+			}
+			module._dirty = false;
+		} else {
+			for (Entry<String, Group> entry : module.groups.entrySet()) {
+				if (isDirty(entry.getValue())) {
+					Element groupElem = ConfigurationHelper.getChild(moduleElem, Configuration.GROUP, Configuration.GROUP_NAME, entry.getKey());
+					if (groupElem == null) {
+						groupElem = appendChild(moduleElem, Configuration.GROUP, Configuration.GROUP_NAME, entry.getKey());
+						isChanged = true;
 					}
-					newModuleMap.remove(moduleName);
+					isChanged |= updateGroup(groupElem, entry.getValue(), false);
 				}
-				
-				//增加Module节点
-				for (Entry<String, Module> addModuleEntry : newModuleMap.entrySet()) {
-					String moduleName = addModuleEntry.getKey();
-					Element moduleElem = ConfigurationHelper.appendChild(root, Configuration.MODULE, Configuration.MODULE_NAME, moduleName);
-					for (Group group : addModuleEntry.getValue().getGroups().values()) {
-						Element groupElem = ConfigurationHelper.appendChild(moduleElem, Configuration.GROUP, Configuration.GROUP_NAME, group.getName());
-						for (Value value : group.getValues().values()) {
-							Element valueElem = ConfigurationHelper.appendChild(groupElem, Configuration.VALUE, Configuration.VALUE_KEY, value.getName());
-							valueElem.setNodeValue(value.getValue());
-						}
+			}
+		}
+		return isChanged;
+	}
+	
+	private static boolean updateGroup(Element groupElem, Group group, boolean isFull) {
+		boolean isChanged = false;
+		Map<String, Value> values = group.getValues();
+		if (isFull || group._dirty) {
+			isChanged |= setAttribute(groupElem, Configuration.GROUP_NAME, group.getName());
+			isChanged |= setAttribute(groupElem, Configuration.DESCRIPTION, group.getDescription());
+			isChanged |= removeChildElements(groupElem, Configuration.VALUE, Configuration.VALUE_KEY, values);
+			Map<String, Element> valueElems = getChildElements(groupElem, Configuration.VALUE, Configuration.VALUE_KEY);
+			for (Entry<String, Value> entry : values.entrySet()) {
+				Element valueElem = valueElems.get(entry.getKey());
+				if (valueElem == null) {
+					valueElem = appendChild(groupElem, Configuration.VALUE, Configuration.VALUE_KEY, entry.getKey());
+					isChanged = true;
+				}
+				isChanged |= updateValue(valueElem, entry.getValue());
+			}
+			group._dirty = false;
+		} else {
+			for (Entry<String, Value> entry : values.entrySet()) {
+				if (entry.getValue()._dirty) {
+					Element valueElem = ConfigurationHelper.getChild(groupElem, Configuration.VALUE, Configuration.VALUE_KEY, entry.getKey());
+					if (valueElem == null) {
+						valueElem = appendChild(groupElem, Configuration.VALUE, Configuration.VALUE_KEY, entry.getKey());
+						isChanged = true;
 					}
+					isChanged |= updateValue(valueElem, entry.getValue());
 				}
 			}
 		}
-		return modifyFlag;
+		return isChanged;
 	}
 	
-	//取得Module元素
-	private static Element getElement(Element root, String moduleName) {
-		return ConfigurationHelper.getChild(root, Configuration.MODULE, Configuration.MODULE_NAME, moduleName);
+	private static boolean updateValue(Element valueElem, Value value) {
+		boolean isChanged = false;
+		isChanged |= setAttribute(valueElem, Configuration.VALUE_KEY, value.getName());
+		isChanged |= setAttribute(valueElem, Configuration.DESCRIPTION, value.getDescription());
+		String rawValue = value.getRawValue();
+		if (!ConfigurationHelper.equal(new Value(valueElem).getRawValue(), rawValue)) {
+			XmlUtil.removeAllChild(valueElem);
+			if (rawValue.length() > 0) {
+				valueElem.appendChild(valueElem.getOwnerDocument().createTextNode(rawValue));
+			}
+			isChanged = true;
+		}
+		value._dirty = false;
+		return isChanged;
 	}
 	
-	//取得Group元素
-	private static Element getElement(Element root, String moduleName, String groupName) {
-		return ConfigurationHelper.getChild(getElement(root, moduleName), Configuration.GROUP, Configuration.GROUP_NAME, groupName);
+	private static boolean isDirty(Module module) {
+		if (module._dirty) {
+			return true;
+		}
+		for (Group group : module.groups.values()) {
+			if (isDirty(group)) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
-	//取得Value元素
-	private static Element getElement(Element root, String moduleName, String groupName, String valueName) {
-		return ConfigurationHelper.getChild(getElement(root, moduleName, groupName), Configuration.VALUE, Configuration.VALUE_KEY, valueName);
+	private static boolean isDirty(Group group) {
+		if (group._dirty) {
+			return true;
+		}
+		for (Value value : group.getValues().values()) {
+			if (value._dirty) {
+				return true;
+			}
+		}
+		return false;
 	}
-
+	
+	//设置属性，值为空时不设置（原来没有时）
+	private static boolean setAttribute(Element element, String name, String value) {
+		if (value == null || (value.length() == 0 && !element.hasAttribute(name))) {
+			return false;
+		}
+		if (value.equals(element.getAttribute(name))) {
+			return false;
+		}
+		element.setAttribute(name, value);
+		return true;
+	}
+	
+	//添加子元素，已经格式化过的Document按照父元素的缩进格式化
+	private static Element appendChild(Element parent, String childName, String attributeName, String attributeValue) {
+		Document doc = parent.getOwnerDocument();
+		Element child = doc.createElement(childName);
+		child.setAttribute(attributeName, attributeValue);
+		if (!isFormatted(doc.getDocumentElement())) {
+			parent.appendChild(child);
+			return child;
+		}
+		String parentIndent = getIndent(parent);
+		Node last = parent.getLastChild();
+		if (isWhitespace(last)) {
+			parent.insertBefore(doc.createTextNode("\n" + parentIndent + INDENT), last);
+			parent.insertBefore(child, last);
+		} else {
+			parent.appendChild(doc.createTextNode("\n" + parentIndent + INDENT));
+			parent.appendChild(child);
+			parent.appendChild(doc.createTextNode("\n" + parentIndent));
+		}
+		return child;
+	}
+	
+	//删除子元素，以及前面的缩进
+	private static void removeChild(Element parent, Node child) {
+		Node previous = child.getPreviousSibling();
+		if (isWhitespace(previous)) {
+			parent.removeChild(previous);
+		}
+		parent.removeChild(child);
+	}
+	
+	//是否已经格式化过（有缩进）
+	private static boolean isFormatted(Element root) {
+		return isWhitespace(root.getFirstChild());
+	}
+	
+	private static boolean isWhitespace(Node node) {
+		return node != null && node.getNodeType() == Node.TEXT_NODE && node.getNodeValue().trim().length() == 0;
+	}
+	
+	//元素的缩进
+	private static String getIndent(Element element) {
+		Node previous = element.getPreviousSibling();
+		if (!isWhitespace(previous)) {
+			return "";
+		}
+		String whitespace = previous.getNodeValue();
+		return whitespace.substring(whitespace.lastIndexOf('\n') + 1);
+	}
+	
+	//删除不在names中的子元素，返回是否有删除
+	private static boolean removeChildElements(Element parent, String childName, String attributeName, Map<String, ?> names) {
+		boolean isRemoved = false;
+		NodeList childList = parent.getChildNodes();
+		for (int i = childList.getLength() - 1; i >= 0; i--) {
+			Node child = childList.item(i);
+			if (child.getNodeType() != Node.ELEMENT_NODE || !childName.equals(child.getNodeName())) {
+				continue;
+			}
+			if (!names.containsKey(((Element)child).getAttribute(attributeName))) {
+				removeChild(parent, child);
+				isRemoved = true;
+			}
+		}
+		return isRemoved;
+	}
+	
+	//取得子元素，同名的子元素取最后一个，和解析时一致
+	private static Map<String, Element> getChildElements(Element parent, String childName, String attributeName) {
+		Map<String, Element> elementMap = new HashMap<String, Element>();
+		NodeList childList = parent.getChildNodes();
+		for (int i = childList.getLength() - 1; i >= 0; i--) {
+			Node child = childList.item(i);
+			if (child.getNodeType() != Node.ELEMENT_NODE || !childName.equals(child.getNodeName())) {
+				continue;
+			}
+			String name = ((Element)child).getAttribute(attributeName);
+			if (!elementMap.containsKey(name)) {
+				elementMap.put(name, (Element)child);
+			}
+		}
+		return elementMap;
+	}
+	
 	/**
 	 * 把Configuration对象转换为Document对象
 	 *
@@ -914,7 +1154,7 @@ public class Configuration implements Serializable, Cloneable {
 	 */
 	public Document toDocument() {
 		Configuration clone = this.clone();
-		isModifyAndUpdateDocument(clone, true);
+		clone.updateDocument();
 		return clone.document;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.api.config;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 三段式配置的只读快照<br>
+ *
+ * 按“module/group/key”平铺，取值时已经替换了${}变量；创建后不可修改，可以在多个线程中无锁读取。<br>
+ * 使用示例: <br>
+ * <pre>
+ * ConfigurationSnapshot snapshot = config.snapshot();
+ * String value = snapshot.get("global/productInfo/productname");
+ * </pre>
+ *
+ * @author wuyuhou
+ *
+ */
+public final class ConfigurationSnapshot implements Serializable {
+
+	private static final long serialVersionUID = -2270536314307467158L;
+
+	//路径分隔符
+	public static final char SEPARATOR = '/';
+
+	//module/group/key -> 替换变量后的值
+	private final Map<String, String> values;
+
+	ConfigurationSnapshot(Map<String, String> values) {
+		this.values = Collections.unmodifiableMap(new HashMap<String, String>(values));
+	}
+
+	/**
+	 * 拼接配置项路径，热点代码中可以预先拼接好路径再调用get(String)
+	 *
+	 * @param moduleName 模块名称
+	 * @param groupName group名称
+	 * @param key 主健名称
+	 * @return module/group/key
+	 */
+	public static String toPath(String moduleName, String groupName, String key) {
+		return new StringBuilder(moduleName.length() + groupName.length() + key.length() + 2)
+			.append(moduleName).append(SEPARATOR).append(groupName).append(SEPARATOR).append(key).toString();
+	}
+
+	/**
+	 * 按路径取值
+	 *
+	 * @param path module/group/key
+	 * @return 值，不存在时为null
+	 */
+	public String get(String path) {
+		return values.get(path);
+	}
+
+	/**
+	 * 按路径取值
+	 *
+	 * @param path module/group/key
+	 * @param defaultValue 默认值
+	 * @return 值，不存在或者为空白时为默认值
+	 */
+	public String get(String path, String defaultValue) {
+		String value = values.get(path);
+		if (value == null || value.trim().length() == 0) {
+			return defaultValue;
+		} else {
+			return value;
+		}
+	}
+
+	/**
+	 * 获得指定 configValue 的值，同Configuration.getConfigValue
+	 *
+	 * @param moduleName 模块名称
+	 * @param groupName  group名称
+	 * @param keyName    主健名称
+	 * @return configValue的值
+	 */
+	public String getConfigValue(String moduleName, String groupName, String keyName) {
+		return get(toPath(moduleName, groupName, keyName));
+	}
+
+	public String getConfigValue(String moduleName, String groupName, String keyName, String defaultValue) {
+		return get(toPath(moduleName, groupName, keyName), defaultValue);
+	}
+
+	/**
+	 * 是否包含配置项
+	 *
+	 * @param path module/group/key
+	 * @return true:包含
+	 */
+	public boolean contains(String path) {
+		return values.containsKey(path);
+	}
+
+	/**
+	 * 配置项个数
+	 *
+	 * @return 个数
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * 取得所有配置项
+	 *
+	 * @return 只读的module/group/key -> 值
+	 */
+	public Map<String, String> toMap() {
+		return values;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if ((o == null) || !(o instanceof ConfigurationSnapshot)) {
+			return false;
+		}
+		return values.equals(((ConfigurationSnapshot)o).values);
+	}
+
+	@Override
+	public int hashCode() {
+		return values.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return values.toString();
+	}
+}
\ No newline at end of file
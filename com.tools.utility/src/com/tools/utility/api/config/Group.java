@@ -30,6 +30,7 @@ import org.w3c.dom.NodeList;
 
 import com.tools.utility.api.XmlUtil;
 import com.tools.utility.impl.config.ConfigurationHelper;
+import com.tools.utility.impl.config.VersionedProperties;
 
 /**
  * Group类: 对应三段式配置的&lt;group name="productInfo"/&gt;
@@ -48,6 +49,9 @@ public class Group implements Serializable, Cloneable {
 	private String description;
 	
 	Properties _prop;
+	
+	//增加、删除、替换了Value，或者修改了自身属性，还没有保存到Document
+	transient boolean _dirty = false;
 
 	/** Value哈希表 */
 	private Map<String, Value> values = new LinkedHashMap<String, Value>();
@@ -67,7 +71,7 @@ public class Group implements Serializable, Cloneable {
 	 */
 	public Group(String groupName) {
 		name = groupName;
-		_prop = new Properties();
+		_prop = new VersionedProperties();
 	}
 
 	/**
@@ -91,7 +95,7 @@ public class Group implements Serializable, Cloneable {
 	 */
 	public Group(Element groupElement, Properties prop) throws ConfigurationRuntimeException {
 		if (prop == null) {
-			_prop = new Properties();
+			_prop = new VersionedProperties();
 		} else {
 			_prop = prop;
 		}
@@ -136,6 +140,7 @@ public class Group implements Serializable, Cloneable {
 	 */
 	public void setName(String groupName) {
 		name = groupName;
+		_dirty = true;
 	}
 	
 	public String getDescription() {
@@ -144,6 +149,7 @@ public class Group implements Serializable, Cloneable {
 
 	public void setDescription(String description) {
 		this.description = description;
+		_dirty = true;
 	}
 
 	/**
@@ -189,6 +195,7 @@ public class Group implements Serializable, Cloneable {
 		} else {
 			this.values.put(value.getName(), value);
 			value._prop = _prop;
+			_dirty = true;
 			return value;
 		}
 	}
@@ -216,6 +223,7 @@ public class Group implements Serializable, Cloneable {
 	public Value mergeValue(Value value) {
 		value._prop = _prop;
 		this.values.put(value.getName(), value);
+		_dirty = true;
 		return getValue(value.getName());
 	}
 
@@ -250,6 +258,7 @@ public class Group implements Serializable, Cloneable {
 			return null;
 		} else {
 			this.values.remove(key);
+			_dirty = true;
 		}
 		return value;
 	}
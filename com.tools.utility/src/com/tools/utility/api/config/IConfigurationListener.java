@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.api.config;
+
+/**
+ * 配置项变化监听器
+ *
+ * @author wuyuhou
+ *
+ */
+public interface IConfigurationListener {
+
+	/**
+	 * 配置项变化，在新的快照发布之后调用
+	 *
+	 * @param path module/group/key
+	 * @param oldValue 原来的值，新增时为null
+	 * @param newValue 新的值，删除时为null
+	 * @param snapshot 新的快照
+	 */
+	void valueChanged(String path, String oldValue, String newValue, ConfigurationSnapshot snapshot);
+}
\ No newline at end of file
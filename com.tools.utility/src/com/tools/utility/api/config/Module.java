@@ -27,6 +27,7 @@ import org.w3c.dom.NodeList;
 
 import com.tools.utility.api.XmlUtil;
 import com.tools.utility.impl.config.ConfigurationHelper;
+import com.tools.utility.impl.config.VersionedProperties;
 
 /**
  * 模块类:对应EOS三段式配置的&lt;module name="global"/&gt;
@@ -45,6 +46,9 @@ public class Module implements Serializable, Cloneable {
 	private String description;
 	
 	Properties _prop;
+	
+	//增加、删除、替换了Group，或者修改了自身属性，还没有保存到Document
+	transient boolean _dirty = false;
 
 	/** Group哈希表 */
 	Map<String, Group> groups = new LinkedHashMap<String, Group>();
@@ -63,7 +67,7 @@ public class Module implements Serializable, Cloneable {
 	 */
 	public Module(String moduleName) {
 		name = moduleName;
-		_prop = new Properties();
+		_prop = new VersionedProperties();
 	}
 
 	/**
@@ -87,7 +91,7 @@ public class Module implements Serializable, Cloneable {
 	 */
 	public Module(Element moduleElement, Properties prop) throws ConfigurationRuntimeException {
 		if (prop == null) {
-			_prop = new Properties();
+			_prop = new VersionedProperties();
 		} else {
 			_prop = prop;
 		}
@@ -129,6 +133,7 @@ public class Module implements Serializable, Cloneable {
 	 */
 	public void setName(String moduleName) {
 		name = moduleName;
+		_dirty = true;
 	}
 	
 	public String getDescription() {
@@ -137,6 +142,7 @@ public class Module implements Serializable, Cloneable {
 
 	public void setDescription(String description) {
 		this.description = description;
+		_dirty = true;
 	}
 
 	/**
@@ -167,6 +173,7 @@ public class Module implements Serializable, Cloneable {
 		}
 		group = new Group(groupName);
 		this.groups.put(groupName, group);
+		_dirty = true;
 
 		return group;
 	}
@@ -186,6 +193,7 @@ public class Module implements Serializable, Cloneable {
 		} else {
 			this.groups.put(groupName, group);
 			group._prop = _prop;
+			_dirty = true;
 			return group;
 		}
 	}
@@ -203,6 +211,7 @@ public class Module implements Serializable, Cloneable {
 		if (groupRet == null) {
 			this.groups.put(groupName, group);
 			group._prop = _prop;
+			_dirty = true;
 		} else {
 			for (Value value : group.getValues().values()) {
 				groupRet.mergeValue(value);
@@ -243,6 +252,7 @@ public class Module implements Serializable, Cloneable {
 			return null;
 		}
 		this.groups.remove(groupName);
+		_dirty = true;
 		return group;
 	}
 
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.api.config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.tools.logger.api.ILogger;
+import com.tools.logger.api.LoggerFactory;
+import com.tools.utility.api.DefaultThreadFactory;
+import com.tools.utility.impl.config.ConfigurationHelper;
+
+/**
+ * 可以热加载的三段式配置<br>
+ *
+ * 后台线程定时检查配置文件的修改时间、大小，变化后重新解析，和原来的配置比较，
+ * 有变化时整体替换快照，再通知变化了的配置项的监听器。读取快照不加锁，不会被重新加载阻塞；
+ * 监听器在锁外调用，可以在监听器中再调用reload。<br>
+ * 解析失败时（比如文件正在写入）保留原来的快照，文件的修改时间或者大小再变化时才重试，也可以调用reload立即重试。<br>
+ * 使用示例: <br>
+ * <pre>
+ * ReloadableConfiguration config = new ReloadableConfiguration(new File("d:\\test.xml"), "UTF-8");
+ * config.addListener("global/limit/maxSize", listener);
+ * config.start();
+ * String value = config.getSnapshot().get("global/limit/maxSize");
+ * </pre>
+ *
+ * @author wuyuhou
+ *
+ */
+public class ReloadableConfiguration {
+
+	private static ILogger logger = LoggerFactory.getLogger(ReloadableConfiguration.class);
+
+	private File configFile = null;
+
+	private String encoding = null;
+
+	//检查文件变化的间隔（毫秒）
+	private long checkInterval = 2000;
+
+	private volatile Configuration configuration = null;
+
+	private volatile ConfigurationSnapshot snapshot = null;
+
+	//最后一次加载的文件修改时间、大小
+	private long lastModified = 0;
+
+	private long lastLength = 0;
+
+	//最后一次解析失败的文件修改时间、大小，文件没有再变化时不重试
+	private long failedModified = 0;
+
+	private long failedLength = 0;
+
+	//配置项 -> 监听器
+	private ConcurrentHashMap<String, CopyOnWriteArrayList<IConfigurationListener>> listenerMap = new ConcurrentHashMap<String, CopyOnWriteArrayList<IConfigurationListener>>();
+
+	//所有配置项的监听器
+	private CopyOnWriteArrayList<IConfigurationListener> allListenerList = new CopyOnWriteArrayList<IConfigurationListener>();
+
+	private Thread watchThread = null;
+
+	private volatile boolean isStopWatch = true;
+
+	/**
+	 * 构造方法，立即加载配置文件
+	 *
+	 * @param configFile 配置文件
+	 * @param encoding 编码
+	 * @throws ConfigurationRuntimeException 抛出条件：解析出错
+	 */
+	public ReloadableConfiguration(File configFile, String encoding) throws ConfigurationRuntimeException {
+		if (configFile == null) {
+			throw new IllegalArgumentException("ConfigFile is null!");
+		}
+		this.configFile = configFile.getAbsoluteFile();
+		this.encoding = encoding;
+		reload();
+	}
+
+	public File getConfigFile() {
+		return configFile;
+	}
+
+	public long getCheckInterval() {
+		return checkInterval;
+	}
+
+	public void setCheckInterval(long checkInterval) {
+		if (checkInterval <= 0) {
+			throw new IllegalArgumentException("checkInterval'" + checkInterval + "' is error!");
+		}
+		this.checkInterval = checkInterval;
+	}
+
+	/**
+	 * 取得当前的快照，不加锁
+	 *
+	 * @return 快照
+	 */
+	public ConfigurationSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * 取得当前的配置，重新加载后是新的对象；只能读取，不要修改
+	 *
+	 * @return 配置
+	 */
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * 添加配置项的监听器
+	 *
+	 * @param path module/group/key
+	 * @param listener 监听器
+	 */
+	public void addListener(String path, IConfigurationListener listener) {
+		if (path == null) {
+			throw new IllegalArgumentException("path is null!");
+		}
+		if (listener == null) {
+			throw new IllegalArgumentException("listener is null!");
+		}
+		CopyOnWriteArrayList<IConfigurationListener> listenerList = listenerMap.get(path);
+		if (listenerList == null) {
+			listenerList = new CopyOnWriteArrayList<IConfigurationListener>();
+			CopyOnWriteArrayList<IConfigurationListener> oldList = listenerMap.putIfAbsent(path, listenerList);
+			if (oldList != null) {
+				listenerList = oldList;
+			}
+		}
+		listenerList.addIfAbsent(listener);
+	}
+
+	/**
+	 * 添加所有配置项的监听器
+	 *
+	 * @param listener 监听器
+	 */
+	public void addListener(IConfigurationListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listener is null!");
+		}
+		allListenerList.addIfAbsent(listener);
+	}
+
+	public void removeListener(String path, IConfigurationListener listener) {
+		CopyOnWriteArrayList<IConfigurationListener> listenerList = listenerMap.get(path);
+		if (listenerList != null) {
+			listenerList.remove(listener);
+		}
+	}
+
+	public void removeListener(IConfigurationListener listener) {
+		allListenerList.remove(listener);
+		for (CopyOnWriteArrayList<IConfigurationListener> listenerList : listenerMap.values()) {
+			listenerList.remove(listener);
+		}
+	}
+
+	/**
+	 * 立即重新加载，配置有变化时替换快照并通知监听器
+	 *
+	 * @return true:配置有变化
+	 * @throws ConfigurationRuntimeException 抛出条件：解析出错，这时保留原来的配置
+	 */
+	public boolean reload() throws ConfigurationRuntimeException {
+		ConfigurationSnapshot oldSnapshot = null;
+		ConfigurationSnapshot newSnapshot = null;
+		synchronized (this) {
+			long modified = configFile.lastModified();
+			long length = configFile.length();
+			Configuration newConfiguration = new Configuration(configFile, encoding);
+			lastModified = modified;
+			lastLength = length;
+
+			Configuration oldConfiguration = configuration;
+			oldSnapshot = snapshot;
+			newSnapshot = newConfiguration.snapshot();
+			//变量的值可能变化，所以配置相同时还要比较替换变量后的值
+			if (oldSnapshot != null && newConfiguration.equals(oldConfiguration) && newSnapshot.equals(oldSnapshot)) {
+				return false;
+			}
+			configuration = newConfiguration;
+			snapshot = newSnapshot;
+		}
+		//锁外通知，监听器慢或者再调用reload时不会阻塞、死锁
+		if (oldSnapshot != null) {
+			fireValueChanged(diff(oldSnapshot, newSnapshot), oldSnapshot, newSnapshot);
+		}
+		return true;
+	}
+
+	//变化了的配置项
+	private static List<String> diff(ConfigurationSnapshot oldSnapshot, ConfigurationSnapshot newSnapshot) {
+		List<String> pathList = new ArrayList<String>();
+		Map<String, String> oldValues = oldSnapshot.toMap();
+		Map<String, String> newValues = newSnapshot.toMap();
+		for (Entry<String, String> entry : newValues.entrySet()) {
+			if (!ConfigurationHelper.equal(entry.getValue(), oldValues.get(entry.getKey()))) {
+				pathList.add(entry.getKey());
+			}
+		}
+		for (String path : oldValues.keySet()) {
+			if (!newValues.containsKey(path)) {
+				pathList.add(path);
+			}
+		}
+		return pathList;
+	}
+
+	private void fireValueChanged(List<String> pathList, ConfigurationSnapshot oldSnapshot, ConfigurationSnapshot newSnapshot) {
+		for (String path : pathList) {
+			String oldValue = oldSnapshot.get(path);
+			String newValue = newSnapshot.get(path);
+			CopyOnWriteArrayList<IConfigurationListener> listenerList = listenerMap.get(path);
+			if (listenerList != null) {
+				for (IConfigurationListener listener : listenerList) {
+					fireValueChanged(listener, path, oldValue, newValue, newSnapshot);
+				}
+			}
+			for (IConfigurationListener listener : allListenerList) {
+				fireValueChanged(listener, path, oldValue, newValue, newSnapshot);
+			}
+		}
+	}
+
+	private void fireValueChanged(IConfigurationListener listener, String path, String oldValue, String newValue, ConfigurationSnapshot newSnapshot) {
+		try {
+			listener.valueChanged(path, oldValue, newValue, newSnapshot);
+		} catch (Throwable t) {
+			logger.error("Configuration listener of '" + path + "' failed", t);
+		}
+	}
+
+	/**
+	 * 文件修改时间或者大小变化时重新加载
+	 *
+	 * @return true:配置有变化
+	 */
+	public boolean reloadIfModified() {
+		long modified = configFile.lastModified();
+		long length = configFile.length();
+		synchronized (this) {
+			if (modified == lastModified && length == lastLength) {
+				return false;
+			}
+			if (modified == failedModified && length == failedLength) {
+				return false;
+			}
+		}
+		try {
+			return reload();
+		} catch (Throwable t) {
+			synchronized (this) {
+				failedModified = modified;
+				failedLength = length;
+			}
+			logger.warn("Reload configuration file[" + configFile + "] error!", t);
+			return false;
+		}
+	}
+
+	/**
+	 * 启动后台检查
+	 */
+	public synchronized void start() {
+		if (!isStopWatch) {
+			return;
+		}
+		isStopWatch = false;
+		watchThread = new DefaultThreadFactory("configuration-watch", true, false).newThread(new Runnable() {
+			public void run() {
+				while (!isStopWatch) {
+					try {
+						Thread.sleep(checkInterval);
+					} catch (InterruptedException e) {
+						continue;
+					}
+					if (!isStopWatch) {
+						reloadIfModified();
+					}
+				}
+			}
+		});
+		watchThread.start();
+	}
+
+	/**
+	 * 停止后台检查
+	 */
+	public synchronized void stop() {
+		if (isStopWatch) {
+			return;
+		}
+		isStopWatch = true;
+		watchThread.interrupt();
+		watchThread = null;
+	}
+}
\ No newline at end of file
@@ -23,6 +23,7 @@ import org.w3c.dom.Element;
 
 import com.tools.utility.api.XmlUtil;
 import com.tools.utility.impl.config.ConfigurationHelper;
+import com.tools.utility.impl.config.VersionedProperties;
 
 /**
  * Value对应三段式配置的&lt;configValue key="xxx"&gt;yyy&lt;/configValue&gt;
@@ -45,6 +46,9 @@ public class Value implements Serializable, Cloneable {
 	
 	Properties _prop;
 	
+	//修改后还没有保存到Document
+	transient boolean _dirty = false;
+	
 	/**
 	 * 构造方法
 	 */
@@ -70,7 +74,7 @@ public class Value implements Serializable, Cloneable {
 	public Value(String keyName, String keyValue) {
 		name = keyName;
 		value = keyValue;
-		_prop = new Properties();
+		_prop = new VersionedProperties();
 	}
 
 	/**
@@ -90,7 +94,7 @@ public class Value implements Serializable, Cloneable {
 	 */
 	public Value(Element valueElement, Properties prop) {
 		if (prop == null) {
-			_prop = new Properties();
+			_prop = new VersionedProperties();
 		} else {
 			_prop = prop;
 		}
@@ -137,6 +141,7 @@ public class Value implements Serializable, Cloneable {
 
 	public void setName(String valueName) {
 		name = valueName;
+		_dirty = true;
 	}
 
 	/**
@@ -162,6 +167,12 @@ public class Value implements Serializable, Cloneable {
 			value = "";
 		}
 		this.value = value;
+		_dirty = true;
+	}
+	
+	//取得没有替换变量的键值
+	String getRawValue() {
+		return value;
 	}
 
 	public String getDescription() {
@@ -170,6 +181,7 @@ public class Value implements Serializable, Cloneable {
 
 	public void setDescription(String description) {
 		this.description = description;
+		_dirty = true;
 	}
 
 	/**
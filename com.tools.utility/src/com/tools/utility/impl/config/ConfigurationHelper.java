@@ -15,7 +15,11 @@
  */
 package com.tools.utility.impl.config;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -36,9 +40,19 @@ public class ConfigurationHelper {
 	protected static char   DELIM_STOP  = '}';
 	protected static int DELIM_START_LEN = 2;
 	protected static int DELIM_STOP_LEN = 1;
+	
+	//属性信息没有版本号
+	private static final long NOT_VERSIONED = -1;
+	
+	//编译后的模板缓存的最大个数，超过时清空
+	private static final int MAX_TEMPLATE_CACHE_SIZE = 4096;
+	
+	//含有变量的值 -> 编译后的模板，模板只弱引用属性信息，不会让丢弃的配置无法回收
+	private static ConcurrentHashMap<String, Template> templateCache = new ConcurrentHashMap<String, Template>();
 
 	/**
-	 * 取得含有变量的属性信息，使用${var_name}形式，允许递归<p>
+	 * 取得含有变量的属性信息，使用${var_name}形式，允许递归，循环引用时抛出IllegalArgumentException；
+	 * 含有变量的值只解析一次，替换结果在属性信息（VersionedProperties）、SystemProperties没有变化时缓存<p>
 	 * 
 	 * Perform variable substitution in string <code>val</code> from the values
 	 * of keys found in the system propeties.
@@ -86,54 +100,163 @@ public class ConfigurationHelper {
 	 *             if <code>val</code> is malformed.
 	 */
 	public static String getValueContainVars(String val, Properties props) throws IllegalArgumentException {
-
-		StringBuffer sbuf = new StringBuffer();
-
-		int i = 0;
-		int j, k;
-
-		while (true) {
-			j = val.indexOf(DELIM_START, i);
-			if (j == -1) {
-				// no more variables
-				if (i == 0) { // this is a simple string
-					return val;
-				} else { // add the tail string which contails no variables and
-							// return the result.
-					sbuf.append(val.substring(i, val.length()));
-					return sbuf.toString();
-				}
-			} else {
-				sbuf.append(val.substring(i, j));
+		if (val.indexOf(DELIM_START) == -1) {
+			// this is a simple string
+			return val;
+		}
+		long propsVersion = props instanceof VersionedProperties ? ((VersionedProperties)props).getVersion() : NOT_VERSIONED;
+		long sysVersion = SystemProperties.getVersion();
+		Template template = getTemplate(val);
+		//命中缓存时不分配其他对象
+		String result = template.getCachedResult(props, propsVersion, sysVersion);
+		if (result != null) {
+			return result;
+		}
+		return template.expand(props, propsVersion, sysVersion, new ArrayList<String>(), new boolean[1]);
+	}
+	
+	//取得编译后的模板
+	private static Template getTemplate(String val) {
+		Template template = templateCache.get(val);
+		if (template == null) {
+			template = new Template(val);
+			if (templateCache.size() >= MAX_TEMPLATE_CACHE_SIZE) {
+				templateCache.clear();
+			}
+			templateCache.put(val, template);
+		}
+		return template;
+	}
+	
+	/*
+	 * 编译后的含有变量的值：literals[0] ${keys[0]} literals[1] ... ${keys[n-1]} literals[n]<br>
+	 * 
+	 * 替换结果按属性信息、属性版本号、SystemProperties版本号缓存最近一次；
+	 * 用到JVM系统属性或者没有找到的变量（以后可能通过System.setProperty设置）时不缓存。
+	 */
+	private static class Template {
+		
+		private final String val;
+		
+		private final String[] literals;
+		
+		private final String[] keys;
+		
+		private volatile Expansion lastExpansion = null;
+		
+		Template(String val) {
+			this.val = val;
+			List<String> literalList = new ArrayList<String>();
+			List<String> keyList = new ArrayList<String>();
+			int i = 0;
+			int j, k;
+			while ((j = val.indexOf(DELIM_START, i)) != -1) {
 				k = val.indexOf(DELIM_STOP, j);
 				if (k == -1) {
 					throw new IllegalArgumentException(
 							'"'		+ val
 									+ "\" has no closing brace. Opening brace at position "
 									+ j + '.');
-				} else {
-					j += DELIM_START_LEN;
-					String key = val.substring(j, k);
-					String replacement = null;
-					if (props != null) {
-						replacement = props.getProperty(key);
-					}					
-					if (replacement == null) {
-						replacement = SystemProperties.getProperty(key);
-					}
-
-					if (replacement != null) {
-						// Do variable substitution on the replacement string
-						// such that we can solve "Hello ${x2}" as "Hello p1"
-						// the where the properties are
-						// x1=p1
-						// x2=${x1}
-						String recursiveReplacement = getValueContainVars(replacement, props);
-						sbuf.append(recursiveReplacement);
+				}
+				literalList.add(val.substring(i, j));
+				keyList.add(val.substring(j + DELIM_START_LEN, k));
+				i = k + DELIM_STOP_LEN;
+			}
+			literalList.add(val.substring(i));
+			literals = literalList.toArray(new String[0]);
+			keys = keyList.toArray(new String[0]);
+		}
+		
+		//取得缓存的替换结果，属性信息、版本号不同时返回null
+		String getCachedResult(Properties props, long propsVersion, long sysVersion) {
+			Expansion expansion = lastExpansion;
+			if (expansion != null && expansion.propsVersion == propsVersion && expansion.sysVersion == sysVersion
+					&& (expansion.propsRef == null ? props == null : props != null && expansion.propsRef.get() == props)) {
+				return expansion.result;
+			}
+			return null;
+		}
+		
+		/**
+		 * 替换变量
+		 * 
+		 * @param props 属性信息
+		 * @param propsVersion 属性信息版本号，NOT_VERSIONED表示没有版本号
+		 * @param sysVersion SystemProperties版本号
+		 * @param resolvingKeys 正在替换的变量，用来检查循环引用
+		 * @param isNotCacheable 输出，结果是否不可以缓存
+		 * @return 替换后的值
+		 */
+		String expand(Properties props, long propsVersion, long sysVersion, List<String> resolvingKeys, boolean[] isNotCacheable) {
+			String cachedResult = getCachedResult(props, propsVersion, sysVersion);
+			if (cachedResult != null) {
+				return cachedResult;
+			}
+			boolean[] isNotCacheableHere = new boolean[] {props != null && propsVersion == NOT_VERSIONED};
+			StringBuilder sbuf = new StringBuilder(val.length() + 16);
+			for (int i = 0; i < keys.length; i++) {
+				sbuf.append(literals[i]);
+				String key = keys[i];
+				String replacement = null;
+				if (props != null) {
+					replacement = props.getProperty(key);
+				}
+				if (replacement == null) {
+					replacement = SystemProperties.getLocalProperty(key);
+				}
+				if (replacement == null) {
+					//JVM系统属性，或者没有找到
+					isNotCacheableHere[0] = true;
+					replacement = SystemProperties.getProperty(key);
+				}
+				if (replacement != null) {
+					// Do variable substitution on the replacement string
+					// such that we can solve "Hello ${x2}" as "Hello p1"
+					// the where the properties are
+					// x1=p1
+					// x2=${x1}
+					if (replacement.indexOf(DELIM_START) != -1) {
+						if (resolvingKeys.contains(key)) {
+							resolvingKeys.add(key);
+							throw new IllegalArgumentException('"' + val + "\" has cyclic variable reference: " + resolvingKeys);
+						}
+						resolvingKeys.add(key);
+						replacement = getTemplate(replacement).expand(props, propsVersion, sysVersion, resolvingKeys, isNotCacheableHere);
+						resolvingKeys.remove(resolvingKeys.size() - 1);
 					}
-					i = k + DELIM_STOP_LEN;
+					sbuf.append(replacement);
 				}
 			}
+			sbuf.append(literals[keys.length]);
+			String result = sbuf.toString();
+			if (isNotCacheableHere[0]) {
+				isNotCacheable[0] = true;
+			} else {
+				lastExpansion = new Expansion(props, propsVersion, sysVersion, result);
+			}
+			return result;
+		}
+	}
+	
+	/*
+	 * 一次替换的结果，弱引用属性信息
+	 */
+	private static class Expansion {
+		
+		private final WeakReference<Properties> propsRef;
+		
+		private final long propsVersion;
+		
+		private final long sysVersion;
+		
+		private final String result;
+		
+		Expansion(Properties props, long propsVersion, long sysVersion, String result) {
+			//属性信息为空时为null，和已经被回收的属性信息区分
+			this.propsRef = props == null ? null : new WeakReference<Properties>(props);
+			this.propsVersion = propsVersion;
+			this.sysVersion = sysVersion;
+			this.result = result;
 		}
 	}
 	
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.config;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * 带版本号的属性信息，每次修改后版本号加一<br>
+ *
+ * 三段式配置的属性信息使用这个类，变量替换的结果按版本号缓存。
+ * 修改后再增加版本号，并发读取时最多把新值缓存在旧版本号下，下次读取时会重新计算；
+ * 跟踪setProperty、put、putAll、load、remove、clear、putIfAbsent、replace，
+ * keySet、values、entrySet是只读的。
+ * JDK8以上的compute、merge、replaceAll不经过这些方法，不会增加版本号，不要使用；
+ * 这个类的实例只在三段式配置内部使用，不对外提供。
+ *
+ * @author wuyuhou
+ *
+ */
+public class VersionedProperties extends Properties {
+
+	private static final long serialVersionUID = -5815478096040417405L;
+
+	private volatile long version = 0;
+
+	public VersionedProperties() {
+		super();
+	}
+
+	/**
+	 * 取得版本号，要在读取属性之前取得
+	 *
+	 * @return 版本号
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public synchronized Object put(Object key, Object value) {
+		Object old = super.put(key, value);
+		version++;
+		return old;
+	}
+
+	@Override
+	public synchronized void putAll(Map<?, ?> t) {
+		try {
+			super.putAll(t);
+		} finally {
+			version++;
+		}
+	}
+
+	@Override
+	public synchronized Object remove(Object key) {
+		Object old = super.remove(key);
+		version++;
+		return old;
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+		version++;
+	}
+
+	//JDK8以上覆盖Map中的方法
+	public synchronized Object putIfAbsent(Object key, Object value) {
+		Object old = get(key);
+		if (old == null) {
+			put(key, value);
+		}
+		return old;
+	}
+
+	public synchronized boolean remove(Object key, Object value) {
+		Object old = get(key);
+		if (old == null || !old.equals(value)) {
+			return false;
+		}
+		remove(key);
+		return true;
+	}
+
+	public synchronized Object replace(Object key, Object value) {
+		if (!containsKey(key)) {
+			return null;
+		}
+		return put(key, value);
+	}
+
+	public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+		Object old = get(key);
+		if (old == null || !old.equals(oldValue)) {
+			return false;
+		}
+		put(key, newValue);
+		return true;
+	}
+
+	@Override
+	public Set<Object> keySet() {
+		return Collections.unmodifiableSet(super.keySet());
+	}
+
+	@Override
+	public Collection<Object> values() {
+		return Collections.unmodifiableCollection(super.values());
+	}
+
+	@Override
+	public Set<Map.Entry<Object, Object>> entrySet() {
+		//通过只读Map取得entrySet，Entry.setValue也不可以修改
+		final Set<Map.Entry<Object, Object>> entries = super.entrySet();
+		return Collections.unmodifiableMap(new AbstractMap<Object, Object>() {
+			@Override
+			public Set<Map.Entry<Object, Object>> entrySet() {
+				return entries;
+			}
+		}).entrySet();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.convert;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.tools.utility.api.ReflectUtil;
+import com.tools.utility.api.ReflectUtil.FieldAccessor;
+import com.tools.utility.impl.reflect.ClassMetadata;
+import com.tools.utility.spi.convert.ITypeConvertor;
+import com.tools.utility.spi.convert.TypeConvertorManager;
+
+/**
+ * JavaBean映射计划<br>
+ * 
+ * 每对(源类型, 目标类型)只计算一次字段对应关系，字段通过缓存的访问器读写，
+ * 每个字段缓存上一次使用的转换器，映射时不再有权限检查和临时对象
+ *
+ * @author wuyuhou
+ *
+ */
+class BeanMapping {
+	
+	private static final TypeConvertorManager convertorManager = TypeConvertorManager.getInstance();
+	
+	//目标类型的ClassMetadata中缓存映射计划（Map、sdo到JavaBean）的键
+	private static final Object TARGET_MAPPING_KEY = new Object();
+	
+	//源类型的ClassMetadata中缓存(目标类型 -> 映射计划)（JavaBean到JavaBean）的键
+	private static final Object BEAN_MAPPING_KEY = new Object();
+	
+	//源类型是本地类、目标类型不是时，目标类型的ClassMetadata中缓存(源类型 -> 映射计划)的键
+	private static final Object SOURCE_MAPPING_KEY = new Object();
+	
+	private final FieldMapping[] fieldMappings;
+	
+	private final Map<String, FieldMapping> fieldMappingMap;
+	
+	private BeanMapping(FieldMapping[] fieldMappings) {
+		this.fieldMappings = fieldMappings;
+		Map<String, FieldMapping> map = new HashMap<String, FieldMapping>();
+		for (FieldMapping fieldMapping : fieldMappings) {
+			map.put(fieldMapping.name, fieldMapping);
+		}
+		this.fieldMappingMap = Collections.unmodifiableMap(map);
+	}
+	
+	/**
+	 * 取得按名称填充目标类型的映射计划
+	 * 
+	 * @param toClass 目标类型
+	 * @return 映射计划
+	 */
+	static BeanMapping getTargetMapping(Class toClass) {
+		ClassMetadata metadata = ClassMetadata.forClass(toClass);
+		BeanMapping mapping = (BeanMapping)metadata.getAttribute(TARGET_MAPPING_KEY);
+		if (mapping == null) {
+			List<FieldMapping> list = new ArrayList<FieldMapping>();
+			for (Entry<String, Field> entry : ReflectUtil.getAllField(toClass).entrySet()) {
+				list.add(new FieldMapping(entry.getKey(), null, ReflectUtil.accessor(entry.getValue())));
+			}
+			mapping = (BeanMapping)metadata.putAttributeIfAbsent(TARGET_MAPPING_KEY, new BeanMapping(list.toArray(new FieldMapping[list.size()])));
+		}
+		return mapping;
+	}
+	
+	/**
+	 * 取得JavaBean到JavaBean的映射计划，只包含两边同名的字段
+	 * 
+	 * @param fromClass 源类型
+	 * @param toClass 目标类型
+	 * @return 映射计划
+	 */
+	@SuppressWarnings("unchecked")
+	static BeanMapping getBeanMapping(Class fromClass, Class toClass) {
+		//缓存在可能被卸载的一方，本地类的元数据不引用其他ClassLoader加载的类
+		Class ownerClass = fromClass;
+		Class keyClass = toClass;
+		Object mappingKey = BEAN_MAPPING_KEY;
+		if (ClassMetadata.isLocalClass(fromClass) && !ClassMetadata.isLocalClass(toClass)) {
+			ownerClass = toClass;
+			keyClass = fromClass;
+			mappingKey = SOURCE_MAPPING_KEY;
+		}
+		ClassMetadata metadata = ClassMetadata.forClass(ownerClass);
+		ConcurrentHashMap<Class, BeanMapping> mappingMap = (ConcurrentHashMap<Class, BeanMapping>)metadata.getAttribute(mappingKey);
+		if (mappingMap == null) {
+			mappingMap = (ConcurrentHashMap<Class, BeanMapping>)metadata.putAttributeIfAbsent(mappingKey, new ConcurrentHashMap<Class, BeanMapping>());
+		}
+		BeanMapping mapping = mappingMap.get(keyClass);
+		if (mapping == null) {
+			Map<String, Field> fieldMap = ReflectUtil.getAllField(fromClass);
+			List<FieldMapping> list = new ArrayList<FieldMapping>();
+			for (Entry<String, Field> entry : ReflectUtil.getAllField(toClass).entrySet()) {
+				Field field = fieldMap.get(entry.getKey());
+				if (field != null) {
+					list.add(new FieldMapping(entry.getKey(), ReflectUtil.accessor(field), ReflectUtil.accessor(entry.getValue())));
+				}
+			}
+			mapping = new BeanMapping(list.toArray(new FieldMapping[list.size()]));
+			BeanMapping old = mappingMap.putIfAbsent(keyClass, mapping);
+			if (old != null) {
+				mapping = old;
+			}
+		}
+		return mapping;
+	}
+	
+	FieldMapping[] getFieldMappings() {
+		return fieldMappings;
+	}
+	
+	FieldMapping getFieldMapping(String name) {
+		return fieldMappingMap.get(name);
+	}
+	
+	/**
+	 * 字段映射
+	 */
+	static class FieldMapping {
+		
+		private final String name;
+		
+		private final FieldAccessor source;
+		
+		private final FieldAccessor target;
+		
+		private final Class targetType;
+		
+		//上一次使用的转换器
+		private volatile CachedConvertor cachedConvertor = null;
+		
+		FieldMapping(String name, FieldAccessor source, FieldAccessor target) {
+			this.name = name;
+			this.source = source;
+			this.target = target;
+			this.targetType = target.getField().getType();
+		}
+		
+		String getName() {
+			return name;
+		}
+		
+		/**
+		 * 从源对象取值，转换后设置到目标对象
+		 */
+		void copy(Object from, Object to) throws IllegalAccessException {
+			set(to, source.get(from));
+		}
+		
+		/**
+		 * 转换后设置到目标对象
+		 */
+		@SuppressWarnings("unchecked")
+		void set(Object to, Object value) throws IllegalAccessException {
+			Class valueClass = value == null ? null : value.getClass();
+			CachedConvertor cached = cachedConvertor;
+			int version = convertorManager.getVersion();
+			if (cached == null || cached.valueClass != valueClass || cached.version != version) {
+				ITypeConvertor convertor = convertorManager.getConvertor(value, targetType);
+				if (convertor == null) {
+					//没有转换器时，由管理者给出默认行为或者异常
+					target.set(to, convertorManager.convert(value, targetType, null, null));
+					return;
+				}
+				cached = new CachedConvertor(valueClass, convertor, version);
+				//其他ClassLoader加载的值类型不缓存，映射计划可能在本地类的元数据中
+				if (valueClass == null || ClassMetadata.isLocalClass(valueClass)) {
+					cachedConvertor = cached;
+				}
+			}
+			target.set(to, cached.convertor.convert(value, targetType, null, null));
+		}
+	}
+	
+	private static class CachedConvertor {
+		
+		private final Class valueClass;
+		
+		private final ITypeConvertor convertor;
+		
+		private final int version;
+		
+		CachedConvertor(Class valueClass, ITypeConvertor convertor, int version) {
+			this.valueClass = valueClass;
+			this.convertor = convertor;
+			this.version = version;
+		}
+	}
+}
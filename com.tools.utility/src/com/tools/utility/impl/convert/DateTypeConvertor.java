@@ -31,13 +31,35 @@ import com.tools.utility.spi.convert.AbstractTypeConvertor;
  */
 public class DateTypeConvertor extends AbstractTypeConvertor<Date> {
 	
-	private static final SimpleDateFormat[] supportDateFormats = new SimpleDateFormat[] {
-		new SimpleDateFormat("yyyy-MM-dd HH:mm:ss SSS"),
-		new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.S"),
-		new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"),
-		new SimpleDateFormat("yyyyMMddHHmmss"),
-		new SimpleDateFormat("yyyyMMdd"),
-		new SimpleDateFormat("yyyy-MM-dd") };
+	private static final String[] supportDatePatterns = new String[] {
+		"yyyy-MM-dd HH:mm:ss SSS",
+		"yyyy-MM-dd HH:mm:ss.S",
+		"yyyy-MM-dd HH:mm:ss",
+		"yyyyMMddHHmmss",
+		"yyyyMMdd",
+		"yyyy-MM-dd" };
+	
+	//SimpleDateFormat、Calendar都不是线程安全的，每个线程一份
+	private static final ThreadLocal<SimpleDateFormat[]> supportDateFormats = new ThreadLocal<SimpleDateFormat[]>() {
+		@Override
+		protected SimpleDateFormat[] initialValue() {
+			SimpleDateFormat[] formats = new SimpleDateFormat[supportDatePatterns.length];
+			for (int i = 0; i < formats.length; i++) {
+				formats[i] = new SimpleDateFormat(supportDatePatterns[i]);
+				formats[i].setLenient(false);
+			}
+			return formats;
+		}
+	};
+	
+	private static final ThreadLocal<Calendar> calendars = new ThreadLocal<Calendar>() {
+		@Override
+		protected Calendar initialValue() {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setLenient(false);
+			return calendar;
+		}
+	};
 
 	@Override
 	protected boolean doCanConvert(Object value, Class toClass) {
@@ -107,7 +129,7 @@ public class DateTypeConvertor extends AbstractTypeConvertor<Date> {
 				}
 				return new Date();
 			} else {
-				Date result = parseDate((String) value, supportDateFormats);
+				Date result = parseDate((String) value);
 				if (result != null) {
 					if (overrideValue != null) {
 						overrideValue.setTime(result.getTime());
@@ -121,16 +143,93 @@ public class DateTypeConvertor extends AbstractTypeConvertor<Date> {
 		throw new IllegalArgumentException("Does not recognize the data:" + value);
 	}
 	
-	private static Date parseDate(String dateString,
-			SimpleDateFormat[] format_array) {
-		for (int i = 0; i < format_array.length; ++i) {
+	private static Date parseDate(String dateString) {
+		Date result = parseFixedDate(dateString);
+		if (result != null) {
+			return result;
+		}
+		//其他形式，和原来一样依次尝试
+		SimpleDateFormat[] formats = supportDateFormats.get();
+		for (int i = 0; i < formats.length; ++i) {
 			try {
-				format_array[i].setLenient(false);
-				return format_array[i].parse(dateString);
+				return formats[i].parse(dateString);
 			} catch (Exception parseException) {
 			}
 		}
 
 		return null;
 	}
+	
+	/*
+	 * 根据长度和形式直接解析常用的固定格式，不能解析时返回null：
+	 * yyyyMMdd、yyyyMMddHHmmss、yyyy-MM-dd、yyyy-MM-dd HH:mm:ss、yyyy-MM-dd HH:mm:ss SSS、yyyy-MM-dd HH:mm:ss.S
+	 */
+	private static Date parseFixedDate(String s) {
+		int length = s.length();
+		int year, month, day, hour = 0, minute = 0, second = 0, millis = 0;
+		if (length == 8 || length == 14) {
+			if (!isDigits(s, 0, length)) {
+				return null;
+			}
+			year = toInt(s, 0, 4);
+			month = toInt(s, 4, 6);
+			day = toInt(s, 6, 8);
+			if (length == 14) {
+				hour = toInt(s, 8, 10);
+				minute = toInt(s, 10, 12);
+				second = toInt(s, 12, 14);
+			}
+		} else if (length >= 10 && isDigits(s, 0, 4) && s.charAt(4) == '-' && isDigits(s, 5, 7) && s.charAt(7) == '-' && isDigits(s, 8, 10)) {
+			year = toInt(s, 0, 4);
+			month = toInt(s, 5, 7);
+			day = toInt(s, 8, 10);
+			if (length > 10) {
+				if (length < 19 || s.charAt(10) != ' ' || !isDigits(s, 11, 13) || s.charAt(13) != ':' 
+						|| !isDigits(s, 14, 16) || s.charAt(16) != ':' || !isDigits(s, 17, 19)) {
+					return null;
+				}
+				hour = toInt(s, 11, 13);
+				minute = toInt(s, 14, 16);
+				second = toInt(s, 17, 19);
+				if (length > 19) {
+					//毫秒，1到3位数字
+					char separator = s.charAt(19);
+					if ((separator != ' ' && separator != '.') || length < 21 || length > 23 || !isDigits(s, 20, length)) {
+						return null;
+					}
+					millis = toInt(s, 20, length);
+				}
+			}
+		} else {
+			return null;
+		}
+		Calendar calendar = calendars.get();
+		calendar.clear();
+		calendar.set(year, month - 1, day, hour, minute, second);
+		calendar.set(Calendar.MILLISECOND, millis);
+		try {
+			return calendar.getTime();
+		} catch (IllegalArgumentException e) {
+			//非法的日期，比如2月30日，交给SimpleDateFormat处理，结果保持一致
+			return null;
+		}
+	}
+	
+	private static boolean isDigits(String s, int begin, int end) {
+		for (int i = begin; i < end; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static int toInt(String s, int begin, int end) {
+		int result = 0;
+		for (int i = begin; i < end; i++) {
+			result = result * 10 + (s.charAt(i) - '0');
+		}
+		return result;
+	}
 }
\ No newline at end of file
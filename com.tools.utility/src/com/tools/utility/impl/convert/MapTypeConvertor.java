@@ -17,8 +17,6 @@ package com.tools.utility.impl.convert;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.security.AccessController;
-import java.security.PrivilegedExceptionAction;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -96,19 +94,9 @@ public class MapTypeConvertor extends AbstractTypeConvertor<Map> {
 				Map<String, Field> fieldMap = ReflectUtil.getAllField(value.getClass());
 				for (Entry<String, Field> entry : fieldMap.entrySet()) {
 					final String name = entry.getKey();
-					final Field field = entry.getValue();
+					Field field = entry.getValue();
 					try {
-						Object fieldValue = AccessController.doPrivileged(new PrivilegedExceptionAction() {
-							public Object run() throws Exception {
-								boolean access = field.isAccessible();
-								try {
-									field.setAccessible(true);
-									return field.get(value);
-								} finally {
-									field.setAccessible(access);
-								}
-							}					
-						});
+						Object fieldValue = ReflectUtil.accessor(field).get(value);
 						retMap.put(name, fieldValue);
 					} catch (Throwable t) {
 						throw new ConvertRuntimeException(t.getMessage(), t);
@@ -17,9 +17,6 @@ package com.tools.utility.impl.convert;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.reflect.Field;
-import java.security.AccessController;
-import java.security.PrivilegedExceptionAction;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -27,6 +24,7 @@ import java.util.Map.Entry;
 
 import com.tools.utility.api.ReflectUtil;
 import com.tools.utility.api.SdoUtil;
+import com.tools.utility.impl.convert.BeanMapping.FieldMapping;
 import com.tools.utility.spi.convert.AbstractTypeConvertor;
 import com.tools.utility.spi.convert.ConvertRuntimeException;
 import com.tools.utility.spi.convert.TypeConvertorManager;
@@ -80,81 +78,36 @@ public class ObjectTypeConvertor extends AbstractTypeConvertor<Object> {
 					newretValue = ReflectUtil.newInstance(toClass);
 				}
 				final Object retValue = newretValue;
-				Map<String, Field> retfieldMap = ReflectUtil.getAllField(toClass);
 				
 				if (SdoUtil.isSdoType(value.getClass())) {//sdo -> JavaBean
-					for (Entry<String, Field> entry : retfieldMap.entrySet()) {
-						String name = entry.getKey();
-						final Field field = entry.getValue();
+					for (FieldMapping fieldMapping : BeanMapping.getTargetMapping(toClass).getFieldMappings()) {
 						try {
-							final Object propertyValue = SdoUtil.getPropertyValue(value, name);
-							AccessController.doPrivileged(new PrivilegedExceptionAction() {
-								public Object run() throws Exception {
-									boolean access = field.isAccessible();
-									try {
-										field.setAccessible(true);
-										field.set(retValue, convertorManager.convert(propertyValue, field.getType(), null, null));
-										return null;
-									} finally {
-										field.setAccessible(access);
-									}
-								}					
-							});
+							fieldMapping.set(retValue, SdoUtil.getPropertyValue(value, fieldMapping.getName()));
 						} catch (Throwable t) {
 							throw new ConvertRuntimeException(t.getMessage(), t);
 						}				
 					}
 				} else if (value instanceof Map) {//Map -> Javabean
+					BeanMapping mapping = BeanMapping.getTargetMapping(toClass);
 					for (Object elem : ((Map)value).entrySet()) {
-						final Entry entry = (Entry)elem;
+						Entry entry = (Entry)elem;
 						String name = convertorManager.convert(entry.getKey(), String.class, null, null);
-						final Field retfield = retfieldMap.get(name);
-						if (retfield != null) {
+						FieldMapping fieldMapping = mapping.getFieldMapping(name);
+						if (fieldMapping != null) {
 							try {
-								AccessController.doPrivileged(new PrivilegedExceptionAction() {
-									public Object run() throws Exception {
-										boolean access = retfield.isAccessible();
-										try {
-											retfield.setAccessible(true);
-											retfield.set(retValue, convertorManager.convert(entry.getValue(), retfield.getType(), null, null));
-											return null;
-										} finally {
-											retfield.setAccessible(access);
-										}
-									}					
-								});
+								fieldMapping.set(retValue, entry.getValue());
 							} catch (Throwable t) {
 								throw new ConvertRuntimeException(t.getMessage(), t);
 							}	
 						}	
 					}
 				} else {//javaBean->JavaBean
-					Map<String, Field> fieldMap = ReflectUtil.getAllField(value.getClass());
-					for (Entry<String, Field> entry : retfieldMap.entrySet()) {
-						String name = entry.getKey();
-						final Field retfield = entry.getValue();			
-						final Field field = fieldMap.get(name);
-						if (field != null) {
-							try {
-								AccessController.doPrivileged(new PrivilegedExceptionAction() {
-									public Object run() throws Exception {
-										boolean retaccess = retfield.isAccessible();
-										boolean access = field.isAccessible();
-										try {
-											retfield.setAccessible(true);
-											field.setAccessible(true);
-											retfield.set(retValue, convertorManager.convert(field.get(value), retfield.getType(), null, null));
-											return null;
-										} finally {
-											retfield.setAccessible(retaccess);
-											field.setAccessible(access);
-										}
-									}					
-								});
-							} catch (Throwable t) {
-								throw new ConvertRuntimeException(t.getMessage(), t);
-							}	
-						}					
+					for (FieldMapping fieldMapping : BeanMapping.getBeanMapping(value.getClass(), toClass).getFieldMappings()) {
+						try {
+							fieldMapping.copy(value, retValue);
+						} catch (Throwable t) {
+							throw new ConvertRuntimeException(t.getMessage(), t);
+						}	
 					}
 				}
 				return retValue;
@@ -18,8 +18,6 @@ package com.tools.utility.impl.convert;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
-import java.security.AccessController;
-import java.security.PrivilegedExceptionAction;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -103,20 +101,10 @@ public class SdoTypeConvertor extends AbstractTypeConvertor<Object> {
 					Map<String, Field> fieldMap = ReflectUtil.getAllField(value.getClass());
 					for (Entry<String, Field> entry : fieldMap.entrySet()) {
 						final String name = entry.getKey();
-						final Field field = entry.getValue();
+						Field field = entry.getValue();
 						try {
 							final Class propertyTypeClass = SdoUtil.getPropertyInstanceClass(retValue, name);
-							Object fieldValue = AccessController.doPrivileged(new PrivilegedExceptionAction() {
-								public Object run() throws Exception {
-									boolean access = field.isAccessible();
-									try {
-										field.setAccessible(true);
-										return field.get(value);
-									} finally {
-										field.setAccessible(access);
-									}
-								}					
-							});
+							Object fieldValue = ReflectUtil.accessor(field).get(value);
 							SdoUtil.setPropertyValue(retValue, name, convertorManager.convert(fieldValue, propertyTypeClass, null, null));
 						} catch (Throwable t) {
 							throw new ConvertRuntimeException(t.getMessage(), t);
@@ -24,8 +24,6 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.security.AccessController;
-import java.security.PrivilegedExceptionAction;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
@@ -181,18 +179,8 @@ public class StringConvertor extends AbstractTypeConvertor<String> {
 				Map<String, Field> fieldMap = ReflectUtil.getAllField(value.getClass());
 				for (Entry<String, Field> entry : fieldMap.entrySet()) {
 					String key = entry.getKey();
-					final Field field = entry.getValue();
-					Object fieldValue = AccessController.doPrivileged(new PrivilegedExceptionAction() {
-						public Object run() throws Exception{
-							boolean access = field.isAccessible();
-							try {
-								field.setAccessible(true);
-								return field.get(value);
-							} finally {
-								field.setAccessible(access);
-							}
-						}					
-					});
+					Field field = entry.getValue();
+					Object fieldValue = ReflectUtil.accessor(field).get(value);
 					buf.append("<property name='").append(key).append("'");
 					buf.append(" class='").append(getClassName(fieldValue.getClass())).append("'>");
 					if (fieldValue == value) {
@@ -0,0 +1,1062 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.marshaller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.tools.utility.api.ReflectUtil;
+import com.tools.utility.impl.reflect.ClassMetadata;
+import com.tools.utility.spi.marshaller.AbstractDataMarshaller;
+import com.tools.utility.spi.marshaller.DataWrapper;
+
+/**
+ * 紧凑的二进制数据序列化，用于远程调用、缓存、消息等<br>
+ *
+ * 每个值是一个类型标记加上内容：整数使用变长编码，字符串使用UTF-8，
+ * 常用的集合、Map、数组、日期、大数直接编码；
+ * 可序列化的JavaBean按字段编码，每个类的字段读写计划预先生成并按类缓存，
+ * 类名称和字段描述在一次序列化中只写一次，之后只写编号，读时按字段名称对应，新增、删除字段可以兼容。<br>
+ * 其他对象（包括自定义了序列化方法的类、异常、JDK中的类）使用JDK序列化后嵌入，
+ * 所以能用JdkDataMarshaller序列化的数据都能用它序列化。<br>
+ * JavaBean保留共享引用，可以有循环引用；直接编码的集合、Map、数组不保留共享引用，不能有循环引用。
+ * 只有ArrayList、LinkedList、HashSet、LinkedHashSet、HashMap、LinkedHashMap以及自然顺序的TreeSet、TreeMap直接编码，
+ * 其他的集合、Map（比如Properties、ConcurrentHashMap、Arrays.asList的结果）使用JDK序列化，读出的类型不变。
+ *
+ * @author wuyuhou
+ *
+ */
+public class BinaryDataMarshaller extends AbstractDataMarshaller {
+
+	protected static final int NULL = 0;
+	protected static final int TRUE = 1;
+	protected static final int FALSE = 2;
+	protected static final int BYTE = 3;
+	protected static final int SHORT = 4;
+	protected static final int CHAR = 5;
+	protected static final int INT = 6;
+	protected static final int LONG = 7;
+	protected static final int FLOAT = 8;
+	protected static final int DOUBLE = 9;
+	protected static final int STRING = 10;
+	protected static final int BYTES = 11;
+	protected static final int INTS = 12;
+	protected static final int LONGS = 13;
+	protected static final int ARRAY = 14;
+	protected static final int COLLECTION = 15;
+	protected static final int MAP = 16;
+	protected static final int DATE = 17;
+	protected static final int BIG_DECIMAL = 18;
+	protected static final int BIG_INTEGER = 19;
+	protected static final int CLASS = 20;
+	protected static final int ENUM = 21;
+	protected static final int SERIALIZABLE = 22;
+	protected static final int BEAN = 23;
+	protected static final int REFERENCE = 24;
+
+	//JavaBean字段的编码，基本类型字段不写类型标记
+	private static final int FIELD_OBJECT = 0;
+	private static final int FIELD_BOOLEAN = 1;
+	private static final int FIELD_BYTE = 2;
+	private static final int FIELD_SHORT = 3;
+	private static final int FIELD_CHAR = 4;
+	private static final int FIELD_INT = 5;
+	private static final int FIELD_LONG = 6;
+	private static final int FIELD_FLOAT = 7;
+	private static final int FIELD_DOUBLE = 8;
+
+	private static final Object PLAN_KEY = new Object();
+
+	//数组的最大维数
+	private static final int MAX_ARRAY_DIMENSIONS = 255;
+
+	//不能按字段编码的类的计划
+	private static final BeanPlan NOT_BEAN = new BeanPlan(null, null, new FieldPlan[0]);
+
+	//直接编码的集合、Map类型，下标就是编码
+	private static final Class[] CONTAINER_TYPES = new Class[]{
+		ArrayList.class, LinkedList.class, HashSet.class, LinkedHashSet.class, TreeSet.class,
+		HashMap.class, LinkedHashMap.class, TreeMap.class
+	};
+
+	//默认的最大长度：字节数组、字符串的字节数，数组、集合的元素个数
+	public static final int DEFAULT_MAX_LENGTH = 64 * 1024 * 1024;
+
+	private int maxLength = DEFAULT_MAX_LENGTH;
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * 设置读取时允许的最大长度，超过时认为数据错误
+	 *
+	 * @param maxLength 最大长度
+	 */
+	public void setMaxLength(int maxLength) {
+		if (maxLength <= 0) {
+			throw new IllegalArgumentException("maxLength'" + maxLength + "' is error!");
+		}
+		this.maxLength = maxLength;
+	}
+
+	@Override
+	protected void doMarshal(Object data, OutputStream out, Object additional) throws Exception {
+		if (data instanceof DataWrapper) {
+			data = ((DataWrapper)data).getData();
+		}
+		Output output = new Output();
+		writeValue(output, data);
+		output.writeTo(out);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected <T> T doUnmarshal(InputStream in, Object additional) throws Exception {
+		return (T)readValue(new Input(in, maxLength));
+	}
+
+	protected void writeValue(Output out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+			return;
+		}
+		Class type = value.getClass();
+		if (type == String.class) {
+			out.writeByte(STRING);
+			out.writeString((String)value);
+		} else if (type == Integer.class) {
+			out.writeByte(INT);
+			out.writeVarLong(((Integer)value).intValue());
+		} else if (type == Long.class) {
+			out.writeByte(LONG);
+			out.writeVarLong(((Long)value).longValue());
+		} else if (type == Boolean.class) {
+			out.writeByte(((Boolean)value).booleanValue() ? TRUE : FALSE);
+		} else if (type == Double.class) {
+			out.writeByte(DOUBLE);
+			out.writeFixedLong(Double.doubleToLongBits(((Double)value).doubleValue()));
+		} else if (type == Float.class) {
+			out.writeByte(FLOAT);
+			out.writeFixedInt(Float.floatToIntBits(((Float)value).floatValue()));
+		} else if (type == Short.class) {
+			out.writeByte(SHORT);
+			out.writeVarLong(((Short)value).shortValue());
+		} else if (type == Byte.class) {
+			out.writeByte(BYTE);
+			out.writeByte(((Byte)value).byteValue());
+		} else if (type == Character.class) {
+			out.writeByte(CHAR);
+			out.writeVarInt(((Character)value).charValue());
+		} else if (type == Date.class) {
+			out.writeByte(DATE);
+			out.writeVarLong(((Date)value).getTime());
+		} else if (type == BigDecimal.class) {
+			out.writeByte(BIG_DECIMAL);
+			out.writeString(value.toString());
+		} else if (type == BigInteger.class) {
+			out.writeByte(BIG_INTEGER);
+			byte[] bytes = ((BigInteger)value).toByteArray();
+			out.writeVarInt(bytes.length);
+			out.write(bytes, 0, bytes.length);
+		} else if (type == byte[].class) {
+			byte[] bytes = (byte[])value;
+			out.writeByte(BYTES);
+			out.writeVarInt(bytes.length);
+			out.write(bytes, 0, bytes.length);
+		} else if (type == int[].class) {
+			int[] ints = (int[])value;
+			out.writeByte(INTS);
+			out.writeVarInt(ints.length);
+			for (int i = 0; i < ints.length; i++) {
+				out.writeVarLong(ints[i]);
+			}
+		} else if (type == long[].class) {
+			long[] longs = (long[])value;
+			out.writeByte(LONGS);
+			out.writeVarInt(longs.length);
+			for (int i = 0; i < longs.length; i++) {
+				out.writeVarLong(longs[i]);
+			}
+		} else if (type.isArray()) {
+			int length = Array.getLength(value);
+			out.writeByte(ARRAY);
+			writeClass(out, type.getComponentType());
+			out.writeVarInt(length);
+			for (int i = 0; i < length; i++) {
+				writeValue(out, Array.get(value, i));
+			}
+		} else if (value instanceof Class) {
+			out.writeByte(CLASS);
+			writeClass(out, (Class)value);
+		} else if (value instanceof Enum) {
+			out.writeByte(ENUM);
+			writeClass(out, ((Enum)value).getDeclaringClass());
+			out.writeString(((Enum)value).name());
+		} else if (!writeContainer(out, value)) {
+			writeObject(out, value);
+		}
+	}
+
+	//常用集合、Map，排序的集合、Map只有在使用自然顺序时才直接编码
+	private boolean writeContainer(Output out, Object value) throws IOException {
+		int kind = getContainerKind(value.getClass());
+		if (kind < 0) {
+			return false;
+		}
+		if (value instanceof SortedSet && ((SortedSet)value).comparator() != null
+				|| value instanceof SortedMap && ((SortedMap)value).comparator() != null) {
+			return false;
+		}
+		if (value instanceof Collection) {
+			Collection collection = (Collection)value;
+			out.writeByte(COLLECTION);
+			out.writeByte(kind);
+			out.writeVarInt(collection.size());
+			for (Object element : collection) {
+				writeValue(out, element);
+			}
+		} else {
+			Map map = (Map)value;
+			out.writeByte(MAP);
+			out.writeByte(kind);
+			out.writeVarInt(map.size());
+			for (Iterator iterator = map.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry entry = (Map.Entry)iterator.next();
+				writeValue(out, entry.getKey());
+				writeValue(out, entry.getValue());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 写其他对象，JavaBean按字段编码，否则使用JDK序列化
+	 *
+	 * @param out 输出
+	 * @param value 对象
+	 * @throws IOException 写出错
+	 */
+	protected void writeObject(Output out, Object value) throws IOException {
+		BeanPlan plan = getBeanPlan(value.getClass());
+		if (plan != NOT_BEAN) {
+			writeBean(out, value, plan);
+			return;
+		}
+		if (!(value instanceof Serializable)) {
+			throw new NotSerializableException(value.getClass().getName());
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		ObjectOutputStream objOut = new ObjectOutputStream(bytes);
+		objOut.writeObject(value);
+		objOut.close();
+		out.writeByte(SERIALIZABLE);
+		out.writeVarInt(bytes.size());
+		out.write(bytes.toByteArray(), 0, bytes.size());
+	}
+
+	private void writeBean(Output out, Object value, BeanPlan plan) throws IOException {
+		Integer reference = out.objectRefs.get(value);
+		if (reference != null) {
+			out.writeByte(REFERENCE);
+			out.writeVarInt(reference.intValue());
+			return;
+		}
+		out.objectRefs.put(value, Integer.valueOf(out.objectRefs.size()));
+		out.writeByte(BEAN);
+		//描述：0加上类和字段，或者已经写过的描述编号加1
+		Integer descriptor = out.beanRefs.get(plan);
+		if (descriptor != null) {
+			out.writeVarInt(descriptor.intValue() + 1);
+		} else {
+			out.beanRefs.put(plan, Integer.valueOf(out.beanRefs.size()));
+			out.writeVarInt(0);
+			writeClass(out, plan.type);
+			out.writeVarInt(plan.fields.length);
+			for (FieldPlan field : plan.fields) {
+				out.writeString(field.name);
+				out.writeByte(field.code);
+			}
+		}
+		try {
+			for (FieldPlan field : plan.fields) {
+				writeField(out, value, field);
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void writeField(Output out, Object value, FieldPlan plan) throws IOException, IllegalAccessException {
+		Field field = plan.field;
+		switch (plan.code) {
+			case FIELD_BOOLEAN:
+				out.writeByte(field.getBoolean(value) ? 1 : 0);
+				break;
+			case FIELD_BYTE:
+				out.writeByte(field.getByte(value));
+				break;
+			case FIELD_SHORT:
+				out.writeVarLong(field.getShort(value));
+				break;
+			case FIELD_CHAR:
+				out.writeVarInt(field.getChar(value));
+				break;
+			case FIELD_INT:
+				out.writeVarLong(field.getInt(value));
+				break;
+			case FIELD_LONG:
+				out.writeVarLong(field.getLong(value));
+				break;
+			case FIELD_FLOAT:
+				out.writeFixedInt(Float.floatToIntBits(field.getFloat(value)));
+				break;
+			case FIELD_DOUBLE:
+				out.writeFixedLong(Double.doubleToLongBits(field.getDouble(value)));
+				break;
+			default:
+				writeValue(out, field.get(value));
+		}
+	}
+
+	//类名称：0加上数组维数和元素类名称，或者已经写过的类编号加1
+	protected void writeClass(Output out, Class type) throws IOException {
+		Integer reference = out.classRefs.get(type);
+		if (reference != null) {
+			out.writeVarInt(reference.intValue() + 1);
+			return;
+		}
+		out.classRefs.put(type, Integer.valueOf(out.classRefs.size()));
+		out.writeVarInt(0);
+		int dimensions = 0;
+		while (type.isArray()) {
+			dimensions++;
+			type = type.getComponentType();
+		}
+		out.writeVarInt(dimensions);
+		out.writeString(type.getName());
+	}
+
+	protected Object readValue(Input in) throws Exception {
+		int tag = in.readByte();
+		switch (tag) {
+			case NULL:
+				return null;
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case BYTE:
+				return Byte.valueOf((byte)in.readByte());
+			case SHORT:
+				return Short.valueOf((short)in.readVarLong());
+			case CHAR:
+				return Character.valueOf((char)in.readVarInt());
+			case INT:
+				return Integer.valueOf((int)in.readVarLong());
+			case LONG:
+				return Long.valueOf(in.readVarLong());
+			case FLOAT:
+				return Float.valueOf(Float.intBitsToFloat(in.readFixedInt()));
+			case DOUBLE:
+				return Double.valueOf(Double.longBitsToDouble(in.readFixedLong()));
+			case STRING:
+				return in.readString();
+			case BYTES:
+				return in.readBytes(in.readLength());
+			case INTS: {
+				int length = in.readLength();
+				int[] ints = new int[Input.initialCapacity(length)];
+				for (int i = 0; i < length; i++) {
+					if (i == ints.length) {
+						ints = Arrays.copyOf(ints, Input.grow(i, length));
+					}
+					ints[i] = (int)in.readVarLong();
+				}
+				return ints;
+			}
+			case LONGS: {
+				int length = in.readLength();
+				long[] longs = new long[Input.initialCapacity(length)];
+				for (int i = 0; i < length; i++) {
+					if (i == longs.length) {
+						longs = Arrays.copyOf(longs, Input.grow(i, length));
+					}
+					longs[i] = in.readVarLong();
+				}
+				return longs;
+			}
+			case ARRAY: {
+				Class componentType = readClass(in);
+				int length = in.readLength();
+				Object array = Array.newInstance(componentType, Input.initialCapacity(length));
+				for (int i = 0; i < length; i++) {
+					if (i == Array.getLength(array)) {
+						Object newArray = Array.newInstance(componentType, Input.grow(i, length));
+						System.arraycopy(array, 0, newArray, 0, i);
+						array = newArray;
+					}
+					Array.set(array, i, readValue(in));
+				}
+				return array;
+			}
+			case COLLECTION: {
+				Collection collection = (Collection)newContainer(in.readByte());
+				for (int i = in.readLength(); i > 0; i--) {
+					collection.add(readValue(in));
+				}
+				return collection;
+			}
+			case MAP: {
+				Map map = (Map)newContainer(in.readByte());
+				for (int i = in.readLength(); i > 0; i--) {
+					Object key = readValue(in);
+					map.put(key, readValue(in));
+				}
+				return map;
+			}
+			case DATE:
+				return new Date(in.readVarLong());
+			case BIG_DECIMAL:
+				return new BigDecimal(in.readString());
+			case BIG_INTEGER:
+				return new BigInteger(in.readBytes(in.readLength()));
+			case CLASS:
+				return readClass(in);
+			case ENUM:
+				return Enum.valueOf(readClass(in), in.readString());
+			default:
+				return readObject(in, tag);
+		}
+	}
+
+	/**
+	 * 读其他对象：JavaBean、JavaBean引用、JDK序列化的对象
+	 *
+	 * @param in 输入
+	 * @param tag 类型标记
+	 * @return 对象
+	 * @throws Exception 读出错
+	 */
+	protected Object readObject(Input in, int tag) throws Exception {
+		if (tag == BEAN) {
+			return readBean(in);
+		}
+		if (tag == REFERENCE) {
+			int reference = in.readVarInt();
+			if (reference < 0 || reference >= in.objectRefs.size()) {
+				throw new StreamCorruptedException("Illegal reference:" + reference);
+			}
+			return in.objectRefs.get(reference);
+		}
+		if (tag != SERIALIZABLE) {
+			throw new StreamCorruptedException("Unknown tag:" + tag);
+		}
+		byte[] bytes = in.readBytes(in.readLength());
+		ObjectInputStream objIn = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		return objIn.readObject();
+	}
+
+	private Object readBean(Input in) throws Exception {
+		int reference = in.readVarInt();
+		BeanDescriptor descriptor = null;
+		if (reference == 0) {
+			Class type = readClass(in);
+			//和JDK序列化一样，只创建可序列化的类的对象
+			if (!Serializable.class.isAssignableFrom(type)) {
+				throw new NotSerializableException(type.getName());
+			}
+			BeanPlan plan = getBeanPlan(type);
+			if (plan == NOT_BEAN) {
+				throw new InvalidClassException(type.getName(), "Not bean");
+			}
+			int count = in.readLength();
+			FieldPlan[] targets = new FieldPlan[Input.initialCapacity(count)];
+			int[] codes = new int[targets.length];
+			for (int i = 0; i < count; i++) {
+				if (i == targets.length) {
+					targets = Arrays.copyOf(targets, Input.grow(i, count));
+					codes = Arrays.copyOf(codes, targets.length);
+				}
+				targets[i] = plan.getField(in.readString());
+				codes[i] = in.readByte();
+			}
+			descriptor = new BeanDescriptor(plan, targets, codes);
+			in.beanRefs.add(descriptor);
+		} else if (reference <= in.beanRefs.size()) {
+			descriptor = in.beanRefs.get(reference - 1);
+		} else {
+			throw new StreamCorruptedException("Illegal bean descriptor:" + reference);
+		}
+		Object bean = descriptor.plan.constructor.newInstance();
+		//先登记，循环引用时可以读到自身
+		in.objectRefs.add(bean);
+		for (int i = 0; i < descriptor.codes.length; i++) {
+			readField(in, bean, descriptor.codes[i], descriptor.targets[i]);
+		}
+		return bean;
+	}
+
+	//写方的字段在本地不存在时读出后丢弃，两边类型不同时按包装类型设置
+	private void readField(Input in, Object bean, int code, FieldPlan target) throws Exception {
+		if (target != null && target.code == code) {
+			Field field = target.field;
+			switch (code) {
+				case FIELD_BOOLEAN:
+					field.setBoolean(bean, in.readByte() != 0);
+					return;
+				case FIELD_BYTE:
+					field.setByte(bean, (byte)in.readByte());
+					return;
+				case FIELD_SHORT:
+					field.setShort(bean, (short)in.readVarLong());
+					return;
+				case FIELD_CHAR:
+					field.setChar(bean, (char)in.readVarInt());
+					return;
+				case FIELD_INT:
+					field.setInt(bean, (int)in.readVarLong());
+					return;
+				case FIELD_LONG:
+					field.setLong(bean, in.readVarLong());
+					return;
+				case FIELD_FLOAT:
+					field.setFloat(bean, Float.intBitsToFloat(in.readFixedInt()));
+					return;
+				case FIELD_DOUBLE:
+					field.setDouble(bean, Double.longBitsToDouble(in.readFixedLong()));
+					return;
+				default:
+					field.set(bean, readValue(in));
+					return;
+			}
+		}
+		Object value = null;
+		switch (code) {
+			case FIELD_OBJECT:
+				value = readValue(in);
+				break;
+			case FIELD_BOOLEAN:
+				value = Boolean.valueOf(in.readByte() != 0);
+				break;
+			case FIELD_BYTE:
+				value = Byte.valueOf((byte)in.readByte());
+				break;
+			case FIELD_SHORT:
+				value = Short.valueOf((short)in.readVarLong());
+				break;
+			case FIELD_CHAR:
+				value = Character.valueOf((char)in.readVarInt());
+				break;
+			case FIELD_INT:
+				value = Integer.valueOf((int)in.readVarLong());
+				break;
+			case FIELD_LONG:
+				value = Long.valueOf(in.readVarLong());
+				break;
+			case FIELD_FLOAT:
+				value = Float.valueOf(Float.intBitsToFloat(in.readFixedInt()));
+				break;
+			case FIELD_DOUBLE:
+				value = Double.valueOf(Double.longBitsToDouble(in.readFixedLong()));
+				break;
+			default:
+				throw new StreamCorruptedException("Unknown field code:" + code);
+		}
+		if (target != null && (value != null || !target.field.getType().isPrimitive())) {
+			target.field.set(bean, value);
+		}
+	}
+
+	protected Class readClass(Input in) throws Exception {
+		int reference = in.readVarInt();
+		if (reference > 0) {
+			if (reference > in.classRefs.size()) {
+				throw new StreamCorruptedException("Illegal class reference:" + reference);
+			}
+			return in.classRefs.get(reference - 1);
+		}
+		int dimensions = in.readVarInt();
+		//JVM限制数组最多255维
+		if (dimensions < 0 || dimensions > MAX_ARRAY_DIMENSIONS) {
+			throw new StreamCorruptedException("Illegal array dimensions:" + dimensions);
+		}
+		Class type = ReflectUtil.loadClass(null, in.readString());
+		if (dimensions > 0) {
+			type = Array.newInstance(type, new int[dimensions]).getClass();
+		}
+		in.classRefs.add(type);
+		return type;
+	}
+
+	/**
+	 * 取得类的字段读写计划，不能按字段编码时返回NOT_BEAN
+	 *
+	 * @param type 类
+	 * @return 字段读写计划
+	 */
+	private static BeanPlan getBeanPlan(Class type) {
+		ClassMetadata metadata = ClassMetadata.forClass(type);
+		BeanPlan plan = (BeanPlan)metadata.getAttribute(PLAN_KEY);
+		if (plan == null) {
+			plan = (BeanPlan)metadata.putAttributeIfAbsent(PLAN_KEY, createBeanPlan(type, metadata));
+		}
+		return plan;
+	}
+
+	/*
+	 * 可以按字段编码的类：可序列化，有无参构造方法，所有实例字段都不是final，
+	 * 没有自定义序列化方法，不是异常，不是JDK中的类
+	 */
+	private static BeanPlan createBeanPlan(Class type, ClassMetadata metadata) {
+		if (!Serializable.class.isAssignableFrom(type)
+				|| type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isArray() || type.isPrimitive() || type.isEnum()
+				|| Throwable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+				|| type.getName().startsWith("java.") || type.getName().startsWith("javax.")) {
+			return NOT_BEAN;
+		}
+		for (Class clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			for (Method method : clazz.getDeclaredMethods()) {
+				if (!Modifier.isStatic(method.getModifiers()) && CUSTOM_SERIALIZATION_METHODS.contains(method.getName())) {
+					return NOT_BEAN;
+				}
+			}
+		}
+		Constructor constructor = null;
+		for (Constructor candidate : metadata.getConstructors()) {
+			if (candidate.getParameterTypes().length == 0) {
+				constructor = candidate;
+				break;
+			}
+		}
+		if (constructor == null) {
+			return NOT_BEAN;
+		}
+		List<FieldPlan> fields = new ArrayList<FieldPlan>();
+		for (Entry<String, Field> entry : metadata.getFields().entrySet()) {
+			int modifiers = entry.getValue().getModifiers();
+			if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+				continue;
+			}
+			if (Modifier.isFinal(modifiers)) {
+				return NOT_BEAN;
+			}
+			Field field = ReflectUtil.accessor(entry.getValue()).getField();
+			fields.add(new FieldPlan(entry.getKey(), field, getFieldCode(field.getType())));
+		}
+		FieldPlan[] fieldArray = fields.toArray(new FieldPlan[fields.size()]);
+		Arrays.sort(fieldArray);
+		final Constructor accessibleConstructor = constructor;
+		AccessController.doPrivileged(new PrivilegedAction<Object>() {
+			public Object run() {
+				accessibleConstructor.setAccessible(true);
+				return null;
+			}
+		});
+		return new BeanPlan(type, constructor, fieldArray);
+	}
+
+	private static int getFieldCode(Class type) {
+		if (!type.isPrimitive()) {
+			return FIELD_OBJECT;
+		}
+		if (type == int.class) {
+			return FIELD_INT;
+		}
+		if (type == long.class) {
+			return FIELD_LONG;
+		}
+		if (type == boolean.class) {
+			return FIELD_BOOLEAN;
+		}
+		if (type == double.class) {
+			return FIELD_DOUBLE;
+		}
+		if (type == float.class) {
+			return FIELD_FLOAT;
+		}
+		if (type == short.class) {
+			return FIELD_SHORT;
+		}
+		if (type == char.class) {
+			return FIELD_CHAR;
+		}
+		return FIELD_BYTE;
+	}
+
+	//只有读时能重建为同一个类的才直接编码，其他类型（比如Properties、ConcurrentHashMap）使用JDK序列化
+	private static int getContainerKind(Class type) {
+		for (int i = 0; i < CONTAINER_TYPES.length; i++) {
+			if (CONTAINER_TYPES[i] == type) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static Object newContainer(int kind) throws Exception {
+		if (kind < 0 || kind >= CONTAINER_TYPES.length) {
+			throw new StreamCorruptedException("Unknown container:" + kind);
+		}
+		return CONTAINER_TYPES[kind].newInstance();
+	}
+
+	//自定义了序列化行为的方法
+	private static final Set<String> CUSTOM_SERIALIZATION_METHODS = new HashSet<String>(
+			Arrays.asList("writeObject", "readObject", "readObjectNoData", "writeReplace", "readResolve"));
+
+	/*
+	 * 类的字段读写计划，按类缓存
+	 */
+	private static class BeanPlan {
+
+		private final Class type;
+
+		private final Constructor constructor;
+
+		private final FieldPlan[] fields;
+
+		private final Map<String, FieldPlan> fieldMap = new HashMap<String, FieldPlan>();
+
+		BeanPlan(Class type, Constructor constructor, FieldPlan[] fields) {
+			this.type = type;
+			this.constructor = constructor;
+			this.fields = fields;
+			for (FieldPlan field : fields) {
+				fieldMap.put(field.name, field);
+			}
+		}
+
+		FieldPlan getField(String name) {
+			return fieldMap.get(name);
+		}
+	}
+
+	private static class FieldPlan implements Comparable<FieldPlan> {
+
+		private final String name;
+
+		//可以访问的字段
+		private final Field field;
+
+		private final int code;
+
+		FieldPlan(String name, Field field, int code) {
+			this.name = name;
+			this.field = field;
+			this.code = code;
+		}
+
+		public int compareTo(FieldPlan o) {
+			return name.compareTo(o.name);
+		}
+	}
+
+	/*
+	 * 读到的JavaBean描述：写方的字段对应的本地字段（不存在时为空）和字段编码
+	 */
+	private static class BeanDescriptor {
+
+		private final BeanPlan plan;
+
+		private final FieldPlan[] targets;
+
+		private final int[] codes;
+
+		BeanDescriptor(BeanPlan plan, FieldPlan[] targets, int[] codes) {
+			this.plan = plan;
+			this.targets = targets;
+			this.codes = codes;
+		}
+	}
+
+	/**
+	 * 输出，先写到内部数组，最后一次写到目标流；记录本次已经写过的类、JavaBean描述和JavaBean
+	 */
+	protected static class Output {
+
+		private Map<Class, Integer> classRefs = new HashMap<Class, Integer>();
+
+		private Map<BeanPlan, Integer> beanRefs = new HashMap<BeanPlan, Integer>();
+
+		private Map<Object, Integer> objectRefs = new IdentityHashMap<Object, Integer>();
+
+		private byte[] buf = new byte[256];
+
+		private int count = 0;
+
+		private void ensureCapacity(int length) {
+			if (count + length > buf.length) {
+				byte[] newBuf = new byte[Math.max(buf.length << 1, count + length)];
+				System.arraycopy(buf, 0, newBuf, 0, count);
+				buf = newBuf;
+			}
+		}
+
+		public void writeByte(int b) {
+			ensureCapacity(1);
+			buf[count++] = (byte)b;
+		}
+
+		public void write(byte[] bytes, int offset, int length) {
+			ensureCapacity(length);
+			System.arraycopy(bytes, offset, buf, count, length);
+			count += length;
+		}
+
+		//无符号变长整数，每个字节7位
+		public void writeVarInt(int value) {
+			ensureCapacity(5);
+			while ((value & ~0x7F) != 0) {
+				buf[count++] = (byte)((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buf[count++] = (byte)value;
+		}
+
+		//有符号变长整数，zigzag编码后小的负数也很短
+		public void writeVarLong(long value) {
+			ensureCapacity(10);
+			value = (value << 1) ^ (value >> 63);
+			while ((value & ~0x7FL) != 0) {
+				buf[count++] = (byte)((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buf[count++] = (byte)value;
+		}
+
+		public void writeFixedInt(int value) {
+			ensureCapacity(4);
+			buf[count++] = (byte)(value >>> 24);
+			buf[count++] = (byte)(value >>> 16);
+			buf[count++] = (byte)(value >>> 8);
+			buf[count++] = (byte)value;
+		}
+
+		public void writeFixedLong(long value) {
+			writeFixedInt((int)(value >>> 32));
+			writeFixedInt((int)value);
+		}
+
+		//UTF-8，长度为字节数
+		public void writeString(String value) {
+			int length = value.length();
+			int byteLength = length;
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+				if (c >= 0x80) {
+					byteLength += c >= 0x800 ? 2 : 1;
+				}
+			}
+			writeVarInt(byteLength);
+			ensureCapacity(byteLength);
+			if (byteLength == length) {
+				for (int i = 0; i < length; i++) {
+					buf[count++] = (byte)value.charAt(i);
+				}
+				return;
+			}
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+				if (c < 0x80) {
+					buf[count++] = (byte)c;
+				} else if (c < 0x800) {
+					buf[count++] = (byte)(0xC0 | (c >> 6));
+					buf[count++] = (byte)(0x80 | (c & 0x3F));
+				} else {
+					//代理对按两个字符分别编码，和DataOutputStream.writeUTF一致
+					buf[count++] = (byte)(0xE0 | (c >> 12));
+					buf[count++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+					buf[count++] = (byte)(0x80 | (c & 0x3F));
+				}
+			}
+		}
+
+		public int size() {
+			return count;
+		}
+
+		public void writeTo(OutputStream out) throws IOException {
+			out.write(buf, 0, count);
+		}
+	}
+
+	/**
+	 * 输入，不做预读，不会读取属于后面数据的字节；记录本次已经读到的类、JavaBean描述和JavaBean。<br>
+	 * 长度超过maxLength时认为数据错误；长的数组按实际读到的数据逐步扩展，
+	 * 错误的长度最多导致读到流结束，不会按声明的长度一次分配内存。
+	 */
+	protected static class Input {
+
+		//一次预先分配的最大元素个数
+		private static final int ALLOCATION_CHUNK = 8192;
+
+		private List<Class> classRefs = new ArrayList<Class>();
+
+		private List<BeanDescriptor> beanRefs = new ArrayList<BeanDescriptor>();
+
+		private List<Object> objectRefs = new ArrayList<Object>();
+
+		private InputStream in;
+
+		private char[] chars = new char[64];
+
+		private int maxLength;
+
+		public Input(InputStream in) {
+			this(in, DEFAULT_MAX_LENGTH);
+		}
+
+		public Input(InputStream in, int maxLength) {
+			this.in = in;
+			this.maxLength = maxLength;
+		}
+
+		//数组的初始大小
+		static int initialCapacity(int length) {
+			return Math.min(length, ALLOCATION_CHUNK);
+		}
+
+		//数组扩展后的大小，不超过声明的长度
+		static int grow(int capacity, int length) {
+			return (int)Math.min((long)capacity << 1, length);
+		}
+
+		public int readByte() throws IOException {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			return b;
+		}
+
+		public byte[] readBytes(int length) throws IOException {
+			byte[] bytes = new byte[initialCapacity(length)];
+			int offset = 0;
+			while (offset < length) {
+				if (offset == bytes.length) {
+					bytes = Arrays.copyOf(bytes, grow(offset, length));
+				}
+				int n = in.read(bytes, offset, bytes.length - offset);
+				if (n < 0) {
+					throw new EOFException();
+				}
+				offset += n;
+			}
+			return bytes;
+		}
+
+		public int readVarInt() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				int b = readByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new StreamCorruptedException("Malformed varint");
+		}
+
+		//长度，超过maxLength时认为数据错误
+		public int readLength() throws IOException {
+			int length = readVarInt();
+			if (length < 0 || length > maxLength) {
+				throw new StreamCorruptedException("Illegal length:" + length);
+			}
+			return length;
+		}
+
+		public long readVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 70; shift += 7) {
+				int b = readByte();
+				value |= (long)(b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return (value >>> 1) ^ -(value & 1);
+				}
+			}
+			throw new StreamCorruptedException("Malformed varlong");
+		}
+
+		public int readFixedInt() throws IOException {
+			return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+		}
+
+		public long readFixedLong() throws IOException {
+			return ((long)readFixedInt() << 32) | (readFixedInt() & 0xFFFFFFFFL);
+		}
+
+		public String readString() throws IOException {
+			int byteLength = readLength();
+			byte[] bytes = readBytes(byteLength);
+			if (chars.length < byteLength) {
+				chars = new char[byteLength];
+			}
+			int length = 0;
+			for (int i = 0; i < byteLength;) {
+				int b = bytes[i++] & 0xFF;
+				if (b < 0x80) {
+					chars[length++] = (char)b;
+				} else if (b < 0xE0) {
+					chars[length++] = (char)(((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+				} else {
+					chars[length++] = (char)(((b & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+				}
+			}
+			return new String(chars, 0, length);
+		}
+	}
+}
\ No newline at end of file
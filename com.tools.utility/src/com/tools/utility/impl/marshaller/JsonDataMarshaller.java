@@ -17,11 +17,11 @@ package com.tools.utility.impl.marshaller;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 
 
-import com.tools.utility.api.IOUtil;
 import com.tools.utility.api.JsonUtil;
 import com.tools.utility.spi.marshaller.AbstractDataMarshaller;
 import com.tools.utility.spi.marshaller.DataWrapper;
@@ -37,7 +37,7 @@ public class JsonDataMarshaller extends AbstractDataMarshaller {
 
 	@Override
 	protected void doMarshal(Object data, OutputStream out, Object additional) throws Exception {
-		out.write(JsonUtil.toJsonString(data).getBytes());
+		JsonUtil.writeJson(data, out, Charset.defaultCharset());
 	}
 
 	@SuppressWarnings("unchecked")
@@ -47,7 +47,7 @@ public class JsonDataMarshaller extends AbstractDataMarshaller {
 		if (additional instanceof Class) {
 			fieldTypeMap.put("/data", (Class)additional);
 		}		
-		return (T)JsonUtil.toJavaObject(new String(IOUtil.read(in)), DataWrapper.class, fieldTypeMap);
+		return (T)JsonUtil.toJavaObject(in, Charset.defaultCharset(), DataWrapper.class, fieldTypeMap);
 	}
 
 }
\ No newline at end of file
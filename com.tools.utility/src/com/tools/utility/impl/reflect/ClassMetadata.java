@@ -0,0 +1,242 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.reflect;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类的反射元数据（字段、构造方法，以及其他按类缓存的数据）<br>
+ *
+ * 注册表不使用全局锁，并发首次访问时可能重复计算，以先放入的为准。<br>
+ * 和本类同一个ClassLoader（或者其父ClassLoader）加载的类被强引用缓存。
+ * 其他ClassLoader加载的类按ClassLoader分组缓存，元数据也是强引用，ClassLoader是弱引用的键。
+ * 元数据强引用了类以及它的字段、方法，也就引用了ClassLoader，
+ * 所以插件卸载时要调用release(ClassLoader)释放这个ClassLoader的元数据，之后ClassLoader才能被回收。<br>
+ * 按类缓存的数据（getAttribute）也遵守这个规则：本地类的元数据中不要缓存其他ClassLoader加载的类。
+ *
+ * @author wuyuhou
+ *
+ */
+public class ClassMetadata {
+
+	//不会被卸载的类
+	private static final ConcurrentHashMap<Class, ClassMetadata> strongRegistry = new ConcurrentHashMap<Class, ClassMetadata>();
+
+	//可能被卸载的类，按ClassLoader分组
+	private static final ConcurrentHashMap<LoaderKey, ConcurrentHashMap<Class, ClassMetadata>> loaderRegistry = new ConcurrentHashMap<LoaderKey, ConcurrentHashMap<Class, ClassMetadata>>();
+
+	private static final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<ClassLoader>();
+
+	private static final ClassLoader localLoader = ClassMetadata.class.getClassLoader();
+
+	/**
+	 * 取得类的元数据
+	 *
+	 * @param clazz 类，不可以为空
+	 * @return 元数据
+	 */
+	public static ClassMetadata forClass(Class clazz) {
+		if (clazz == null) {
+			throw new IllegalArgumentException("clazz is null!");
+		}
+		ClassMetadata metadata = strongRegistry.get(clazz);
+		if (metadata != null) {
+			return metadata;
+		}
+		ClassLoader loader = clazz.getClassLoader();
+		ConcurrentHashMap<Class, ClassMetadata> registry = loader == null ? null : loaderRegistry.get(new LoaderKey(loader, null));
+		if (registry != null) {
+			metadata = registry.get(clazz);
+			if (metadata != null) {
+				return metadata;
+			}
+		}
+		//没有缓存时才判断是否是本地类
+		if (isLocalClass(clazz)) {
+			metadata = new ClassMetadata(clazz);
+			ClassMetadata old = strongRegistry.putIfAbsent(clazz, metadata);
+			return old == null ? metadata : old;
+		}
+		if (registry == null) {
+			expungeStaleEntries();
+			registry = new ConcurrentHashMap<Class, ClassMetadata>();
+			ConcurrentHashMap<Class, ClassMetadata> old = loaderRegistry.putIfAbsent(new LoaderKey(loader, queue), registry);
+			if (old != null) {
+				registry = old;
+			}
+		}
+		metadata = new ClassMetadata(clazz);
+		ClassMetadata old = registry.putIfAbsent(clazz, metadata);
+		return old == null ? metadata : old;
+	}
+
+	/**
+	 * 释放ClassLoader加载的所有类的元数据，插件卸载（重新部署）时调用
+	 *
+	 * @param loader ClassLoader，不可以为空
+	 */
+	public static void release(ClassLoader loader) {
+		if (loader == null) {
+			throw new IllegalArgumentException("loader is null!");
+		}
+		loaderRegistry.remove(new LoaderKey(loader, null));
+		expungeStaleEntries();
+	}
+
+	/**
+	 * 是否是不会先于本类被卸载的类（由同一个ClassLoader或者其父ClassLoader加载），
+	 * 这样的类可以被静态缓存强引用
+	 *
+	 * @param clazz 类，不可以为空
+	 * @return true：不会先于本类被卸载
+	 */
+	public static boolean isLocalClass(Class clazz) {
+		ClassLoader loader = clazz.getClassLoader();
+		if (loader == null) {
+			return true;
+		}
+		for (ClassLoader parent = localLoader; parent != null; parent = parent.getParent()) {
+			if (parent == loader) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void expungeStaleEntries() {
+		Reference<? extends ClassLoader> ref = null;
+		while ((ref = queue.poll()) != null) {
+			loaderRegistry.remove(ref);
+		}
+	}
+
+	private final Class type;
+
+	private final Map<String, Field> fieldMap;
+
+	private volatile Constructor[] constructors = null;
+
+	private final ConcurrentHashMap<Object, Object> attributes = new ConcurrentHashMap<Object, Object>();
+
+	private ClassMetadata(Class type) {
+		this.type = type;
+		Map<String, Field> fieldMap = new HashMap<String, Field>();
+		doGetAllField(type, fieldMap);
+		this.fieldMap = Collections.unmodifiableMap(fieldMap);
+	}
+
+	private static void doGetAllField(Class clazz, Map<String, Field> fieldMap) {
+		for (Field field : clazz.getDeclaredFields()) {
+			if (fieldMap.containsKey(field.getName())) {
+				continue;
+			}
+			int modifiers = field.getModifiers();
+			//不包含常量（final static）
+			if (Modifier.isFinal(modifiers) && Modifier.isStatic(modifiers)) {
+				continue;
+			}
+			fieldMap.put(field.getName(), field);
+		}
+		if (clazz.getSuperclass() != null) {
+			doGetAllField(clazz.getSuperclass(), fieldMap);
+		}
+	}
+
+	public Class getType() {
+		return type;
+	}
+
+	/**
+	 * 取得所有属性字段（不包含常量），子类字段覆盖父类同名字段
+	 *
+	 * @return 所有属性字段，不可修改
+	 */
+	public Map<String, Field> getFields() {
+		return fieldMap;
+	}
+
+	/**
+	 * 取得所有声明的构造方法
+	 *
+	 * @return 构造方法
+	 */
+	public Constructor[] getConstructors() {
+		Constructor[] array = constructors;
+		if (array == null) {
+			array = type.getDeclaredConstructors();
+			constructors = array;
+		}
+		return array.clone();
+	}
+
+	/**
+	 * 取得按类缓存的数据，和元数据同生命周期
+	 *
+	 * @param key 键
+	 * @return 值
+	 */
+	public Object getAttribute(Object key) {
+		return attributes.get(key);
+	}
+
+	/**
+	 * 缓存数据，如果已经存在，则返回已经存在的值
+	 *
+	 * @param key 键
+	 * @param value 值
+	 * @return 已经存在的值，或者value
+	 */
+	public Object putAttributeIfAbsent(Object key, Object value) {
+		Object old = attributes.putIfAbsent(key, value);
+		return old == null ? value : old;
+	}
+
+	private static class LoaderKey extends WeakReference<ClassLoader> {
+
+		private final int hash;
+
+		LoaderKey(ClassLoader loader, ReferenceQueue<ClassLoader> queue) {
+			super(loader, queue);
+			this.hash = System.identityHashCode(loader);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof LoaderKey)) {
+				return false;
+			}
+			ClassLoader loader = get();
+			return loader != null && loader == ((LoaderKey)obj).get();
+		}
+	}
+}
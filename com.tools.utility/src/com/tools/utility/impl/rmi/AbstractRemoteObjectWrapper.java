@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.rmi;
+
+import java.rmi.RemoteException;
+
+/**
+ * 按操作（参见NioRmiProtocol）发送调用的远程对象包裹，子类决定数据的传输方式
+ *
+ * @author wuyuhou
+ *
+ */
+public abstract class AbstractRemoteObjectWrapper implements IRemoteObjectWrapper {
+
+	/**
+	 * 发送操作并等待结果
+	 *
+	 * @param op 操作
+	 * @param methodId 方法ID
+	 * @param data 数据
+	 * @return 结果
+	 * @throws Throwable 远程抛出的异常，或者通讯出错
+	 */
+	protected abstract Object call(byte op, int methodId, Object data) throws Throwable;
+
+	public Object invoke(String methodName, Class[] types, Object[] args) throws RemoteException, Throwable {
+		return call(NioRmiProtocol.OP_INVOKE, NioRmiProtocol.NO_METHOD_ID, new Object[]{methodName, types, args});
+	}
+
+	public int[] resolveMethods(String[] signatures) throws RemoteException {
+		return (int[])callQuietly(NioRmiProtocol.OP_RESOLVE, signatures);
+	}
+
+	public Object invoke(int methodId, Object[] args) throws RemoteException, Throwable {
+		return call(NioRmiProtocol.OP_INVOKE_ID, methodId, args);
+	}
+
+	public Object[] invokeBatch(int[] methodIds, Object[][] args) throws RemoteException {
+		return (Object[])callQuietly(NioRmiProtocol.OP_INVOKE_BATCH, new Object[]{methodIds, args});
+	}
+
+	//不调用目标方法的操作，只会抛出RemoteException或者运行时异常
+	private Object callQuietly(byte op, Object data) throws RemoteException {
+		try {
+			return call(op, NioRmiProtocol.NO_METHOD_ID, data);
+		} catch (RemoteException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RemoteException("Operation '" + op + "' failed", t);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.rmi;
+
+import java.io.Serializable;
+
+/**
+ * 批量调用中抛出异常的调用的结果
+ * 
+ * @author wuyuhou
+ *
+ */
+public class BatchFailure implements Serializable {
+
+	private static final long serialVersionUID = 6244190263745587034L;
+
+	private Throwable error;
+
+	public BatchFailure(Throwable error) {
+		this.error = error;
+	}
+
+	public Throwable getError() {
+		return error;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.rmi;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * 使用指定数据序列化的RMI远程对象，参数、结果序列化为字节后再通过RMI传输<br>
+ *
+ * 操作和NioRmiProtocol相同，客户端通过MarshalledRemoteObjectWrapper调用。
+ *
+ * @author wuyuhou
+ *
+ */
+public interface IMarshalledRemoteObject extends Remote {
+
+	/**
+	 * 取得数据序列化类名称，客户端使用相同的数据序列化
+	 *
+	 * @return 数据序列化类名称
+	 * @throws RemoteException 通讯出错
+	 */
+	public String getMarshallerName() throws RemoteException;
+
+	/**
+	 * 执行操作
+	 *
+	 * @param op 操作
+	 * @param methodId 方法ID
+	 * @param data 序列化后的数据
+	 * @return 状态（第一个字节，NioRmiProtocol.STATUS_OK或者STATUS_EXCEPTION）和序列化后的结果
+	 * @throws RemoteException 通讯出错或者数据序列化出错
+	 */
+	public byte[] call(byte op, int methodId, byte[] data) throws RemoteException;
+}
\ No newline at end of file
@@ -26,4 +26,34 @@ import java.rmi.RemoteException;
  */
 public interface IRemoteObjectWrapper extends Remote {	
 	public Object invoke(String methodName, Class[] types, Object[] args) throws RemoteException, Throwable;
+	
+	/**
+	 * 方法ID握手，把方法签名（参见RemoteObjectWrapperImpl.getMethodSignature）解析为方法ID，之后的调用只需要传递方法ID
+	 * 
+	 * @param signatures 方法签名
+	 * @return 方法ID，不存在的方法为-1
+	 * @throws RemoteException 通讯出错
+	 */
+	public int[] resolveMethods(String[] signatures) throws RemoteException;
+	
+	/**
+	 * 按方法ID调用
+	 * 
+	 * @param methodId 方法ID，由resolveMethods取得
+	 * @param args 参数
+	 * @return 结果
+	 * @throws StaleMethodIdException 方法ID已经失效（比如远程对象被重新发布），需要重新握手
+	 * @throws Throwable 目标方法抛出的异常
+	 */
+	public Object invoke(int methodId, Object[] args) throws RemoteException, Throwable;
+	
+	/**
+	 * 批量按方法ID调用，在远程按顺序执行，一次返回所有结果；某个调用抛出异常不影响后面的调用
+	 * 
+	 * @param methodIds 方法ID
+	 * @param args 每个调用的参数
+	 * @return 每个调用的结果，抛出异常的调用为BatchFailure
+	 * @throws StaleMethodIdException 有方法ID已经失效，所有调用都没有执行
+	 */
+	public Object[] invokeBatch(int[] methodIds, Object[][] args) throws RemoteException;
 }
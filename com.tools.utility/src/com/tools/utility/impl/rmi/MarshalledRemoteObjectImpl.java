@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.rmi;
+
+import java.io.ByteArrayOutputStream;
+import java.rmi.RemoteException;
+
+import com.tools.utility.spi.marshaller.IDataMarshaller;
+
+/**
+ * 使用指定数据序列化的RMI远程对象实现<br>
+ *
+ * 响应的第一个字节是状态，和NIO远程调用相同：异常使用NioRmiProtocol.DEFAULT_MARSHALLER，
+ * 结果不能序列化时返回STATUS_FAILURE。
+ *
+ * @author wuyuhou
+ *
+ */
+public class MarshalledRemoteObjectImpl implements IMarshalledRemoteObject {
+
+	private IRemoteObjectWrapper wrapper;
+
+	private IDataMarshaller marshaller;
+
+	public MarshalledRemoteObjectImpl(Object target, IDataMarshaller marshaller) {
+		if (marshaller == null) {
+			throw new IllegalArgumentException("marshaller is null!");
+		}
+		this.wrapper = new RemoteObjectWrapperImpl(target);
+		this.marshaller = marshaller;
+	}
+
+	public String getMarshallerName() throws RemoteException {
+		return marshaller.getClass().getName();
+	}
+
+	public byte[] call(byte op, int methodId, byte[] data) throws RemoteException {
+		Object args = null;
+		try {
+			args = marshaller.unmarshal(data);
+		} catch (Exception e) {
+			throw new RemoteException("Cannot unmarshal request", e);
+		}
+		Object result = null;
+		byte status = NioRmiProtocol.STATUS_OK;
+		try {
+			result = NioRmiProtocol.dispatch(wrapper, op, methodId, args);
+		} catch (Throwable t) {
+			result = t;
+			status = NioRmiProtocol.STATUS_EXCEPTION;
+		}
+		try {
+			return encodeResponse(status, result);
+		} catch (Exception e) {
+			try {
+				return encodeResponse(NioRmiProtocol.STATUS_FAILURE, new RemoteException("Cannot marshal response", e));
+			} catch (Exception ignore) {
+				throw new RemoteException("Cannot marshal response", e);
+			}
+		}
+	}
+
+	private byte[] encodeResponse(byte status, Object result) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		out.write(status);
+		NioRmiProtocol.getResponseMarshaller(status, marshaller).marshal(result, out, null);
+		return out.toByteArray();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.rmi;
+
+import java.io.ByteArrayInputStream;
+import java.rmi.RemoteException;
+
+import com.tools.utility.spi.marshaller.DataMarshallerFactory;
+import com.tools.utility.spi.marshaller.IDataMarshaller;
+
+/**
+ * IMarshalledRemoteObject在客户端的包裹，使用远程对象的数据序列化
+ *
+ * @author wuyuhou
+ *
+ */
+public class MarshalledRemoteObjectWrapper extends AbstractRemoteObjectWrapper {
+
+	private IMarshalledRemoteObject remoteObject;
+
+	private IDataMarshaller marshaller;
+
+	public MarshalledRemoteObjectWrapper(IMarshalledRemoteObject remoteObject) throws RemoteException {
+		if (remoteObject == null) {
+			throw new IllegalArgumentException("remoteObject is null!");
+		}
+		this.remoteObject = remoteObject;
+		this.marshaller = DataMarshallerFactory.getDataMarshaller(remoteObject.getMarshallerName());
+	}
+
+	@Override
+	protected Object call(byte op, int methodId, Object data) throws Throwable {
+		byte[] request = null;
+		try {
+			request = marshaller.marshal(data);
+		} catch (Exception e) {
+			throw new RemoteException("Cannot marshal request", e);
+		}
+		byte[] response = remoteObject.call(op, methodId, request);
+		Object result = null;
+		try {
+			result = NioRmiProtocol.getResponseMarshaller(response[0], marshaller).unmarshal(new ByteArrayInputStream(response, 1, response.length - 1), null);
+		} catch (Exception e) {
+			throw new RemoteException("Cannot unmarshal response", e);
+		}
+		if (response[0] != NioRmiProtocol.STATUS_OK) {
+			throw (Throwable)result;
+		}
+		return result;
+	}
+}
\ No newline at end of file
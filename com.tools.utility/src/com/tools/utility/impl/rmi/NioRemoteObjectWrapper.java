@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.rmi;
+
+import java.rmi.RemoteException;
+
+import com.tools.utility.spi.marshaller.DataMarshallerFactory;
+import com.tools.utility.spi.marshaller.IDataMarshaller;
+
+/**
+ * NIO远程对象在客户端的包裹，调用通过共用的NioRmiConnection发送
+ *
+ * @author wuyuhou
+ *
+ */
+public class NioRemoteObjectWrapper extends AbstractRemoteObjectWrapper {
+
+	private String host = null;
+
+	private int port = 0;
+
+	private String remoteObjectName = null;
+
+	//远程对象发布时指定的数据序列化，查找远程对象时取得
+	private volatile IDataMarshaller marshaller = NioRmiProtocol.DEFAULT_MARSHALLER;
+
+	public NioRemoteObjectWrapper(String host, int port, String remoteObjectName) {
+		if (remoteObjectName == null || remoteObjectName.trim().length() == 0) {
+			throw new IllegalArgumentException("remoteObjectName is null!");
+		}
+		this.host = host;
+		this.port = port;
+		this.remoteObjectName = remoteObjectName;
+	}
+
+	/**
+	 * 远程对象是否已经发布，同时取得远程对象使用的数据序列化
+	 *
+	 * @return true：已经发布
+	 * @throws RemoteException 通讯出错
+	 */
+	public boolean isPublished() throws RemoteException {
+		String marshallerName = null;
+		try {
+			marshallerName = (String)getConnection().call(NioRmiProtocol.OP_LOOKUP, remoteObjectName,
+					NioRmiProtocol.NO_METHOD_ID, null, NioRmiProtocol.DEFAULT_MARSHALLER);
+		} catch (RemoteException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RemoteException("Lookup failed:" + remoteObjectName, t);
+		}
+		if (marshallerName == null) {
+			return false;
+		}
+		try {
+			marshaller = DataMarshallerFactory.getDataMarshaller(marshallerName);
+		} catch (IllegalArgumentException e) {
+			throw new RemoteException("Lookup failed:" + remoteObjectName, e);
+		}
+		return true;
+	}
+
+	public IDataMarshaller getMarshaller() {
+		return marshaller;
+	}
+
+	@Override
+	protected Object call(byte op, int methodId, Object data) throws Throwable {
+		return getConnection().call(op, remoteObjectName, methodId, data, marshaller);
+	}
+
+	//连接断开后自动重连
+	private NioRmiConnection getConnection() throws RemoteException {
+		return NioRmiConnection.getConnection(host, port);
+	}
+}
\ No newline at end of file
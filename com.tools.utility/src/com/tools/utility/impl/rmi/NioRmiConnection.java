@@ -0,0 +1,415 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.rmi;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.tools.logger.api.ILogger;
+import com.tools.logger.api.LoggerFactory;
+import com.tools.utility.api.DefaultThreadFactory;
+import com.tools.utility.spi.marshaller.IDataMarshaller;
+
+/**
+ * NIO远程调用的客户端连接<br>
+ *
+ * 到同一个服务端（主机、端口）的所有远程对象、所有线程共用一个连接：
+ * 请求在写锁内整帧写出，一个读线程按请求ID把响应分发给等待的调用，多个调用可以同时在途。
+ * 建立连接超过connectTimeout、等待响应超过callTimeout时抛出RemoteException，之后到达的响应被丢弃。
+ * 建立连接时只锁定同一个服务端，连不上的服务端不影响到其他服务端的连接。
+ *
+ * @author wuyuhou
+ *
+ */
+public class NioRmiConnection {
+
+	private static ILogger logger = LoggerFactory.getLogger(NioRmiConnection.class);
+
+	private static ConcurrentHashMap<String, NioRmiConnection> connectionCache = new ConcurrentHashMap<String, NioRmiConnection>();
+
+	//建立连接的锁，每个服务端一个
+	private static ConcurrentHashMap<String, Object> connectLockMap = new ConcurrentHashMap<String, Object>();
+
+	//默认的建立连接的超时时间（毫秒）
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	//建立连接的超时时间（毫秒）
+	private static volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+	//默认的等待响应的超时时间（毫秒）
+	public static final long DEFAULT_CALL_TIMEOUT = 60000;
+
+	//等待响应的超时时间（毫秒），小于等于0时不超时
+	private static volatile long callTimeout = DEFAULT_CALL_TIMEOUT;
+
+	private String host = null;
+
+	private int port = 0;
+
+	private Socket socket = null;
+
+	//写锁，保证整帧写出
+	private OutputStream out = null;
+
+	private AtomicLong requestIdGenerator = new AtomicLong();
+
+	private ConcurrentHashMap<Long, ResponseFuture> pendingMap = new ConcurrentHashMap<Long, ResponseFuture>();
+
+	private volatile boolean isClosed = false;
+
+	private NioRmiConnection(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * 取得到服务端的连接，连接断开后重新建立
+	 *
+	 * @param host 主机名
+	 * @param port 端口
+	 * @return 连接
+	 * @throws RemoteException 连接出错
+	 */
+	public static NioRmiConnection getConnection(String host, int port) throws RemoteException {
+		String hostPort = host + ":" + port;
+		NioRmiConnection connection = connectionCache.get(hostPort);
+		if (connection != null && !connection.isClosed) {
+			return connection;
+		}
+		Object lock = connectLockMap.get(hostPort);
+		if (lock == null) {
+			Object newLock = new Object();
+			lock = connectLockMap.putIfAbsent(hostPort, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		synchronized (lock) {
+			connection = connectionCache.get(hostPort);
+			if (connection == null || connection.isClosed) {
+				connection = new NioRmiConnection(host, port);
+				connection.connect();
+				connectionCache.put(hostPort, connection);
+			}
+			return connection;
+		}
+	}
+
+	private void connect() throws RemoteException {
+		try {
+			socket = new Socket();
+			socket.connect(new InetSocketAddress(host, port), connectTimeout);
+			socket.setTcpNoDelay(true);
+			out = socket.getOutputStream();
+		} catch (IOException e) {
+			throw new RemoteException("Cannot connect to " + host + ":" + port, e);
+		}
+		final DataInputStream in;
+		try {
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		} catch (IOException e) {
+			close(e);
+			throw new RemoteException("Cannot connect to " + host + ":" + port, e);
+		}
+		Thread reader = new DefaultThreadFactory("nio-rmi-client-" + host + ":" + port, true, false).newThread(new Runnable() {
+			public void run() {
+				readResponses(in);
+			}
+		});
+		reader.start();
+	}
+
+	public boolean isClosed() {
+		return isClosed;
+	}
+
+	public static int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * 设置建立连接的超时时间，对之后建立的连接有效
+	 *
+	 * @param timeout 超时时间（毫秒），大于0
+	 */
+	public static void setConnectTimeout(int timeout) {
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("timeout'" + timeout + "' is error!");
+		}
+		connectTimeout = timeout;
+	}
+
+	public static long getCallTimeout() {
+		return callTimeout;
+	}
+
+	/**
+	 * 设置等待响应的超时时间，对所有连接有效
+	 *
+	 * @param timeout 超时时间（毫秒），小于等于0时不超时
+	 */
+	public static void setCallTimeout(long timeout) {
+		callTimeout = timeout;
+	}
+
+	/**
+	 * 发送请求，不等待响应
+	 *
+	 * @param op 操作
+	 * @param objectName 远程对象名称
+	 * @param methodId 方法ID
+	 * @param data 数据
+	 * @param marshaller 数据序列化，响应使用相同的数据序列化
+	 * @return 响应
+	 * @throws RemoteException 发送出错
+	 */
+	public ResponseFuture send(byte op, String objectName, int methodId, Object data, IDataMarshaller marshaller) throws RemoteException {
+		if (isClosed) {
+			throw new RemoteException("Connection to " + host + ":" + port + " is closed!");
+		}
+		long requestId = requestIdGenerator.incrementAndGet();
+		ByteBuffer frame = null;
+		try {
+			frame = NioRmiProtocol.encodeRequest(requestId, op, objectName, methodId, data, marshaller);
+		} catch (Exception e) {
+			throw new RemoteException("Cannot marshal request", e);
+		}
+		ResponseFuture future = new ResponseFuture(requestId, marshaller);
+		pendingMap.put(requestId, future);
+		try {
+			synchronized (out) {
+				out.write(frame.array(), frame.position(), frame.remaining());
+			}
+		} catch (IOException e) {
+			pendingMap.remove(requestId);
+			close(e);
+			throw new RemoteException("Cannot send request to " + host + ":" + port, e);
+		}
+		//发送过程中连接被关闭
+		if (isClosed && pendingMap.remove(requestId) != null) {
+			throw new RemoteException("Connection to " + host + ":" + port + " is closed!");
+		}
+		return future;
+	}
+
+	/**
+	 * 发送请求，并等待响应
+	 *
+	 * @param op 操作
+	 * @param objectName 远程对象名称
+	 * @param methodId 方法ID
+	 * @param data 数据
+	 * @param marshaller 数据序列化，响应使用相同的数据序列化
+	 * @return 结果
+	 * @throws Throwable 远程抛出的异常，或者通讯出错
+	 */
+	public Object call(byte op, String objectName, int methodId, Object data, IDataMarshaller marshaller) throws Throwable {
+		return send(op, objectName, methodId, data, marshaller).getResult();
+	}
+
+	//读线程
+	private void readResponses(DataInputStream in) {
+		try {
+			while (!isClosed) {
+				int length = in.readInt();
+				NioRmiProtocol.checkFrameLength(length);
+				byte[] body = new byte[length];
+				in.readFully(body);
+				DataInputStream frame = NioRmiProtocol.openFrame(body);
+				long requestId = frame.readLong();
+				byte status = frame.readByte();
+				ResponseFuture future = pendingMap.remove(requestId);
+				if (future != null) {
+					future.complete(status, frame, null);
+				}
+			}
+		} catch (Throwable t) {
+			close(t);
+		}
+	}
+
+	private void close(Throwable cause) {
+		if (isClosed) {
+			return;
+		}
+		isClosed = true;
+		connectionCache.remove(host + ":" + port, this);
+		try {
+			socket.close();
+		} catch (Throwable ignore) {
+
+		}
+		if (cause != null) {
+			logger.debug(cause);
+		}
+		RemoteException e = new RemoteException("Connection to " + host + ":" + port + " is closed!", cause);
+		for (Long requestId : pendingMap.keySet()) {
+			ResponseFuture future = pendingMap.remove(requestId);
+			if (future != null) {
+				future.complete(NioRmiProtocol.STATUS_EXCEPTION, null, e);
+			}
+		}
+	}
+
+	/**
+	 * 关闭连接，等待中的调用抛出RemoteException
+	 */
+	public void close() {
+		close(null);
+	}
+
+	/**
+	 * 远程调用的响应，结果在调用线程中反序列化
+	 */
+	public class ResponseFuture implements Future<Object> {
+
+		private CountDownLatch latch = new CountDownLatch(1);
+
+		private long requestId = 0;
+
+		private IDataMarshaller marshaller = null;
+
+		private byte status = NioRmiProtocol.STATUS_OK;
+
+		private DataInputStream data = null;
+
+		private Throwable error = null;
+
+		private boolean isResolved = false;
+
+		private Object result = null;
+
+		ResponseFuture(long requestId, IDataMarshaller marshaller) {
+			this.requestId = requestId;
+			this.marshaller = marshaller;
+		}
+
+		void complete(byte status, DataInputStream data, Throwable error) {
+			this.status = status;
+			this.data = data;
+			this.error = error;
+			latch.countDown();
+		}
+
+		/**
+		 * 等待并取得结果，最多等待callTimeout
+		 *
+		 * @return 结果
+		 * @throws Throwable 远程抛出的异常，或者通讯出错、超时
+		 */
+		public Object getResult() throws Throwable {
+			long timeout = callTimeout;
+			try {
+				if (timeout <= 0) {
+					latch.await();
+				} else if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+					RemoteException e = expire(timeout);
+					if (e != null) {
+						throw e;
+					}
+					//读线程已经取走时，响应马上就会设置
+					latch.await();
+				}
+			} catch (InterruptedException e) {
+				pendingMap.remove(requestId, this);
+				Thread.currentThread().interrupt();
+				throw new RemoteException("Interrupted while waiting for response", e);
+			}
+			return doGetResult();
+		}
+
+		/*
+		 * 等待超时，还没有被读线程取走时放弃这个调用，以超时异常结束
+		 * 返回超时异常，已经被读线程取走时返回null
+		 */
+		private RemoteException expire(long timeout) {
+			if (!pendingMap.remove(requestId, this)) {
+				return null;
+			}
+			RemoteException e = new RemoteException("No response from " + host + ":" + port + " in " + timeout + "ms");
+			complete(NioRmiProtocol.STATUS_EXCEPTION, null, e);
+			return e;
+		}
+
+		private synchronized Object doGetResult() throws Throwable {
+			if (error != null) {
+				throw error;
+			}
+			if (!isResolved) {
+				try {
+					result = NioRmiProtocol.getResponseMarshaller(status, marshaller).unmarshal(data, null);
+				} catch (Exception e) {
+					error = new RemoteException("Cannot unmarshal response", e);
+					throw error;
+				}
+				isResolved = true;
+				data = null;
+			}
+			if (status != NioRmiProtocol.STATUS_OK) {
+				throw (Throwable)result;
+			}
+			return result;
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		public boolean isCancelled() {
+			return false;
+		}
+
+		public boolean isDone() {
+			return latch.getCount() == 0;
+		}
+
+		public Object get() throws InterruptedException, ExecutionException {
+			latch.await();
+			try {
+				return doGetResult();
+			} catch (Throwable t) {
+				throw new ExecutionException(t);
+			}
+		}
+
+		public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if (!latch.await(timeout, unit)) {
+				if (expire(unit.toMillis(timeout)) != null) {
+					throw new TimeoutException();
+				}
+				latch.await();
+			}
+			try {
+				return doGetResult();
+			} catch (Throwable t) {
+				throw new ExecutionException(t);
+			}
+		}
+	}
+}
\ No newline at end of file
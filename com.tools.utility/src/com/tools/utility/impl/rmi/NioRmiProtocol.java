@@ -0,0 +1,229 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.rmi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.tools.utility.impl.marshaller.JdkDataMarshaller;
+import com.tools.utility.spi.marshaller.IDataMarshaller;
+
+/**
+ * NIO远程调用的帧格式<br>
+ *
+ * 请求：长度(int) 请求ID(long) 操作(byte) 对象名称(UTF) 方法ID(int) 数据<br>
+ * 响应：长度(int) 请求ID(long) 状态(byte) 数据<br>
+ *
+ * 长度不包括自身的4个字节，同一个连接上的多个请求通过请求ID和响应对应，响应的顺序可以和请求不同。<br>
+ *
+ * 数据使用远程对象发布时指定的数据序列化；查找远程对象、STATUS_EXCEPTION和STATUS_FAILURE的数据（异常）总是使用DEFAULT_MARSHALLER。<br>
+ *
+ * 远程对象的数据序列化要能保持调用数据的类型（Object[]、Class[]、String[]、int[]），
+ * JdkDataMarshaller、BinaryDataMarshaller可以，JsonDataMarshaller不可以，发布时由checkMarshaller检查。
+ *
+ * @author wuyuhou
+ *
+ */
+public final class NioRmiProtocol {
+
+	//查找远程对象，数据为空，返回远程对象的数据序列化类名称，没有发布时返回null
+	public static final byte OP_LOOKUP = 1;
+
+	//按方法名称调用，数据为Object[]{方法名称, 参数类型, 参数}
+	public static final byte OP_INVOKE = 2;
+
+	//方法ID握手，数据为方法签名String[]，返回方法ID int[]
+	public static final byte OP_RESOLVE = 3;
+
+	//按方法ID调用，数据为参数Object[]
+	public static final byte OP_INVOKE_ID = 4;
+
+	//批量按方法ID调用，数据为Object[]{方法ID int[], 参数Object[][]}，返回Object[]
+	public static final byte OP_INVOKE_BATCH = 5;
+
+	//不按方法ID调用时的方法ID
+	public static final int NO_METHOD_ID = -1;
+
+	public static final byte STATUS_OK = 0;
+
+	//数据为远程抛出的异常，使用DEFAULT_MARSHALLER
+	public static final byte STATUS_EXCEPTION = 1;
+
+	//数据为请求处理失败的异常，使用DEFAULT_MARSHALLER
+	public static final byte STATUS_FAILURE = 2;
+
+	//默认的数据序列化
+	public static final IDataMarshaller DEFAULT_MARSHALLER = new JdkDataMarshaller();
+
+	//最大帧长度，防止错误的数据导致内存溢出
+	public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+	private NioRmiProtocol() {
+
+	}
+
+	/**
+	 * 编码请求帧
+	 *
+	 * @param requestId 请求ID
+	 * @param op 操作
+	 * @param objectName 远程对象名称
+	 * @param methodId 方法ID
+	 * @param data 数据
+	 * @param marshaller 数据序列化
+	 * @return 帧，包含长度
+	 * @throws Exception 序列化出错
+	 */
+	public static ByteBuffer encodeRequest(long requestId, byte op, String objectName, int methodId, Object data, IDataMarshaller marshaller) throws Exception {
+		FrameOutputStream frame = new FrameOutputStream();
+		DataOutputStream out = new DataOutputStream(frame);
+		out.writeLong(requestId);
+		out.writeByte(op);
+		out.writeUTF(objectName);
+		out.writeInt(methodId);
+		marshaller.marshal(data, out, null);
+		return frame.toFrame();
+	}
+
+	/**
+	 * 编码响应帧
+	 *
+	 * @param requestId 请求ID
+	 * @param status 状态
+	 * @param data 数据
+	 * @param marshaller 数据序列化
+	 * @return 帧，包含长度
+	 * @throws Exception 序列化出错
+	 */
+	public static ByteBuffer encodeResponse(long requestId, byte status, Object data, IDataMarshaller marshaller) throws Exception {
+		FrameOutputStream frame = new FrameOutputStream();
+		DataOutputStream out = new DataOutputStream(frame);
+		out.writeLong(requestId);
+		out.writeByte(status);
+		getResponseMarshaller(status, marshaller).marshal(data, out, null);
+		return frame.toFrame();
+	}
+
+	/**
+	 * 取得响应数据的序列化，异常总是使用DEFAULT_MARSHALLER
+	 *
+	 * @param status 状态
+	 * @param marshaller 远程对象的数据序列化
+	 * @return 数据序列化
+	 */
+	public static IDataMarshaller getResponseMarshaller(byte status, IDataMarshaller marshaller) {
+		return status == STATUS_OK ? marshaller : DEFAULT_MARSHALLER;
+	}
+
+	/**
+	 * 检查数据序列化能否用于远程调用：序列化、反序列化后调用数据的类型不变
+	 *
+	 * @param marshaller 数据序列化
+	 * @throws IllegalArgumentException 不能用于远程调用
+	 */
+	public static void checkMarshaller(IDataMarshaller marshaller) {
+		Object[] data = new Object[]{new String[]{"probe"}, new Class[]{int.class, String.class}, new Object[]{Integer.valueOf(1), "probe"}, new int[]{1}};
+		Object copy = null;
+		try {
+			copy = marshaller.unmarshal(marshaller.marshal(data));
+		} catch (Exception ignore) {
+		}
+		boolean isSupported = copy != null && copy.getClass() == Object[].class && ((Object[])copy).length == data.length;
+		for (int i = 0; isSupported && i < data.length; i++) {
+			Object elem = ((Object[])copy)[i];
+			isSupported = elem != null && elem.getClass() == data[i].getClass();
+		}
+		if (!isSupported || !Arrays.deepEquals(data, (Object[])copy)) {
+			throw new IllegalArgumentException("marshaller'" + marshaller.getClass().getName() + "' is error! It cannot keep the types of call data.");
+		}
+	}
+
+	/**
+	 * 在远程对象上执行操作（查找远程对象除外）
+	 *
+	 * @param wrapper 远程对象包裹
+	 * @param op 操作
+	 * @param methodId 方法ID
+	 * @param data 数据
+	 * @return 结果
+	 * @throws Throwable 目标方法抛出的异常
+	 */
+	public static Object dispatch(IRemoteObjectWrapper wrapper, byte op, int methodId, Object data) throws Throwable {
+		if (op == OP_INVOKE_ID) {
+			return wrapper.invoke(methodId, (Object[])data);
+		}
+		if (op == OP_INVOKE_BATCH) {
+			Object[] batch = (Object[])data;
+			return wrapper.invokeBatch((int[])batch[0], (Object[][])batch[1]);
+		}
+		if (op == OP_RESOLVE) {
+			return wrapper.resolveMethods((String[])data);
+		}
+		if (op == OP_INVOKE) {
+			Object[] invocation = (Object[])data;
+			return wrapper.invoke((String)invocation[0], (Class[])invocation[1], (Object[])invocation[2]);
+		}
+		throw new UnsupportedOperationException("Unknown operation:" + op);
+	}
+
+	/**
+	 * 读取帧内容（不包括长度）
+	 *
+	 * @param body 帧内容
+	 * @return 输入
+	 */
+	public static DataInputStream openFrame(byte[] body) {
+		return new DataInputStream(new ByteArrayInputStream(body));
+	}
+
+	/**
+	 * 检查帧长度
+	 *
+	 * @param length 帧长度
+	 * @throws IOException 长度非法
+	 */
+	public static void checkFrameLength(int length) throws IOException {
+		if (length < 9 || length > MAX_FRAME_LENGTH) {
+			throw new IOException("Illegal frame length:" + length);
+		}
+	}
+
+	/*
+	 * 预留长度的输出，直接使用内部数组生成帧，不再复制
+	 */
+	private static class FrameOutputStream extends ByteArrayOutputStream {
+
+		FrameOutputStream() {
+			super(256);
+			count = 4;
+		}
+
+		ByteBuffer toFrame() throws IOException {
+			int length = count - 4;
+			checkFrameLength(length);
+			buf[0] = (byte) (length >>> 24);
+			buf[1] = (byte) (length >>> 16);
+			buf[2] = (byte) (length >>> 8);
+			buf[3] = (byte) length;
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+}
\ No newline at end of file
@@ -17,9 +17,15 @@ package com.tools.utility.impl.rmi;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * rmi调用handler
+ * rmi调用handler<br>
+ * 
+ * 指定了远程对象接口时，第一次调用前和远程对象握手，取得接口所有方法的方法ID，之后的调用只传递方法ID和参数；
+ * 远程不支持的方法仍然按方法名称和参数类型调用
  * 
  * @author wuyuhou
  *
@@ -28,11 +34,107 @@ public class RemoteInvocationHandler implements InvocationHandler {
 	
 	private IRemoteObjectWrapper handler;
 	
+	private Class remoteObjectInterface;
+	
+	//方法 -> 方法ID，握手后不再变化，方法ID失效后重新握手
+	private volatile Map<Method, Integer> methodIdMap = null;
+	
 	public RemoteInvocationHandler(IRemoteObjectWrapper handler) {
+		this(handler, null);
+	}
+	
+	public RemoteInvocationHandler(IRemoteObjectWrapper handler, Class remoteObjectInterface) {
 		this.handler = handler;
+		this.remoteObjectInterface = remoteObjectInterface;
 	}
 
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (remoteObjectInterface != null) {
+			Integer methodId = getMethodIdMap().get(method);
+			if (methodId != null) {
+				try {
+					return handler.invoke(methodId.intValue(), args);
+				} catch (StaleMethodIdException e) {
+					//调用没有执行，重新握手后重试一次
+					methodIdMap = null;
+					methodId = getMethodIdMap().get(method);
+					if (methodId != null) {
+						return handler.invoke(methodId.intValue(), args);
+					}
+				}
+			}
+		}
 		return handler.invoke(method.getName(), method.getParameterTypes(), args);
 	}
+	
+	/**
+	 * 批量调用，一次往返执行所有调用；有方法不能按方法ID调用时逐个调用
+	 * 
+	 * @param methods 方法
+	 * @param args 每个调用的参数
+	 * @return 每个调用的结果，抛出异常的调用为BatchFailure
+	 * @throws Throwable 通讯出错
+	 */
+	public Object[] invokeBatch(Method[] methods, Object[][] args) throws Throwable {
+		if (remoteObjectInterface != null) {
+			int[] methodIds = getMethodIds(methods);
+			if (methodIds != null) {
+				try {
+					return handler.invokeBatch(methodIds, args);
+				} catch (StaleMethodIdException e) {
+					//所有调用都没有执行，重新握手后重试一次
+					methodIdMap = null;
+					methodIds = getMethodIds(methods);
+					if (methodIds != null) {
+						return handler.invokeBatch(methodIds, args);
+					}
+				}
+			}
+		}
+		Object[] results = new Object[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			try {
+				results[i] = handler.invoke(methods[i].getName(), methods[i].getParameterTypes(), args[i]);
+			} catch (RemoteException e) {
+				throw e;
+			} catch (Throwable t) {
+				results[i] = new BatchFailure(t);
+			}
+		}
+		return results;
+	}
+	
+	private int[] getMethodIds(Method[] methods) throws Throwable {
+		Map<Method, Integer> map = getMethodIdMap();
+		int[] methodIds = new int[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			Integer methodId = map.get(methods[i]);
+			if (methodId == null) {
+				return null;
+			}
+			methodIds[i] = methodId.intValue();
+		}
+		return methodIds;
+	}
+	
+	private Map<Method, Integer> getMethodIdMap() throws Throwable {
+		Map<Method, Integer> map = methodIdMap;
+		if (map == null) {
+			//并发首次调用时可能重复握手，结果相同
+			Method[] methods = remoteObjectInterface.getMethods();
+			String[] signatures = new String[methods.length];
+			for (int i = 0; i < methods.length; i++) {
+				signatures[i] = RemoteObjectWrapperImpl.getMethodSignature(methods[i]);
+			}
+			int[] methodIds = handler.resolveMethods(signatures);
+			map = new HashMap<Method, Integer>();
+			for (int i = 0; i < methods.length; i++) {
+				if (methodIds[i] >= 0) {
+					map.put(methods[i], methodIds[i]);
+				}
+			}
+			methodIdMap = map;
+		}
+		return map;
+	}
 }
@@ -15,7 +15,16 @@
  */
 package com.tools.utility.impl.rmi;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.tools.utility.api.ReflectUtil;
+import com.tools.utility.api.ReflectUtil.MethodInvoker;
 
 /**
  * remote对象包裹实现
@@ -27,10 +36,25 @@ public class RemoteObjectWrapperImpl implements IRemoteObjectWrapper {
 	
 	private static final long serialVersionUID = 3100547696763659024L;
 	
+	//方法ID的低16位是调用器的下标
+	private static final int INDEX_MASK = 0xFFFF;
+	
+	//方法ID的高15位，每创建一个包裹加一；初始值随机，服务端重启后也不容易和重启前的相同
+	private static final AtomicInteger generationCounter = new AtomicInteger(new Random().nextInt());
+	
 	private Object target;
 	
 	private Class targetClass;
 	
+	//方法ID的高位，用于识别失效的方法ID；同一个JVM中连续发布的32768个包裹都不相同
+	private final int generation = (generationCounter.incrementAndGet() & 0x7FFF) << 16;
+	
+	//方法签名 -> 方法ID，握手时填充
+	private Map<String, Integer> methodIdMap = new HashMap<String, Integer>();
+	
+	//方法ID -> 调用器，只增不减，写时复制
+	private volatile MethodInvoker[] invokers = new MethodInvoker[0];
+	
 	public RemoteObjectWrapperImpl(Object target) {
 		if (target == null) {
 			throw new IllegalArgumentException("target is null!");
@@ -42,4 +66,99 @@ public class RemoteObjectWrapperImpl implements IRemoteObjectWrapper {
 	public Object invoke(String methodName, Class[] types, Object[] args) throws RemoteException, Throwable {
 		return targetClass.getMethod(methodName, types).invoke(target, args);
 	}
+	
+	public synchronized int[] resolveMethods(String[] signatures) throws RemoteException {
+		if (signatures == null) {
+			throw new IllegalArgumentException("signatures is null!");
+		}
+		int[] methodIds = new int[signatures.length];
+		Map<String, Method> methodMap = null;
+		for (int i = 0; i < signatures.length; i++) {
+			Integer methodId = methodIdMap.get(signatures[i]);
+			if (methodId == null) {
+				if (methodMap == null) {
+					methodMap = new HashMap<String, Method>();
+					for (Method method : targetClass.getMethods()) {
+						methodMap.put(getMethodSignature(method), method);
+					}
+				}
+				Method method = methodMap.get(signatures[i]);
+				if (method == null || invokers.length > INDEX_MASK) {
+					methodIds[i] = -1;
+					continue;
+				}
+				MethodInvoker[] newInvokers = new MethodInvoker[invokers.length + 1];
+				System.arraycopy(invokers, 0, newInvokers, 0, invokers.length);
+				try {
+					newInvokers[invokers.length] = ReflectUtil.invoker(targetClass, method.getName(), method.getParameterTypes(), true);
+				} catch (NoSuchMethodException e) {
+					methodIds[i] = -1;
+					continue;
+				}
+				methodId = generation | invokers.length;
+				invokers = newInvokers;
+				methodIdMap.put(signatures[i], methodId);
+			}
+			methodIds[i] = methodId;
+		}
+		return methodIds;
+	}
+	
+	public Object invoke(int methodId, Object[] args) throws RemoteException, Throwable {
+		MethodInvoker[] invokers = this.invokers;
+		try {
+			return getInvoker(invokers, methodId).invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+	
+	public Object[] invokeBatch(int[] methodIds, Object[][] args) throws RemoteException {
+		if (methodIds == null || args == null || methodIds.length != args.length) {
+			throw new IllegalArgumentException("methodIds or args is error!");
+		}
+		MethodInvoker[] invokers = this.invokers;
+		//先检查所有方法ID，保证失效时一个调用都没有执行
+		MethodInvoker[] batchInvokers = new MethodInvoker[methodIds.length];
+		for (int i = 0; i < methodIds.length; i++) {
+			batchInvokers[i] = getInvoker(invokers, methodIds[i]);
+		}
+		Object[] results = new Object[methodIds.length];
+		for (int i = 0; i < methodIds.length; i++) {
+			try {
+				results[i] = batchInvokers[i].invoke(target, args[i]);
+			} catch (InvocationTargetException e) {
+				results[i] = new BatchFailure(e.getTargetException());
+			} catch (Throwable t) {
+				results[i] = new BatchFailure(t);
+			}
+		}
+		return results;
+	}
+	
+	private MethodInvoker getInvoker(MethodInvoker[] invokers, int methodId) throws StaleMethodIdException {
+		int index = methodId & INDEX_MASK;
+		if ((methodId & ~INDEX_MASK) != generation || index >= invokers.length) {
+			throw new StaleMethodIdException(methodId);
+		}
+		return invokers[index];
+	}
+	
+	/**
+	 * 方法签名，比如：add(int,java.lang.String)
+	 * 
+	 * @param method 方法
+	 * @return 方法签名
+	 */
+	public static String getMethodSignature(Method method) {
+		StringBuilder buf = new StringBuilder(method.getName()).append('(');
+		Class[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			buf.append(parameterTypes[i].getName());
+		}
+		return buf.append(')').toString();
+	}
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.impl.rmi;
+
+import java.rmi.RemoteException;
+
+/**
+ * 方法ID已经失效，调用没有执行，重新握手后可以安全重试
+ * 
+ * @author wuyuhou
+ *
+ */
+public class StaleMethodIdException extends RemoteException {
+
+	private static final long serialVersionUID = -3914186627781326205L;
+
+	public StaleMethodIdException(int methodId) {
+		super("Stale method id:" + methodId);
+	}
+}
\ No newline at end of file
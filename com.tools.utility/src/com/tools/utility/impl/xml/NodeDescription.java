@@ -28,8 +28,8 @@ import org.w3c.dom.Element;
  */
 public class NodeDescription{
     class Pair{
-        public String first;
-        public String second;
+        public final String first;
+        public final String second;
 
         public Pair(String strFirst,String strSecond){
             first = strFirst;
@@ -42,15 +42,18 @@ public class NodeDescription{
     public static final short NODE_ANY		= 2;
 
     //public Attr m_attr 			= null;
-    private String m_strNodeName= "";
-    private ArrayList<Pair> m_alAttrs = new ArrayList<Pair>();
-    private short m_type 		= 0;
+    //创建后不再修改，解析结果在多个线程中共享
+    private final String m_strNodeName;
+    private final ArrayList<Pair> m_alAttrs = new ArrayList<Pair>();
+    private final short m_type;
 
     public NodeDescription(String xPathItem){
         //in there,only three styles 'step' are supported,one is '*',
         //one is '@attrname' and last one is 'nodename[@attrname=attrval][...]...'
-        if( xPathItem.indexOf("*")==0 ) m_type = NODE_ANY;
-        else if( xPathItem.indexOf("@")==0 ){
+        if( xPathItem.indexOf("*")==0 ){
+            m_strNodeName = "";
+            m_type = NODE_ANY;
+        } else if( xPathItem.indexOf("@")==0 ){
             m_strNodeName = "";
             m_type = NODE_ATTR;
             StringTokenizer stk = new StringTokenizer(xPathItem,"@");
@@ -15,8 +15,6 @@
  */
 package com.tools.utility.impl.xml;
 
-import java.util.ListIterator;
-
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -123,7 +121,7 @@ public class XPathAPI {
 			return searchNode;
 		}
 
-		//XPathParser parser = new XPathParser(xPath);//XPathPool.get(xPath);
+		//解析结果是缓存的，重复的查询不再解析
 		XPathParser parser = XPathParser.create(xPath);
 
 		EOSNodeList nlResult = new EOSNodeList();
@@ -156,7 +154,7 @@ public class XPathAPI {
 			return nlResult;
 		}
 
-		//XPathParser parser = new XPathParser(xPath);//XPathPool.get(xPath);
+		//解析结果是缓存的，重复的查询不再解析
 		XPathParser parser = XPathParser.create(xPath);
 
 		EOSNodeList nlResult = new EOSNodeList();
@@ -170,26 +168,26 @@ public class XPathAPI {
 			Node curNode = nl.item(i);
 			if (curNode == null || curNode.getNodeType() != Node.ELEMENT_NODE)
 				continue;
-			_findNodeList((Element) curNode, parser.listIterator(), result, single);
+			_findNodeList((Element) curNode, parser, 0, result, single);
 		}
 	}
 
-	private final static void _findNodeList(Element currNode, ListIterator<?> itXPath, EOSNodeList result, boolean single) {
+	//step是当前节点对应的步骤下标，按下标递归，解析结果不保存查询状态，可以多个线程共享
+	private final static void _findNodeList(Element currNode, XPathParser parser, int step, EOSNodeList result, boolean single) {
 
 		if (single && result.getLength() > 0)
 			return;
-		if (!itXPath.hasNext())
+		if (step >= parser.size())
 			return;
 
 		//if first step is attribute(style like '@attribute') and attribute
 		//exist in current node,put corresponding attribute into result.
 		//(follow codes were special handle for first step.)
-		NodeDescription curDesc = (NodeDescription) itXPath.next();
+		NodeDescription curDesc = parser.getNode(step);
 		if (curDesc.getType() == NodeDescription.NODE_ATTR) {
 			Node node = currNode.getParentNode();
 			if (node == null || node.getNodeType() == Node.DOCUMENT_NODE) {
 				Element parent = currNode;
-				//if( curDesc.equals(parent) ) result.append(curDesc.m_attr);
 				if (curDesc.equals(parent))
 					result.append(curDesc.getAttribute(parent));
 			}
@@ -199,35 +197,28 @@ public class XPathAPI {
 		if (!curDesc.equals(currNode))
 			return;
 
+		int nextStep = step + 1;
 		//test next step type,find corresponding attribute
 		//in current node if attribute.
-		if (itXPath.hasNext()) {
-			NodeDescription nextDesc = (NodeDescription) itXPath.next();
-			if (itXPath.hasPrevious())
-				itXPath.previous();
+		if (nextStep < parser.size()) {
+			NodeDescription nextDesc = parser.getNode(nextStep);
 			if (nextDesc.getType() == NodeDescription.NODE_ATTR) {
-				//if( nextDesc.equals(currNode) )	result.append(nextDesc.m_attr);
 				if (nextDesc.equals(currNode))
 					result.append(nextDesc.getAttribute(currNode));
 				return;
 			}
-		}
 
-		//use same agorithem search in current node's childrens
-		if (itXPath.hasNext()) {
+			//use same agorithem search in current node's childrens
 			NodeList nlChilds = currNode.getChildNodes();
 			int nCount = nlChilds.getLength();
 
 			for (int i = 0; i < nCount; i++) {
 				Node currChild = nlChilds.item(i);
-				//if( !checkNode(currChild) ){
-				if (currChild == null || (currChild.getNodeType() != Node.DOCUMENT_NODE && currChild.getNodeType() != Node.ELEMENT_NODE)) {
+				if (currChild == null || currChild.getNodeType() != Node.ELEMENT_NODE) {
 					continue;
 				}
 
-				_findNodeList((Element) currChild, itXPath, result, single);
-				if (itXPath.hasPrevious())
-					itXPath.previous();
+				_findNodeList((Element) currChild, parser, nextStep, result, single);
 			}
 			return;
 		}
@@ -15,38 +15,50 @@
  */
 package com.tools.utility.impl.xml;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * xpath解析
+ * xpath解析<br>
  *
+ * 解析后的结果不可修改，按xpath缓存在pool中，多个线程共享；查询时按下标遍历，不再共用游标。
  *
  * @author wuyuhou
  *
  */
 public class XPathParser {
 
-	private static HashMap pool = null;
+	//缓存的xpath个数上限，超过后清空重建
+	private static final int MAX_POOL_SIZE = 1024;
+
+	private static ConcurrentHashMap<String, XPathParser> pool = new ConcurrentHashMap<String, XPathParser>();
+
+	private static final XPathParser EMPTY = new XPathParser(null);
 
 	public static final short PATH_ABSOLUTE = 0;
 	public static final short PATH_RELATIVE = 1;
 
-	private Object[] nodes = new Object[8];
-	private int cursor;
-	private int max = 8;
+	private final NodeDescription[] nodes;
 
 	//xPath:  /node/nodename[@attrname=attrval][...]...
 	public XPathParser(String xPath) {
+		nodes = parse(xPath);
+	}
+
+	private static NodeDescription[] parse(String xPath) {
 		if (xPath == null) {
-			return;
+			return new NodeDescription[0];
 		}
 		xPath = xPath.trim();
 
 		if (xPath.length() == 0) {
-			return;
+			return new NodeDescription[0];
 		}
 
+		List<NodeDescription> nodeList = new ArrayList<NodeDescription>();
+
 		//是否在\之后
 		boolean afterBacklash = false;
 		//是否在双引号内
@@ -99,11 +111,7 @@ public class XPathParser {
 					if (buf.length() == 0) {
 						continue;
 					}
-					nodes[cursor] = new NodeDescription(buf.toString());
-					cursor++;
-					if (cursor >= max) {
-						expand();
-					}
+					nodeList.add(new NodeDescription(buf.toString()));
 
 					buf = new StringBuffer();
 					continue;
@@ -113,36 +121,70 @@ public class XPathParser {
 		}
 
 		if (buf.length() > 0) {
-			nodes[cursor] = new NodeDescription(buf.toString());
-			cursor++;
-			if (cursor >= max) {
-				expand();
-			}
+			nodeList.add(new NodeDescription(buf.toString()));
 		}
+		return nodeList.toArray(new NodeDescription[nodeList.size()]);
 	}
 
-	public ListIterator listIterator() {
-		return new XPathListIterator(nodes, cursor);
+	/**
+	 * 步骤个数
+	 *
+	 * @return 个数
+	 */
+	public int size() {
+		return nodes.length;
 	}
 
-	private void expand() {
-		Object[] oldObjs = nodes;
-		max += 8;
-		nodes = new Object[max];
-		System.arraycopy(oldObjs, 0, nodes, 0, cursor);
+	/**
+	 * 取得步骤
+	 *
+	 * @param index 下标
+	 * @return 步骤
+	 */
+	public NodeDescription getNode(int index) {
+		return nodes[index];
+	}
+
+	public ListIterator listIterator() {
+		return new XPathListIterator(nodes, nodes.length);
 	}
 
 	public static int newXPathSize = 0;
 	public static final int flushSize = 10;
 
+	/**
+	 * 取得解析后的xpath，优先从缓存中取
+	 *
+	 * @param xPath xpath
+	 * @return 解析结果
+	 */
 	public static XPathParser create(String xPath) {
-		return new XPathParser(xPath);
+		if (xPath == null) {
+			return EMPTY;
+		}
+		XPathParser parser = pool.get(xPath);
+		if (parser == null) {
+			parser = new XPathParser(xPath);
+			//xpath一般是固定的几个，超过上限说明是拼接出来的，清空避免无限增长
+			if (pool.size() >= MAX_POOL_SIZE) {
+				pool.clear();
+			}
+			pool.put(xPath, parser);
+		}
+		return parser;
 	}
 
 	public static Object[] getXPaths() {
 		return pool.keySet().toArray();
 	}
 
+	/**
+	 * 清空缓存
+	 */
+	public static void clearPool() {
+		pool.clear();
+	}
+
 }
 
 class XPathListIterator implements ListIterator {
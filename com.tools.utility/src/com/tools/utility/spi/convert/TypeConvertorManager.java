@@ -15,11 +15,14 @@
  */
 package com.tools.utility.spi.convert;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.tools.utility.api.ServiceExtensionLoader;
 import com.tools.utility.api.ServiceExtensionLoader.Extension;
+import com.tools.utility.impl.reflect.ClassMetadata;
 
 
 
@@ -52,33 +55,158 @@ public class TypeConvertorManager {
 		return INSTANCE;
 	}
 	
-	private ArrayList<ITypeConvertor> convertorList = new ArrayList<ITypeConvertor>();
+	//转换器列表，写时复制，遍历时不需要再拷贝
+	private CopyOnWriteArrayList<ITypeConvertor> convertorList = new CopyOnWriteArrayList<ITypeConvertor>();
 	
-	public void register(ITypeConvertor convertor) {
+	//没有找到转换器时的占位符
+	private static final ITypeConvertor NONE_CONVERTOR = new ITypeConvertor() {
+		public boolean canConvert(Object value, Class toClass) {
+			return false;
+		}
+
+		public Object convert(Object value, Class toClass, Object defaultValue, Object overrideValue) {
+			throw new UnsupportedOperationException();
+		}
+	};
+	
+	/*
+	 * 分派表：(源类型, 目标类型) -> 转换器
+	 * 注册或者注销转换器时，整体替换为新表，正在进行中的查找不会把旧结果写入新表
+	 * 注意：缓存的前提是转换器的canConvert只依赖于值的类型，而不是值的内容
+	 * 只缓存不会被卸载的类，避免插件的ClassLoader被分派表引用而无法回收；
+	 * 其他ClassLoader加载的类的分派结果缓存在这个类的元数据中（DISPATCH_KEY），随元数据释放
+	 */
+	private volatile ConcurrentHashMap<ConvertKey, ITypeConvertor> dispatchCache = new ConcurrentHashMap<ConvertKey, ITypeConvertor>();
+	
+	//元数据中缓存分派结果的键，值为AtomicReference<ForeignDispatch>
+	private static final Object DISPATCH_KEY = new Object();
+	
+	//转换器列表的版本号，每次注册或者注销时递增
+	private volatile int version = 0;
+	
+	public synchronized void register(ITypeConvertor convertor) {
 		if (convertor == null) {
 			throw new IllegalArgumentException("convertor is null!");
 		}
 		convertorList.add(convertor);
+		dispatchCache = new ConcurrentHashMap<ConvertKey, ITypeConvertor>();
+		version++;
 	}
 	
-	public void unregister(ITypeConvertor convertor) {
+	public synchronized void unregister(ITypeConvertor convertor) {
 		if (convertor == null) {
 			throw new IllegalArgumentException("convertor is null!");
 		}
 		convertorList.remove(convertor);
+		dispatchCache = new ConcurrentHashMap<ConvertKey, ITypeConvertor>();
+		version++;
+	}
+	
+	/**
+	 * 取得转换器列表的版本号，调用者缓存了转换器时，可以据此判断缓存是否失效
+	 * 
+	 * @return 版本号
+	 */
+	public int getVersion() {
+		return version;
 	}
 	
 	public ITypeConvertor[] getAllConvertors() {
 		return convertorList.toArray(new ITypeConvertor[0]);
 	}
 	
+	/**
+	 * 取得可以把value转换为toClass的转换器
+	 * 
+	 * @param value 值
+	 * @param toClass 指定类型
+	 * @return 转换器，如果没有则为空
+	 */
+	public ITypeConvertor getConvertor(Object value, Class toClass) {
+		Class fromClass = value == null ? null : value.getClass();
+		ConcurrentHashMap<ConvertKey, ITypeConvertor> cache = dispatchCache;
+		ConvertKey key = new ConvertKey(fromClass, toClass);
+		ITypeConvertor convertor = cache.get(key);
+		if (convertor == null && fromClass != null) {
+			convertor = getCachedConvertor(fromClass, cache, key);
+		}
+		if (convertor == null && toClass != null) {
+			convertor = getCachedConvertor(toClass, cache, key);
+		}
+		if (convertor == null) {
+			convertor = findConvertor(value, toClass);
+			//只在放入时判断是否是本地类
+			ConcurrentHashMap<ConvertKey, ITypeConvertor> targetCache = getTargetCache(fromClass, toClass, cache);
+			if (targetCache != null) {
+				targetCache.put(key, convertor == null ? NONE_CONVERTOR : convertor);
+			}
+		} else if (convertor == NONE_CONVERTOR) {
+			return null;
+		}
+		return convertor;
+	}
+	
+	//从类的元数据中取得分派结果
 	@SuppressWarnings("unchecked")
-	public <T> T convert(Object value, Class toClass, T defaultValue, T overrideValue) {
-		for (ITypeConvertor convertor : getAllConvertors()) {
+	private static ITypeConvertor getCachedConvertor(Class clazz, ConcurrentHashMap<ConvertKey, ITypeConvertor> generation, ConvertKey key) {
+		AtomicReference<ForeignDispatch> ref = (AtomicReference<ForeignDispatch>)ClassMetadata.forClass(clazz).getAttribute(DISPATCH_KEY);
+		ForeignDispatch dispatch = ref == null ? null : ref.get();
+		return dispatch == null || dispatch.generation != generation ? null : dispatch.map.get(key);
+	}
+	
+	/*
+	 * 分派结果放在哪里：两边都是本地类时放入分派表，否则放入其他ClassLoader加载的一方的元数据；
+	 * 两边是不同插件的类时不缓存，避免一个插件的元数据引用另一个插件的类
+	 */
+	private static ConcurrentHashMap<ConvertKey, ITypeConvertor> getTargetCache(Class fromClass, Class toClass, ConcurrentHashMap<ConvertKey, ITypeConvertor> cache) {
+		boolean isFromLocal = fromClass == null || ClassMetadata.isLocalClass(fromClass);
+		boolean isToLocal = toClass == null || ClassMetadata.isLocalClass(toClass);
+		if (isFromLocal && isToLocal) {
+			return cache;
+		}
+		if (!isFromLocal && (isToLocal || toClass.getClassLoader() == fromClass.getClassLoader())) {
+			return getForeignCache(fromClass, cache);
+		}
+		if (isFromLocal) {
+			return getForeignCache(toClass, cache);
+		}
+		return null;
+	}
+	
+	//取得类的元数据中和分派表同一代的分派结果，分派表被替换后重新创建
+	@SuppressWarnings("unchecked")
+	private static ConcurrentHashMap<ConvertKey, ITypeConvertor> getForeignCache(Class clazz, ConcurrentHashMap<ConvertKey, ITypeConvertor> generation) {
+		ClassMetadata metadata = ClassMetadata.forClass(clazz);
+		AtomicReference<ForeignDispatch> ref = (AtomicReference<ForeignDispatch>)metadata.getAttribute(DISPATCH_KEY);
+		if (ref == null) {
+			ref = (AtomicReference<ForeignDispatch>)metadata.putAttributeIfAbsent(DISPATCH_KEY, new AtomicReference<ForeignDispatch>());
+		}
+		ForeignDispatch dispatch = ref.get();
+		while (dispatch == null || dispatch.generation != generation) {
+			ForeignDispatch newDispatch = new ForeignDispatch(generation);
+			if (ref.compareAndSet(dispatch, newDispatch)) {
+				return newDispatch.map;
+			}
+			dispatch = ref.get();
+		}
+		return dispatch.map;
+	}
+	
+	private ITypeConvertor findConvertor(Object value, Class toClass) {
+		for (ITypeConvertor convertor : convertorList) {
 			if (convertor != null && convertor.canConvert(value, toClass)) {
-				return (T)convertor.convert(value, toClass, defaultValue, overrideValue);
+				return convertor;
 			}
 		}
+		return null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public <T> T convert(Object value, Class toClass, T defaultValue, T overrideValue) {
+		ITypeConvertor convertor = getConvertor(value, toClass);
+		if (convertor != null) {
+			return (T)convertor.convert(value, toClass, defaultValue, overrideValue);
+		}
 		if (value == null && toClass == null) {
 			if (overrideValue != null) {
 				return overrideValue;
@@ -93,4 +221,50 @@ public class TypeConvertorManager {
 		}
 		throw new UnsupportedOperationException("The type of conversion is not supported:" + value + "," + toClass);
 	}
+	
+	/*
+	 * 缓存在其他ClassLoader加载的类的元数据中的分派结果，只对创建时的分派表有效
+	 */
+	private static class ForeignDispatch {
+		
+		private final ConcurrentHashMap<ConvertKey, ITypeConvertor> generation;
+		
+		private final ConcurrentHashMap<ConvertKey, ITypeConvertor> map = new ConcurrentHashMap<ConvertKey, ITypeConvertor>();
+		
+		ForeignDispatch(ConcurrentHashMap<ConvertKey, ITypeConvertor> generation) {
+			this.generation = generation;
+		}
+	}
+	
+	private static class ConvertKey {
+		
+		private final Class fromClass;
+		
+		private final Class toClass;
+		
+		private final int hash;
+		
+		ConvertKey(Class fromClass, Class toClass) {
+			this.fromClass = fromClass;
+			this.toClass = toClass;
+			this.hash = 31 * (fromClass == null ? 0 : fromClass.hashCode()) + (toClass == null ? 0 : toClass.hashCode());
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ConvertKey)) {
+				return false;
+			}
+			ConvertKey other = (ConvertKey)obj;
+			return fromClass == other.fromClass && toClass == other.toClass;
+		}
+	}
 }
\ No newline at end of file
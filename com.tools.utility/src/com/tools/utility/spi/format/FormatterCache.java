@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.spi.format;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按模式串缓存的格式化器<br>
+ *
+ * DateFormatter、NumberFormatter内部的SimpleDateFormat、DecimalFormat不是线程安全的，
+ * 所以每个线程缓存一份，线程之间没有竞争；每个线程最多缓存MAX_SIZE个模式串，超过时淘汰最久未使用的。<br>
+ * 取得的格式化器只能在当前线程中使用，并且不能修改模式串（setPattern抛出UnsupportedOperationException）。
+ *
+ * @author wuyuhou
+ *
+ */
+public class FormatterCache {
+
+	//每个线程、每种格式化器最多缓存的模式串个数
+	public static final int MAX_SIZE = 64;
+
+	private static final ThreadLocal<Map<String, DateFormatter>> dateFormatters = new ThreadLocal<Map<String, DateFormatter>>() {
+		@Override
+		protected Map<String, DateFormatter> initialValue() {
+			return new LRUMap<DateFormatter>();
+		}
+	};
+
+	private static final ThreadLocal<Map<String, NumberFormatter>> numberFormatters = new ThreadLocal<Map<String, NumberFormatter>>() {
+		@Override
+		protected Map<String, NumberFormatter> initialValue() {
+			return new LRUMap<NumberFormatter>();
+		}
+	};
+
+	private FormatterCache() {
+
+	}
+
+	/**
+	 * 取得当前线程的日期格式化器
+	 *
+	 * @param pattern 模式串，不可以为空
+	 * @return 日期格式化器
+	 */
+	public static DateFormatter getDateFormatter(String pattern) {
+		Map<String, DateFormatter> map = dateFormatters.get();
+		DateFormatter formatter = map.get(pattern);
+		if (formatter == null) {
+			formatter = new FixedDateFormatter(pattern);
+			map.put(pattern, formatter);
+		}
+		return formatter;
+	}
+
+	/**
+	 * 取得当前线程的数字格式化器
+	 *
+	 * @param pattern 模式串，不可以为空
+	 * @return 数字格式化器
+	 */
+	public static NumberFormatter getNumberFormatter(String pattern) {
+		Map<String, NumberFormatter> map = numberFormatters.get();
+		NumberFormatter formatter = map.get(pattern);
+		if (formatter == null) {
+			formatter = new FixedNumberFormatter(pattern);
+			map.put(pattern, formatter);
+		}
+		return formatter;
+	}
+
+	//模式串不能修改的日期格式化器
+	private static class FixedDateFormatter extends DateFormatter {
+
+		FixedDateFormatter(String pattern) {
+			super.setPattern(pattern);
+		}
+
+		@Override
+		public DateFormatter setPattern(String pattern) {
+			throw new UnsupportedOperationException("Cached formatter cannot change pattern!");
+		}
+	}
+
+	//模式串不能修改的数字格式化器
+	private static class FixedNumberFormatter extends NumberFormatter {
+
+		FixedNumberFormatter(String pattern) {
+			super.setPattern(pattern);
+		}
+
+		@Override
+		public NumberFormatter setPattern(String pattern) {
+			throw new UnsupportedOperationException("Cached formatter cannot change pattern!");
+		}
+	}
+
+	private static class LRUMap<V> extends LinkedHashMap<String, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		LRUMap() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+			return size() > MAX_SIZE;
+		}
+	}
+}
\ No newline at end of file
@@ -74,10 +74,19 @@ public class JSONArray {
 	/**
 	 * Construct an empty JSONArray.
 	 */
-	private JSONArray() {
+	JSONArray() {
 		this.myArrayList = new ArrayList();
 	}
 
+	/**
+	 * Append an object value.
+	 * @param value An object value, may be null.
+	 */
+	@SuppressWarnings("unchecked")
+	void add(Object value) {
+		this.myArrayList.add(value);
+	}
+
 	/**
 	 * Construct a JSONArray from a source JSON text.
 	 * @param source     A string that begins with
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.spi.json;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.tools.utility.api.ReflectUtil;
+import com.tools.utility.api.ReflectUtil.FieldAccessor;
+import com.tools.utility.impl.reflect.ClassMetadata;
+
+/**
+ * JavaBean的Json编解码计划<br>
+ *
+ * 每个类只计算一次：属性名称预先编码为Json（包括引号和冒号），属性通过缓存的访问器读写，
+ * 集合、Map、数组的元素类型预先从泛型签名中解析出来
+ *
+ * @author wuyuhou
+ *
+ */
+public class JSONBeanCodec {
+
+	//ClassMetadata中缓存编解码计划的键
+	private static final Object CODEC_KEY = new Object();
+
+	private final Class type;
+
+	private final Property[] properties;
+
+	private final Map<String, Property> propertyMap;
+
+	private JSONBeanCodec(Class type, Property[] properties) {
+		this.type = type;
+		this.properties = properties;
+		Map<String, Property> map = new HashMap<String, Property>();
+		for (Property property : properties) {
+			map.put(property.name, property);
+		}
+		this.propertyMap = Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * 取得类的编解码计划
+	 *
+	 * @param clazz JavaBean类型，不可以为空
+	 * @return 编解码计划
+	 */
+	public static JSONBeanCodec forClass(Class clazz) {
+		ClassMetadata metadata = ClassMetadata.forClass(clazz);
+		JSONBeanCodec codec = (JSONBeanCodec)metadata.getAttribute(CODEC_KEY);
+		if (codec == null) {
+			Map<String, Field> fieldMap = metadata.getFields();
+			Property[] properties = new Property[fieldMap.size()];
+			int i = 0;
+			for (Entry<String, Field> entry : fieldMap.entrySet()) {
+				properties[i++] = new Property(entry.getKey(), entry.getValue());
+			}
+			codec = (JSONBeanCodec)metadata.putAttributeIfAbsent(CODEC_KEY, new JSONBeanCodec(clazz, properties));
+		}
+		return codec;
+	}
+
+	public Class getType() {
+		return type;
+	}
+
+	/**
+	 * 取得所有属性，顺序和ReflectUtil.getAllField一致
+	 *
+	 * @return 所有属性，不可以修改
+	 */
+	public Property[] getProperties() {
+		return properties;
+	}
+
+	/**
+	 * 按名称取得属性
+	 *
+	 * @param name 属性名称
+	 * @return 属性，不存在时返回null
+	 */
+	public Property getProperty(String name) {
+		return propertyMap.get(name);
+	}
+
+	/**
+	 * 解析集合、Map（值）、数组的元素类型
+	 *
+	 * @param clazz 类型
+	 * @param genericType 泛型类型，可以为空
+	 * @return 元素类型，不能确定时返回null
+	 */
+	public static Class getElementType(Class clazz, Type genericType) {
+		if (clazz.isArray()) {
+			return clazz.getComponentType();
+		}
+		if (!(genericType instanceof ParameterizedType)) {
+			return null;
+		}
+		Type[] args = ((ParameterizedType)genericType).getActualTypeArguments();
+		Type elementType = null;
+		if (Collection.class.isAssignableFrom(clazz) && args.length == 1) {
+			elementType = args[0];
+		} else if (Map.class.isAssignableFrom(clazz) && args.length == 2) {
+			elementType = args[1];
+		}
+		if (elementType instanceof WildcardType) {
+			Type[] upperBounds = ((WildcardType)elementType).getUpperBounds();
+			elementType = upperBounds.length == 1 ? upperBounds[0] : null;
+		}
+		if (elementType instanceof ParameterizedType) {
+			elementType = ((ParameterizedType)elementType).getRawType();
+		}
+		if (elementType instanceof Class && elementType != Object.class) {
+			return (Class)elementType;
+		}
+		return null;
+	}
+
+	/**
+	 * JavaBean属性
+	 */
+	public static class Property {
+
+		private final String name;
+
+		//预先编码的名称，比如："name":
+		private final String encodedName;
+
+		private final FieldAccessor accessor;
+
+		private final Class type;
+
+		private final Class elementType;
+
+		private Property(String name, Field field) {
+			this.name = name;
+			StringBuilder buf = new StringBuilder(name.length() + 3);
+			buf.append('"');
+			try {
+				JSONWriter.writeEscaped(buf, name);
+			} catch (IOException e) {
+				//StringBuilder不会抛出IOException
+				throw new JSONRuntimeException(e);
+			}
+			buf.append('"').append(':');
+			this.encodedName = buf.toString();
+			this.accessor = ReflectUtil.accessor(field);
+			this.type = field.getType();
+			this.elementType = JSONBeanCodec.getElementType(type, field.getGenericType());
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getEncodedName() {
+			return encodedName;
+		}
+
+		public Class getType() {
+			return type;
+		}
+
+		/**
+		 * 集合、Map（值）、数组的元素类型
+		 *
+		 * @return 元素类型，不能确定时返回null
+		 */
+		public Class getElementType() {
+			return elementType;
+		}
+
+		public Object get(Object bean) throws IllegalAccessException {
+			return accessor.get(bean);
+		}
+
+		/**
+		 * 设置属性值，值会先转换为属性类型
+		 *
+		 * @param bean JavaBean
+		 * @param value 值
+		 * @throws IllegalAccessException 设置出错
+		 */
+		public void set(Object bean, Object value) throws IllegalAccessException {
+			accessor.set(bean, ReflectUtil.cast(value, type));
+		}
+	}
+}
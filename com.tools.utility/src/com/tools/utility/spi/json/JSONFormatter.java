@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.spi.json;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Json格式化（缩进、键左对齐）<br>
+ *
+ * 从Reader中流式读取，一次遍历直接写入Writer，时间和输入长度成线性关系，内存占用和输入长度无关。<br>
+ * 键对齐的宽度需要预先知道，可以通过measureKeyWidth预先遍历一次计算。
+ *
+ * @author wuyuhou
+ *
+ */
+public class JSONFormatter {
+
+	private String fillStringUnit = null;
+
+	private int keyWidth = 0;
+
+	/**
+	 * 构造方法
+	 *
+	 * @param fillStringUnit 缩进单位，不可以为空
+	 * @param keyWidth 键对齐的宽度（字节数），小于等于0时不对齐
+	 */
+	public JSONFormatter(String fillStringUnit, int keyWidth) {
+		if (fillStringUnit == null) {
+			throw new IllegalArgumentException("fillStringUnit is null!");
+		}
+		this.fillStringUnit = fillStringUnit;
+		this.keyWidth = keyWidth;
+	}
+
+	/**
+	 * 计算键对齐的宽度，即最长的键的字节数
+	 *
+	 * @param in 输入，不可以为空，读取后不关闭
+	 * @return 宽度
+	 * @throws IOException 读取出错
+	 */
+	public static int measureKeyWidth(Reader in) throws IOException {
+		Tokenizer tokenizer = new Tokenizer(in);
+		int width = 0;
+		String token = tokenizer.nextToken();
+		while (token != null) {
+			String next = tokenizer.nextToken();
+			if (":".equals(next)) {
+				int length = getWidth(token);
+				if (length > width) {
+					width = length;
+				}
+			}
+			token = next;
+		}
+		return width;
+	}
+
+	/**
+	 * 格式化
+	 *
+	 * @param in 输入，不可以为空，读取后不关闭
+	 * @param out 输出，不可以为空，写完后flush，但不关闭
+	 * @throws IOException 读取或者输出出错
+	 */
+	public void format(Reader in, Writer out) throws IOException {
+		if (in == null) {
+			throw new IllegalArgumentException("reader is null!");
+		}
+		if (out == null) {
+			throw new IllegalArgumentException("writer is null!");
+		}
+		Writer buf = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+		Tokenizer tokenizer = new Tokenizer(in);
+		int count = 0;
+		String token = tokenizer.nextToken();
+		while (token != null) {
+			//预读一个记号
+			String next = tokenizer.nextToken();
+			if (token.equals(",")) {
+				buf.write(token);
+				doFill(buf, count);
+			} else if (token.equals(":")) {
+				buf.write(" : ");
+			} else if (token.equals("{") || token.equals("[")) {
+				String end = token.equals("{") ? "}" : "]";
+				if (end.equals(next)) {
+					buf.write(token);
+					buf.write(' ');
+					buf.write(end);
+					next = tokenizer.nextToken();
+				} else {
+					count++;
+					buf.write(token);
+					doFill(buf, count);
+				}
+			} else if (token.equals("}") || token.equals("]")) {
+				count--;
+				doFill(buf, count);
+				buf.write(token);
+			} else {
+				buf.write(token);
+				//左对齐
+				if (":".equals(next)) {
+					for (int i = getWidth(token); i < keyWidth; i++) {
+						buf.write(' ');
+					}
+				}
+			}
+			token = next;
+		}
+		buf.flush();
+	}
+
+	private void doFill(Writer buf, int count) throws IOException {
+		buf.write('\n');
+		for (int i = 0; i < count; i++) {
+			buf.write(fillStringUnit);
+		}
+	}
+
+	//字节数，和String.getBytes()一致，只有非ASCII字符时才需要编码
+	private static int getWidth(String token) {
+		for (int i = 0; i < token.length(); i++) {
+			if (token.charAt(i) > 0x7F) {
+				return token.getBytes().length;
+			}
+		}
+		return token.length();
+	}
+
+	/*
+	 * 记号读取：'{'、'}'、'['、']'、':'、','，或者到这些字符（引号外）为止的一段文本，
+	 * 引号内的文本以结束引号为止，记号前后的空白会被去掉
+	 */
+	private static class Tokenizer {
+
+		private Reader in = null;
+
+		private char[] buffer = new char[8192];
+
+		private int pos = 0;
+
+		private int limit = 0;
+
+		private StringBuilder text = new StringBuilder();
+
+		Tokenizer(Reader in) {
+			this.in = in;
+		}
+
+		private int peek() throws IOException {
+			if (pos == limit) {
+				limit = in.read(buffer, 0, buffer.length);
+				pos = 0;
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			return buffer[pos];
+		}
+
+		String nextToken() throws IOException {
+			if (peek() == -1) {
+				return null;
+			}
+			text.setLength(0);
+			boolean isBlank = true;
+			boolean isInQuote = false;
+			int c;
+			while ((c = peek()) != -1) {
+				if (!isInQuote && (c == ':' || c == '{' || c == '}' || c == '[' || c == ']' || c == ',')) {
+					if (isBlank) {
+						text.append((char) c);
+						pos++;
+					}
+					break;
+				}
+				pos++;
+				text.append((char) c);
+				if (c > ' ') {
+					isBlank = false;
+				}
+				if (c == '\\') {
+					c = peek();
+					if (c != -1) {
+						text.append((char) c);
+						pos++;
+					}
+				} else if (c == '"') {
+					if (isInQuote) {
+						break;
+					}
+					isInQuote = true;
+				}
+			}
+			return text.toString().trim();
+		}
+	}
+}
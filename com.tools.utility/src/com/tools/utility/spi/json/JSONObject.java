@@ -125,7 +125,7 @@ public class JSONObject {
 	/**
 	 * Construct an empty JSONObject.
 	 */
-	private JSONObject() {
+	JSONObject() {
 		this.map = new HashMap<String, Object>();
 	}
 
@@ -234,7 +234,7 @@ public class JSONObject {
 	 * @return his.
 	 * @throws JSONRuntimeException if the key is a duplicate
 	 */
-	private void putOnce(String key, Object value) throws JSONRuntimeException {
+	void putOnce(String key, Object value) throws JSONRuntimeException {
 		if (key != null && value != null) {
 			if (opt(key) != null) {
 				throw new JSONRuntimeException("Duplicate key \"" + key + "\"");
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.spi.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * 拉模式的流式Json读取器<br>
+ *
+ * 直接从输入流中按需读取，内部使用可重用的字符缓冲区，不需要先把整个输入读成字符串，也不需要构建完整的JSONObject树。<br>
+ * 和JSONTokener一样宽松：支持单引号字符串、不带引号的值、'('和')'包围的数组、';'分隔符、'='和'=>'作为键值分隔符。
+ *
+ * <pre>
+ * JSONReader reader = new JSONReader(in, charset);
+ * reader.nextToken();//BEGIN_OBJECT
+ * while (reader.hasNext()) {
+ *     String name = reader.readString();
+ *     long value = reader.readLong();
+ * }
+ * reader.nextToken();//END_OBJECT
+ * </pre>
+ *
+ * @author wuyuhou
+ *
+ */
+public class JSONReader {
+
+	public static final int END_DOCUMENT = 0;
+	public static final int BEGIN_OBJECT = 1;
+	public static final int END_OBJECT = 2;
+	public static final int BEGIN_ARRAY = 3;
+	public static final int END_ARRAY = 4;
+	public static final int NAME = 5;
+	//带引号的字符串
+	public static final int STRING = 6;
+	//不带引号的值，比如数字、true、false、null
+	public static final int LITERAL = 7;
+
+	private static final int NONE = -1;
+
+	//嵌套的作用域
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_ARRAY = 2;
+	private static final int NONEMPTY_ARRAY = 3;
+	private static final int EMPTY_OBJECT = 4;
+	private static final int DANGLING_NAME = 5;
+	private static final int NONEMPTY_OBJECT = 6;
+
+	private Reader reader = null;
+
+	private char[] buffer = new char[8192];
+
+	private int pos = 0;
+
+	private int limit = 0;
+
+	//已经读取的字符数，用于错误定位
+	private long index = 0;
+
+	private int[] stack = new int[32];
+
+	private int stackSize = 0;
+
+	private int peeked = NONE;
+
+	private String peekedText = null;
+
+	//可重用的字符串缓冲，用于含有转义字符的字符串
+	private StringBuilder textBuffer = new StringBuilder();
+
+	/**
+	 * 构造方法
+	 *
+	 * @param in 输入流，不可以为空
+	 * @param charset 字符集，为空时使用UTF-8
+	 */
+	public JSONReader(InputStream in, Charset charset) {
+		if (in == null) {
+			throw new IllegalArgumentException("InputStream is null!");
+		}
+		if (charset == null) {
+			charset = Charset.forName("UTF-8");
+		}
+		this.reader = new InputStreamReader(in, charset);
+		stack[stackSize++] = EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * 构造方法
+	 *
+	 * @param reader 输入，不可以为空
+	 */
+	public JSONReader(Reader reader) {
+		if (reader == null) {
+			throw new IllegalArgumentException("reader is null!");
+		}
+		this.reader = reader;
+		stack[stackSize++] = EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * 查看下一个记号的类型，但是不消费
+	 *
+	 * @return 记号类型
+	 */
+	public int peek() {
+		if (peeked != NONE) {
+			return peeked;
+		}
+		int scope = stack[stackSize - 1];
+		char c;
+		switch (scope) {
+			case EMPTY_ARRAY:
+				stack[stackSize - 1] = NONEMPTY_ARRAY;
+				c = peekClean();
+				if (c == ']' || c == ')') {
+					consume();
+					return endScope(END_ARRAY);
+				}
+				if (c == ',' || c == ';') {
+					//空元素，视为null
+					return setPeeked(LITERAL, "null");
+				}
+				return peekValue();
+			case NONEMPTY_ARRAY:
+				c = nextClean();
+				if (c == ']' || c == ')') {
+					return endScope(END_ARRAY);
+				}
+				if (c != ',' && c != ';') {
+					throw syntaxError("Expected a ',' or ']'");
+				}
+				c = peekClean();
+				if (c == ']' || c == ')') {
+					consume();
+					return endScope(END_ARRAY);
+				}
+				if (c == ',' || c == ';') {
+					return setPeeked(LITERAL, "null");
+				}
+				return peekValue();
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				if (scope == NONEMPTY_OBJECT) {
+					c = nextClean();
+					if (c == '}') {
+						return endScope(END_OBJECT);
+					}
+					if (c != ',' && c != ';') {
+						throw syntaxError("Expected a ',' or '}'");
+					}
+				}
+				c = peekClean();
+				if (c == '}') {
+					consume();
+					return endScope(END_OBJECT);
+				}
+				if (c == 0) {
+					throw syntaxError("A JSONObject text must end with '}'");
+				}
+				stack[stackSize - 1] = DANGLING_NAME;
+				if (c == '"' || c == '\'') {
+					consume();
+					return setPeeked(NAME, nextString(c));
+				}
+				return setPeeked(NAME, nextLiteral());
+			case DANGLING_NAME:
+				c = nextClean();
+				if (c == '=') {
+					if (peekClean() == '>') {
+						consume();
+					}
+				} else if (c != ':') {
+					throw syntaxError("Expected a ':' after a key");
+				}
+				stack[stackSize - 1] = NONEMPTY_OBJECT;
+				return peekValue();
+			case EMPTY_DOCUMENT:
+				stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+				return peekValue();
+			default:
+				return setPeeked(END_DOCUMENT, null);
+		}
+	}
+
+	/**
+	 * 消费下一个记号
+	 *
+	 * @return 记号类型
+	 */
+	public int nextToken() {
+		int token = peek();
+		peeked = NONE;
+		return token;
+	}
+
+	/**
+	 * 当前对象或者数组中是否还有下一个元素
+	 *
+	 * @return true：还有
+	 */
+	public boolean hasNext() {
+		int token = peek();
+		return token != END_OBJECT && token != END_ARRAY && token != END_DOCUMENT;
+	}
+
+	/**
+	 * 读取下一个名称、字符串或者不带引号的值
+	 *
+	 * @return 字符串
+	 */
+	public String readString() {
+		int token = peek();
+		if (token != NAME && token != STRING && token != LITERAL) {
+			throw syntaxError("Expected a string but was " + tokenName(token));
+		}
+		peeked = NONE;
+		return peekedText;
+	}
+
+	/**
+	 * 读取下一个整数值
+	 *
+	 * @return 整数
+	 */
+	public long readLong() {
+		String text = readString();
+		try {
+			return Long.parseLong(text);
+		} catch (NumberFormatException e) {
+			try {
+				return Double.valueOf(text).longValue();
+			} catch (NumberFormatException e1) {
+				throw syntaxError("Expected a long but was '" + text + "'");
+			}
+		}
+	}
+
+	/**
+	 * 读取下一个值，和JSONTokener.nextValue()的结果一致：<br>
+	 * 字符串返回String，不带引号的值返回Boolean、Integer、Long、Double、String或者JSONObject.NULL，
+	 * 对象返回JSONObject，数组返回JSONArray
+	 *
+	 * @return 值
+	 */
+	public Object readValue() {
+		int token = peek();
+		switch (token) {
+			case STRING:
+				return readString();
+			case LITERAL:
+				return JSONTokener.stringToValue(readString());
+			case BEGIN_OBJECT:
+				nextToken();
+				JSONObject jsonObject = new JSONObject();
+				while (hasNext()) {
+					String name = readString();
+					jsonObject.putOnce(name, readValue());
+				}
+				nextToken();
+				return jsonObject;
+			case BEGIN_ARRAY:
+				nextToken();
+				JSONArray jsonArray = new JSONArray();
+				while (hasNext()) {
+					jsonArray.add(readValue());
+				}
+				nextToken();
+				return jsonArray;
+			default:
+				throw syntaxError("Expected a value but was " + tokenName(token));
+		}
+	}
+
+	/**
+	 * 跳过下一个值（包括嵌套的对象和数组）
+	 */
+	public void skipValue() {
+		int depth = 0;
+		do {
+			int token = nextToken();
+			if (token == BEGIN_OBJECT || token == BEGIN_ARRAY) {
+				depth++;
+			} else if (token == END_OBJECT || token == END_ARRAY) {
+				depth--;
+			} else if (token == END_DOCUMENT) {
+				throw syntaxError("Unexpected end of document");
+			}
+		} while (depth > 0);
+	}
+
+	/**
+	 * 关闭底层输入
+	 *
+	 * @throws IOException 关闭出错
+	 */
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private int peekValue() {
+		char c = peekClean();
+		switch (c) {
+			case '"':
+			case '\'':
+				consume();
+				return setPeeked(STRING, nextString(c));
+			case '{':
+				consume();
+				push(EMPTY_OBJECT);
+				return setPeeked(BEGIN_OBJECT, null);
+			case '[':
+			case '(':
+				consume();
+				push(EMPTY_ARRAY);
+				return setPeeked(BEGIN_ARRAY, null);
+			case 0:
+				//和JSONTokener一致，空内容视为null
+				return setPeeked(LITERAL, "");
+			default:
+				return setPeeked(LITERAL, nextLiteral());
+		}
+	}
+
+	private int setPeeked(int token, String text) {
+		peeked = token;
+		peekedText = text;
+		return token;
+	}
+
+	private int endScope(int token) {
+		stackSize--;
+		return setPeeked(token, null);
+	}
+
+	private void push(int scope) {
+		if (stackSize == stack.length) {
+			int[] newStack = new int[stackSize * 2];
+			System.arraycopy(stack, 0, newStack, 0, stackSize);
+			stack = newStack;
+		}
+		stack[stackSize++] = scope;
+	}
+
+	/*
+	 * 确保缓冲区中至少有minimum个字符，返回false表示已经到了流的末尾
+	 */
+	private boolean fill(int minimum) {
+		if (limit - pos >= minimum) {
+			return true;
+		}
+		if (pos > 0) {
+			limit -= pos;
+			System.arraycopy(buffer, pos, buffer, 0, limit);
+			pos = 0;
+		}
+		try {
+			int count = 0;
+			while ((count = reader.read(buffer, limit, buffer.length - limit)) != -1) {
+				limit += count;
+				if (limit >= minimum) {
+					return true;
+				}
+			}
+		} catch (IOException e) {
+			throw new JSONRuntimeException(e);
+		}
+		return false;
+	}
+
+	/*
+	 * 跳过空白字符，返回下一个字符但是不消费，流结束时返回0
+	 */
+	private char peekClean() {
+		for (;;) {
+			if (pos == limit && !fill(1)) {
+				return 0;
+			}
+			char c = buffer[pos];
+			if (c > ' ') {
+				return c;
+			}
+			pos++;
+			index++;
+		}
+	}
+
+	/*
+	 * 读取下一个非空白字符，流结束时返回0
+	 */
+	private char nextClean() {
+		char c = peekClean();
+		if (c != 0) {
+			consume();
+		}
+		return c;
+	}
+
+	private void consume() {
+		pos++;
+		index++;
+	}
+
+	private String nextString(char quote) {
+		textBuffer.setLength(0);
+		boolean escaped = false;
+		for (;;) {
+			int start = pos;
+			while (pos < limit) {
+				char c = buffer[pos++];
+				index++;
+				if (c == quote) {
+					if (!escaped) {
+						return new String(buffer, start, pos - start - 1);
+					}
+					textBuffer.append(buffer, start, pos - start - 1);
+					return textBuffer.toString();
+				} else if (c == '\\') {
+					escaped = true;
+					textBuffer.append(buffer, start, pos - start - 1);
+					textBuffer.append(readEscape());
+					start = pos;
+				} else if (c == '\n' || c == '\r') {
+					throw syntaxError("Unterminated string");
+				}
+			}
+			//缓冲区用完，保存已经读取的部分
+			escaped = true;
+			textBuffer.append(buffer, start, pos - start);
+			if (!fill(1)) {
+				throw syntaxError("Unterminated string");
+			}
+		}
+	}
+
+	private char readEscape() {
+		if (pos == limit && !fill(1)) {
+			throw syntaxError("Unterminated string");
+		}
+		char c = buffer[pos++];
+		index++;
+		switch (c) {
+			case 'b':
+				return '\b';
+			case 't':
+				return '\t';
+			case 'n':
+				return '\n';
+			case 'f':
+				return '\f';
+			case 'r':
+				return '\r';
+			case 'u':
+				if (!fill(4)) {
+					throw syntaxError("Substring bounds error");
+				}
+				int result = 0;
+				for (int i = 0; i < 4; i++) {
+					int hex = JSONTokener.dehexchar(buffer[pos++]);
+					if (hex < 0) {
+						throw syntaxError("Illegal escape.");
+					}
+					result = (result << 4) + hex;
+				}
+				index += 4;
+				return (char) result;
+			case '"':
+			case '\'':
+			case '\\':
+			case '/':
+				return c;
+			default:
+				throw syntaxError("Illegal escape.");
+		}
+	}
+
+	/*
+	 * 读取不带引号的值，和JSONTokener.nextValue()的规则一致
+	 */
+	private String nextLiteral() {
+		textBuffer.setLength(0);
+		for (;;) {
+			if (pos == limit && !fill(1)) {
+				break;
+			}
+			char c = buffer[pos];
+			if (c < ' ' || ",:]})/\\\"[{;=#".indexOf(c) >= 0) {
+				break;
+			}
+			textBuffer.append(c);
+			pos++;
+			index++;
+		}
+		return textBuffer.toString().trim();
+	}
+
+	private static String tokenName(int token) {
+		switch (token) {
+			case END_DOCUMENT:
+				return "END_DOCUMENT";
+			case BEGIN_OBJECT:
+				return "BEGIN_OBJECT";
+			case END_OBJECT:
+				return "END_OBJECT";
+			case BEGIN_ARRAY:
+				return "BEGIN_ARRAY";
+			case END_ARRAY:
+				return "END_ARRAY";
+			case NAME:
+				return "NAME";
+			case STRING:
+				return "STRING";
+			default:
+				return "LITERAL";
+		}
+	}
+
+	public JSONRuntimeException syntaxError(String message) {
+		return new JSONRuntimeException(message + " at character " + index);
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.spi.json;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.tools.utility.api.SdoUtil;
+import com.tools.utility.spi.format.IFormatter;
+
+/**
+ * 流式的Json输出<br>
+ *
+ * 一次遍历对象图，直接写入到Appendable（StringBuilder、Writer等），不产生中间字符串
+ *
+ * @author wuyuhou
+ *
+ */
+public class JSONWriter {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private Appendable out = null;
+
+	private IFormatter dateFormatter = null;
+
+	/**
+	 * 构造方法
+	 *
+	 * @param out 输出目标，不可以为空
+	 * @param dateFormatter 日期格式化器，不可以为空
+	 */
+	public JSONWriter(Appendable out, IFormatter dateFormatter) {
+		if (out == null) {
+			throw new IllegalArgumentException("out is null!");
+		}
+		if (dateFormatter == null) {
+			throw new IllegalArgumentException("dateFormatter is null!");
+		}
+		this.out = out;
+		this.dateFormatter = dateFormatter;
+	}
+
+	/**
+	 * 输出对象
+	 *
+	 * @param obj 对象，可以为空
+	 * @return this
+	 * @throws IOException 输出出错
+	 */
+	public JSONWriter writeValue(Object obj) throws IOException {
+		if (obj == null) {
+			out.append("\"\"");
+		} else if (obj instanceof String) {
+			out.append('"');
+			writeEscaped((String) obj);
+			out.append('"');
+		} else if (obj instanceof Character) {
+			out.append('\'');
+			writeEscaped(String.valueOf(obj));
+			out.append('\'');
+		} else if (obj instanceof Number || obj instanceof Boolean) {
+			out.append(obj.toString());
+		} else if (obj instanceof Date) {// 默认时间格式
+			out.append('"');
+			out.append((String) dateFormatter.format(obj));
+			out.append('"');
+		} else if (obj.getClass().isArray()) {
+			writeArray(obj);
+		} else if (obj instanceof Collection) {
+			writeCollection((Collection<?>) obj);
+		} else if (obj instanceof Map) {
+			writeMap((Map<?, ?>) obj);
+		} else if (SdoUtil.isSdoType(obj.getClass())) {//sdo
+			writeSdo(obj);
+		} else {
+			writeBean(obj);
+		}
+		return this;
+	}
+
+	// 输出数组（包括原始类型数组）
+	private void writeArray(Object array) throws IOException {
+		out.append('[');
+		int length = Array.getLength(array);
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			writeValue(Array.get(array, i));
+		}
+		out.append(']');
+	}
+
+	// 输出集合，直接迭代，不再转换为数组
+	private void writeCollection(Collection<?> collection) throws IOException {
+		out.append('[');
+		int count = 0;
+		for (Object obj : collection) {
+			if (count > 0) {
+				out.append(',');
+			}
+			writeValue(obj);
+			count++;
+		}
+		out.append(']');
+	}
+
+	// 输出Map
+	private void writeMap(Map<?, ?> map) throws IOException {
+		out.append('{');
+		int count = 0;
+		for (Entry<?, ?> entry : map.entrySet()) {
+			if (count > 0) {
+				out.append(',');
+			}
+			writeValue(entry.getKey());
+			out.append(':');
+			writeValue(entry.getValue());
+			count++;
+		}
+		out.append('}');
+	}
+
+	// 输出sdo
+	private void writeSdo(Object sdo) throws IOException {
+		out.append('{');
+		int count = 0;
+		List propertyList = null;
+		try {
+			propertyList = SdoUtil.getInstanceProperties(sdo);
+		} catch (Throwable ignore) {
+
+		}
+		if (propertyList != null) {
+			for (Object property : propertyList) {
+				String key = null;
+				Object propertyValue = null;
+				try {
+					key = SdoUtil.getPropertyName(property);
+					propertyValue = SdoUtil.getPropertyValue(sdo, key);
+				} catch (Throwable e) {
+					break;
+				}
+				if (count > 0) {
+					out.append(',');
+				}
+				writeValue(key);
+				out.append(':');
+				writeValue(propertyValue);
+				count++;
+			}
+		}
+		out.append('}');
+	}
+
+	// 输出JavaBean，使用预先编码的属性名称
+	private void writeBean(Object bean) throws IOException {
+		out.append('{');
+		JSONBeanCodec.Property[] properties = JSONBeanCodec.forClass(bean.getClass()).getProperties();
+		for (int i = 0; i < properties.length; i++) {
+			Object fieldValue = null;
+			try {
+				fieldValue = properties[i].get(bean);
+			} catch (IllegalAccessException ignore) {
+
+			}
+			if (i > 0) {
+				out.append(',');
+			}
+			out.append(properties[i].getEncodedName());
+			writeValue(fieldValue);
+		}
+		out.append('}');
+	}
+
+	/**
+	 * 输出转义后的字符串（不包含引号），不需要转义的连续字符一次输出
+	 *
+	 * @param s 字符串，不可以为空
+	 * @throws IOException 输出出错
+	 */
+	public void writeEscaped(String s) throws IOException {
+		writeEscaped(out, s);
+	}
+
+	static void writeEscaped(Appendable out, String s) throws IOException {
+		int start = 0;
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			char ch = s.charAt(i);
+			String replacement = null;
+			switch (ch) {
+			case '"':
+				replacement = "\\\"";
+				break;
+			case '\\':
+				replacement = "\\\\";
+				break;
+			case '\b':
+				replacement = "\\b";
+				break;
+			case '\f':
+				replacement = "\\f";
+				break;
+			case '\n':
+				replacement = "\\n";
+				break;
+			case '\r':
+				replacement = "\\r";
+				break;
+			case '\t':
+				replacement = "\\t";
+				break;
+			case '/':
+				replacement = "\\/";
+				break;
+			default:
+				if (ch > '\u001F') {
+					continue;
+				}
+			}
+			if (i > start) {
+				out.append(s, start, i);
+			}
+			start = i + 1;
+			if (replacement != null) {
+				out.append(replacement);
+			} else {
+				out.append("\\u00").append(HEX[(ch >> 4) & 0xF]).append(HEX[ch & 0xF]);
+			}
+		}
+		if (start < length) {
+			out.append(s, start, length);
+		}
+	}
+}
@@ -15,6 +15,8 @@
  */
 package com.tools.utility.spi.marshaller;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -22,17 +24,31 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 
 
 /**
- * 序列化抽象基类
+ * 序列化抽象基类<br>
+ *
+ * 序列化为字节数组、字符串时使用每个线程复用的缓冲区，不再为每次序列化分配和复制中间数组；
+ * 超过MAX_POOLED_BUFFER_SIZE的缓冲区用完后不保留。
  *
  * @author wuyuhou
  *
  */
 public abstract class AbstractDataMarshaller implements IDataMarshaller {
 
+	//每个线程保留的缓冲区的最大字节数
+	public static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	//文件读写的缓冲区字节数
+	private static final int FILE_BUFFER_SIZE = 8192;
+
+	private static final ThreadLocal<PooledByteArrayOutputStream> pooledBuffer = new ThreadLocal<PooledByteArrayOutputStream>();
+
 	public void marshal(Object data, OutputStream out, Object additional) throws Exception {
 		if (out == null) {
 			throw new IllegalArgumentException("OutputStream is null!");
@@ -66,9 +82,58 @@ public abstract class AbstractDataMarshaller implements IDataMarshaller {
 	 * @param data 数据对象，不可以为空
 	 */
 	public byte[] marshal(Object data) throws Exception {
-		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-		marshal(data, byteOut, null);
-		return byteOut.toByteArray();
+		PooledByteArrayOutputStream byteOut = acquireBuffer();
+		try {
+			marshal(data, byteOut, null);
+			return byteOut.toByteArray();
+		} finally {
+			releaseBuffer(byteOut);
+		}
+	}
+
+	/**
+	 * 序列化到ByteBuffer，从position开始写，写完后position移到数据之后
+	 *
+	 * @param data 数据对象，不可以为空
+	 * @param buffer 目标，不可以为空
+	 * @return 写入的字节数
+	 * @throws BufferOverflowException 剩余空间不够，position恢复到写之前，可以换更大的ByteBuffer重新序列化
+	 */
+	public int marshal(Object data, ByteBuffer buffer) throws Exception {
+		if (buffer == null) {
+			throw new IllegalArgumentException("buffer is null!");
+		}
+		int position = buffer.position();
+		try {
+			marshal(data, new ByteBufferOutputStream(buffer), null);
+		} catch (BufferOverflowException e) {
+			buffer.position(position);
+			throw e;
+		}
+		return buffer.position() - position;
+	}
+
+	/**
+	 * 从ByteBuffer反序列化，从position读到limit，读完后position移到数据之后；
+	 * 预读的实现（比如Json）会把position移到预读的位置，所以不能从同一个ByteBuffer连续读取多个数据
+	 *
+	 * @param buffer 输入，不可以为空
+	 * @return 数据对象
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T unmarshal(ByteBuffer buffer) throws Exception {
+		if (buffer == null) {
+			throw new IllegalArgumentException("buffer is null!");
+		}
+		if (buffer.hasArray()) {
+			//直接读取内部数组，读完后按实际读取的字节移动position
+			PositionedByteArrayInputStream byteIn = new PositionedByteArrayInputStream(buffer.array(),
+					buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			T result = (T)unmarshal(byteIn, null);
+			buffer.position(byteIn.getPosition() - buffer.arrayOffset());
+			return result;
+		}
+		return (T)unmarshal(new ByteBufferInputStream(buffer), null);
 	}
 
 	/**
@@ -94,13 +159,17 @@ public abstract class AbstractDataMarshaller implements IDataMarshaller {
 	 * @param encoding 编码格式，可以为空
 	 */
 	public String marshal(Object data, String encoding) throws Exception {
-		ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-		marshal(data, byteOut, null);
-		if (encoding == null || encoding.trim().length() == 0) {
-			//TODO 使用默认utf-8编码，可能对其他实现有影响
-			return new String(byteOut.toByteArray(), "UTF-8");
-		} else {
-			return new String(byteOut.toByteArray(), encoding.trim());
+		PooledByteArrayOutputStream byteOut = acquireBuffer();
+		try {
+			marshal(data, byteOut, null);
+			if (encoding == null || encoding.trim().length() == 0) {
+				//TODO 使用默认utf-8编码，可能对其他实现有影响
+				return byteOut.toString("UTF-8");
+			} else {
+				return byteOut.toString(encoding.trim());
+			}
+		} finally {
+			releaseBuffer(byteOut);
 		}
 	}
 
@@ -136,7 +205,7 @@ public abstract class AbstractDataMarshaller implements IDataMarshaller {
 		if (outFile == null) {
 			throw new IllegalArgumentException("outFile is null!");
 		}
-		FileOutputStream output = null;
+		OutputStream output = null;
 		try {
 			if (!outFile.exists()) {
 				outFile.createNewFile();
@@ -144,7 +213,7 @@ public abstract class AbstractDataMarshaller implements IDataMarshaller {
 			if (outFile.isDirectory()) {
 				throw new IllegalArgumentException("Not dir:" + outFile.getAbsolutePath());
 			}
-			output = new FileOutputStream(outFile);
+			output = new BufferedOutputStream(new FileOutputStream(outFile), FILE_BUFFER_SIZE);
 			marshal(data, output, null);
 		} finally {
 			if (output != null) {
@@ -169,7 +238,7 @@ public abstract class AbstractDataMarshaller implements IDataMarshaller {
 		if (inFile == null) {
 			throw new IllegalArgumentException("inFile is null!");
 		}
-		FileInputStream intput = null;
+		InputStream intput = null;
 		try {
 			if (!inFile.exists()) {
 				throw new IllegalArgumentException("Not existed:" + inFile.getAbsolutePath());
@@ -177,7 +246,7 @@ public abstract class AbstractDataMarshaller implements IDataMarshaller {
 			if (inFile.isDirectory()) {
 				throw new IllegalArgumentException("Not dir:" + inFile.getAbsolutePath());
 			}
-			intput = new FileInputStream(inFile);
+			intput = new BufferedInputStream(new FileInputStream(inFile), FILE_BUFFER_SIZE);
 			return (T)unmarshal(intput, null);
 		} finally {
 			if (intput != null) {
@@ -189,4 +258,116 @@ public abstract class AbstractDataMarshaller implements IDataMarshaller {
 			}
 		}
 	}
+
+	//取得当前线程的缓冲区，嵌套序列化时缓冲区正在使用，分配新的
+	private static PooledByteArrayOutputStream acquireBuffer() {
+		PooledByteArrayOutputStream buffer = pooledBuffer.get();
+		if (buffer == null || buffer.isInUse) {
+			buffer = new PooledByteArrayOutputStream();
+		} else {
+			pooledBuffer.set(null);
+		}
+		buffer.isInUse = true;
+		return buffer;
+	}
+
+	private static void releaseBuffer(PooledByteArrayOutputStream buffer) {
+		buffer.isInUse = false;
+		if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE) {
+			buffer.reset();
+			pooledBuffer.set(buffer);
+		}
+	}
+
+	/*
+	 * 可复用的缓冲区
+	 */
+	private static class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+
+		private boolean isInUse = false;
+
+		PooledByteArrayOutputStream() {
+			super(512);
+		}
+
+		int capacity() {
+			return buf.length;
+		}
+
+		@Override
+		public synchronized byte[] toByteArray() {
+			return Arrays.copyOf(buf, count);
+		}
+	}
+
+	/*
+	 * 记录读取位置的字节数组输入
+	 */
+	private static class PositionedByteArrayInputStream extends ByteArrayInputStream {
+
+		PositionedByteArrayInputStream(byte[] buf, int offset, int length) {
+			super(buf, offset, length);
+		}
+
+		int getPosition() {
+			return pos;
+		}
+	}
+
+	/*
+	 * 写到ByteBuffer的输出
+	 */
+	private static class ByteBufferOutputStream extends OutputStream {
+
+		private ByteBuffer buffer;
+
+		ByteBufferOutputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void write(int b) {
+			buffer.put((byte)b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			buffer.put(b, off, len);
+		}
+	}
+
+	/*
+	 * 从ByteBuffer读取的输入
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
 }
\ No newline at end of file
@@ -15,7 +15,12 @@
  */
 package com.tools.utility.spi.marshaller;
 
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.tools.utility.api.ReflectUtil;
+import com.tools.utility.impl.marshaller.BinaryDataMarshaller;
 import com.tools.utility.impl.marshaller.JdkDataMarshaller;
+import com.tools.utility.impl.marshaller.JsonDataMarshaller;
 
 /**
  * 数据序列化工厂
@@ -24,7 +29,26 @@ import com.tools.utility.impl.marshaller.JdkDataMarshaller;
  *
  */
 public class DataMarshallerFactory {
+	//JDK序列化
+	public static final String JDK = "jdk";
+
+	//Json序列化
+	public static final String JSON = "json";
+
+	//紧凑的二进制序列化
+	public static final String BINARY = "binary";
+
 	private static IDataMarshaller marshaller = null;
+
+	//名称（注册的名称或者类名称） -> 数据序列化
+	private static ConcurrentHashMap<String, IDataMarshaller> namedMarshallerMap = new ConcurrentHashMap<String, IDataMarshaller>();
+
+	static {
+		namedMarshallerMap.put(JDK, new JdkDataMarshaller());
+		namedMarshallerMap.put(JSON, new JsonDataMarshaller());
+		namedMarshallerMap.put(BINARY, new BinaryDataMarshaller());
+	}
+
 	public static IDataMarshaller getDataMarshaller() {
 		//不需要做并发控制
 		if (marshaller == null) {
@@ -38,4 +62,58 @@ public class DataMarshallerFactory {
 			marshaller = _marshaller;
 		}
 	}
+
+	/**
+	 * 注册数据序列化
+	 *
+	 * @param name 名称，不可以为空
+	 * @param _marshaller 数据序列化，需要线程安全，不可以为空
+	 */
+	public static void registerDataMarshaller(String name, IDataMarshaller _marshaller) {
+		if (name == null || name.trim().length() == 0) {
+			throw new IllegalArgumentException("name is null!");
+		}
+		if (_marshaller == null) {
+			throw new IllegalArgumentException("marshaller is null!");
+		}
+		namedMarshallerMap.put(name, _marshaller);
+	}
+
+	/**
+	 * 按名称取得数据序列化：注册的名称（JDK、JSON、BINARY等），或者实现类名称；
+	 * 按类名称取得时同一个类共用一个实例，实现类需要有公有无参构造方法并且线程安全。<br>
+	 * 名称可能来自远程（比如远程对象使用的数据序列化），所以先加载类但不初始化，
+	 * 确认是IDataMarshaller的实现类后才创建实例，不会执行其他类的静态初始化和构造方法
+	 *
+	 * @param className 注册的名称或者实现类名称，不可以为空
+	 * @return 数据序列化
+	 */
+	public static IDataMarshaller getDataMarshaller(String className) {
+		if (className == null || className.trim().length() == 0) {
+			throw new IllegalArgumentException("className is null!");
+		}
+		IDataMarshaller namedMarshaller = namedMarshallerMap.get(className);
+		if (namedMarshaller == null) {
+			Class clazz = null;
+			try {
+				//ClassLoader.loadClass不会初始化类
+				clazz = ReflectUtil.loadClass(null, className);
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Cannot create marshaller:" + className, e);
+			}
+			if (!IDataMarshaller.class.isAssignableFrom(clazz)) {
+				throw new IllegalArgumentException("Not a marshaller:" + className);
+			}
+			try {
+				namedMarshaller = (IDataMarshaller)clazz.newInstance();
+			} catch (Exception e) {
+				throw new IllegalArgumentException("Cannot create marshaller:" + className, e);
+			}
+			IDataMarshaller oldMarshaller = namedMarshallerMap.putIfAbsent(className, namedMarshaller);
+			if (oldMarshaller != null) {
+				namedMarshaller = oldMarshaller;
+			}
+		}
+		return namedMarshaller;
+	}
 }
\ No newline at end of file
@@ -20,7 +20,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
- * 数据序列化接口
+ * 数据序列化接口<br>
+ *
+ * 实现类一般继承AbstractDataMarshaller，它另外提供了ByteBuffer的序列化、反序列化。
  *
  * @author wuyuhou
  *
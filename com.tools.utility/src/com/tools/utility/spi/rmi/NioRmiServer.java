@@ -0,0 +1,541 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.spi.rmi;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.tools.logger.api.ILogger;
+import com.tools.logger.api.LoggerFactory;
+import com.tools.utility.api.DefaultThreadFactory;
+import com.tools.utility.impl.rmi.IRemoteObjectWrapper;
+import com.tools.utility.impl.rmi.NioRmiProtocol;
+import com.tools.utility.impl.rmi.RemoteObjectWrapperImpl;
+import com.tools.utility.spi.marshaller.IDataMarshaller;
+
+/**
+ * 基于NIO的远程调用服务端，是RmiServer的替代实现<br>
+ *
+ * 一个选择器线程负责所有连接的接收、读、写，调用在固定大小的线程池中执行；
+ * 同一个连接上可以同时有多个调用，通过请求ID和响应对应。
+ * 线程池的队列满时暂停读取这个连接，有空闲后再继续，请求积压在客户端和TCP缓冲区中，不会无限占用内存。<br>
+ * 客户端使用RmiClient.getRemoteObject("nio://HOST:PORT/NAME", 接口)取得远程对象。
+ *
+ * @author wuyuhou
+ *
+ */
+public class NioRmiServer {
+
+	private static ILogger logger = LoggerFactory.getLogger(NioRmiServer.class);
+
+	private static Object lock = new Object();
+
+	private static Map<String, NioRmiServer> serverCache = new HashMap<String, NioRmiServer>();
+
+	//有暂停读取的连接时，选择器等待的最长时间（毫秒）
+	private static final long PAUSED_SELECT_TIMEOUT = 10;
+
+	private String host = null;
+
+	private int port = 0;
+
+	//执行调用的线程数
+	private int workerCount = Runtime.getRuntime().availableProcessors() * 2;
+
+	//等待执行的调用的最大个数
+	private int queueCapacity = 1024;
+
+	private ServerSocketChannel serverChannel = null;
+
+	private Selector selector = null;
+
+	private Thread selectorThread = null;
+
+	private ExecutorService executor = null;
+
+	private volatile boolean isStarted = false;
+
+	//需要注册写事件的连接
+	private Queue<Connection> writeReadyQueue = new ConcurrentLinkedQueue<Connection>();
+
+	//线程池队列满而暂停读取的连接，只在选择器线程中修改
+	private Queue<Connection> pausedQueue = new ConcurrentLinkedQueue<Connection>();
+
+	private Map<String, IRemoteObjectWrapper> remoteObjectMap = new ConcurrentHashMap<String, IRemoteObjectWrapper>();
+
+	//远程对象名称 -> 数据序列化
+	private Map<String, IDataMarshaller> marshallerMap = new ConcurrentHashMap<String, IDataMarshaller>();
+
+	private NioRmiServer() {
+
+	}
+
+	/**
+	 * 取得NIO远程调用服务
+	 *
+	 * @param host 绑定的主机名，为空时绑定所有地址
+	 * @param port 端口
+	 * @return NIO远程调用服务
+	 */
+	public static NioRmiServer getNioRmiServer(String host, int port) {
+		if (port <= 0) {
+			throw new IllegalArgumentException("port'" + port + "' is error!");
+		}
+		String hostPort = String.valueOf(host).trim() + port;
+		synchronized (lock) {
+			NioRmiServer server = serverCache.get(hostPort);
+			if (server == null) {
+				server = new NioRmiServer();
+				server.host = host;
+				server.port = port;
+				serverCache.put(hostPort, server);
+			}
+			return server;
+		}
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * 设置执行调用的线程数，启动前设置有效
+	 *
+	 * @param workerCount 线程数
+	 */
+	public void setWorkerCount(int workerCount) {
+		if (workerCount <= 0) {
+			throw new IllegalArgumentException("workerCount'" + workerCount + "' is error!");
+		}
+		this.workerCount = workerCount;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * 设置等待执行的调用的最大个数，超过时暂停读取请求，启动前设置有效
+	 *
+	 * @param queueCapacity 最大个数
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity'" + queueCapacity + "' is error!");
+		}
+		this.queueCapacity = queueCapacity;
+	}
+
+	public boolean isStarted() {
+		return isStarted;
+	}
+
+	/**
+	 * 启动服务
+	 *
+	 * @throws IOException 端口绑定出错
+	 */
+	public synchronized void start() throws IOException {
+		if (isStarted) {
+			return;
+		}
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		try {
+			//允许停止后立即重新绑定端口
+			serverChannel.socket().setReuseAddress(true);
+			if (host != null && host.trim().length() > 0) {
+				serverChannel.socket().bind(new InetSocketAddress(host.trim(), port));
+			} else {
+				serverChannel.socket().bind(new InetSocketAddress(port));
+			}
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			closeQuietly(serverChannel);
+			closeSelector();
+			throw e;
+		}
+		executor = new ThreadPoolExecutor(workerCount, workerCount, 60000, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(queueCapacity), new DefaultThreadFactory("nio-rmi-" + port + "-worker"));
+		isStarted = true;
+		selectorThread = new DefaultThreadFactory("nio-rmi-" + port + "-selector").newThread(new Runnable() {
+			public void run() {
+				select();
+			}
+		});
+		selectorThread.start();
+		if (logger.isInfoEnabled()) {
+			logger.info("NIO rmi server started at port '" + port + "'");
+		}
+	}
+
+	/**
+	 * 停止服务，关闭端口和所有连接
+	 */
+	public synchronized void stop() {
+		if (!isStarted) {
+			return;
+		}
+		isStarted = false;
+		selector.wakeup();
+		try {
+			selectorThread.join(5000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (SelectionKey key : selector.keys()) {
+			closeQuietly(key.channel());
+		}
+		closeQuietly(serverChannel);
+		closeSelector();
+		executor.shutdown();
+		writeReadyQueue.clear();
+		pausedQueue.clear();
+		selectorThread = null;
+		executor = null;
+		if (logger.isInfoEnabled()) {
+			logger.info("NIO rmi server stopped at port '" + port + "'");
+		}
+	}
+
+	/**
+	 * 发布远程对象
+	 *
+	 * @param remoteObjectName 远程对象名称
+	 * @param remoteObject 远程对象
+	 */
+	public void publish(String remoteObjectName, Object remoteObject) {
+		publish(remoteObjectName, remoteObject, null);
+	}
+
+	/**
+	 * 发布远程对象，参数、结果使用指定的数据序列化，客户端查找远程对象时自动使用相同的数据序列化
+	 *
+	 * @param remoteObjectName 远程对象名称
+	 * @param remoteObject 远程对象
+	 * @param marshaller 数据序列化，需要有公有无参构造方法并且线程安全，为空时使用JDK序列化；
+	 *        要能保持调用数据的类型，支持JdkDataMarshaller、BinaryDataMarshaller，不支持JsonDataMarshaller
+	 */
+	public void publish(String remoteObjectName, Object remoteObject, IDataMarshaller marshaller) {
+		if (remoteObjectName == null || remoteObjectName.trim().length() == 0) {
+			throw new IllegalArgumentException("remoteObjectName is null!");
+		}
+		if (remoteObject == null) {
+			throw new IllegalArgumentException("remoteObject is null!");
+		}
+		if (marshaller != null) {
+			NioRmiProtocol.checkMarshaller(marshaller);
+		}
+		IRemoteObjectWrapper wrapper = null;
+		if (remoteObject instanceof IRemoteObjectWrapper) {
+			wrapper = (IRemoteObjectWrapper)remoteObject;
+		} else {
+			wrapper = new RemoteObjectWrapperImpl(remoteObject);
+		}
+		marshallerMap.put(remoteObjectName, marshaller == null ? NioRmiProtocol.DEFAULT_MARSHALLER : marshaller);
+		remoteObjectMap.put(remoteObjectName, wrapper);
+	}
+
+	/**
+	 * 取消发布远程对象
+	 *
+	 * @param remoteObjectName 远程对象名称
+	 */
+	public void unpublish(String remoteObjectName) {
+		if (remoteObjectName == null || remoteObjectName.trim().length() == 0) {
+			throw new IllegalArgumentException("remoteObjectName is null!");
+		}
+		remoteObjectMap.remove(remoteObjectName);
+		marshallerMap.remove(remoteObjectName);
+	}
+
+	//选择器线程
+	private void select() {
+		while (isStarted) {
+			try {
+				if (pausedQueue.isEmpty()) {
+					selector.select();
+				} else {
+					//暂停后、放入pausedQueue前调用已经执行完时没有唤醒，定时重试
+					selector.select(PAUSED_SELECT_TIMEOUT);
+				}
+				Connection connection = null;
+				while ((connection = writeReadyQueue.poll()) != null) {
+					if (connection.key.isValid()) {
+						connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+					}
+				}
+				resumePausedConnections();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					try {
+						if (key.isAcceptable()) {
+							accept();
+						} else {
+							connection = (Connection)key.attachment();
+							if (key.isReadable()) {
+								connection.read();
+							}
+							if (key.isValid() && key.isWritable()) {
+								connection.write();
+							}
+						}
+					} catch (IOException e) {
+						logger.debug(e);
+						key.cancel();
+						closeQuietly(key.channel());
+					}
+				}
+			} catch (Throwable t) {
+				if (isStarted) {
+					logger.error(t);
+				}
+			}
+		}
+	}
+
+	//线程池有空闲后，按暂停的顺序提交暂存的请求，继续读取
+	private void resumePausedConnections() {
+		Connection connection = null;
+		while ((connection = pausedQueue.peek()) != null) {
+			if (!connection.key.isValid()) {
+				pausedQueue.poll();
+				continue;
+			}
+			if (!connection.submit(connection.pendingBody)) {
+				return;
+			}
+			pausedQueue.poll();
+			connection.pendingBody = null;
+			connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_READ);
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Connection connection = new Connection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+	}
+
+	//执行调用，在线程池中
+	private void process(Connection connection, byte[] body) {
+		long requestId = 0;
+		ByteBuffer response = null;
+		try {
+			DataInputStream in = NioRmiProtocol.openFrame(body);
+			requestId = in.readLong();
+			byte op = in.readByte();
+			String objectName = in.readUTF();
+			int methodId = in.readInt();
+			IDataMarshaller marshaller = null;
+			if (op != NioRmiProtocol.OP_LOOKUP) {
+				marshaller = marshallerMap.get(objectName);
+			}
+			if (marshaller == null) {
+				marshaller = NioRmiProtocol.DEFAULT_MARSHALLER;
+			}
+			Object data = marshaller.unmarshal(in, null);
+			Object result = null;
+			byte status = NioRmiProtocol.STATUS_OK;
+			try {
+				result = dispatch(op, objectName, methodId, data);
+			} catch (Throwable t) {
+				result = t;
+				status = NioRmiProtocol.STATUS_EXCEPTION;
+			}
+			response = NioRmiProtocol.encodeResponse(requestId, status, result, marshaller);
+		} catch (Throwable t) {
+			logger.error("NIO rmi request '" + requestId + "' failed", t);
+			try {
+				response = NioRmiProtocol.encodeResponse(requestId, NioRmiProtocol.STATUS_FAILURE,
+						new RemoteException("Request failed", t), NioRmiProtocol.DEFAULT_MARSHALLER);
+			} catch (Throwable ignore) {
+				connection.close();
+				return;
+			}
+		}
+		connection.send(response);
+	}
+
+	private Object dispatch(byte op, String objectName, int methodId, Object data) throws Throwable {
+		IRemoteObjectWrapper wrapper = remoteObjectMap.get(objectName);
+		if (op == NioRmiProtocol.OP_LOOKUP) {
+			IDataMarshaller marshaller = marshallerMap.get(objectName);
+			return wrapper == null || marshaller == null ? null : marshaller.getClass().getName();
+		}
+		if (wrapper == null) {
+			throw new NoSuchObjectException("Not published:" + objectName);
+		}
+		return NioRmiProtocol.dispatch(wrapper, op, methodId, data);
+	}
+
+	private void closeSelector() {
+		try {
+			selector.close();
+		} catch (Throwable ignore) {
+
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (Throwable ignore) {
+
+			}
+		}
+	}
+
+	/*
+	 * 连接，读写都在选择器线程中进行，其他线程通过send放入写队列
+	 */
+	private class Connection {
+
+		private SocketChannel channel = null;
+
+		private SelectionKey key = null;
+
+		private ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+
+		private ByteBuffer bodyBuffer = null;
+
+		private Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+
+		//线程池队列满时暂存的请求，不为空时暂停读取
+		private byte[] pendingBody = null;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void read() throws IOException {
+			for (;;) {
+				if (bodyBuffer == null) {
+					if (channel.read(lengthBuffer) < 0) {
+						throw new IOException("Connection closed by peer");
+					}
+					if (lengthBuffer.hasRemaining()) {
+						return;
+					}
+					lengthBuffer.flip();
+					int length = lengthBuffer.getInt();
+					lengthBuffer.clear();
+					NioRmiProtocol.checkFrameLength(length);
+					bodyBuffer = ByteBuffer.allocate(length);
+				}
+				if (channel.read(bodyBuffer) < 0) {
+					throw new IOException("Connection closed by peer");
+				}
+				if (bodyBuffer.hasRemaining()) {
+					return;
+				}
+				byte[] body = bodyBuffer.array();
+				bodyBuffer = null;
+				if (!submit(body)) {
+					pendingBody = body;
+					key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+					pausedQueue.add(this);
+					return;
+				}
+			}
+		}
+
+		//提交到线程池，队列满时返回false
+		boolean submit(final byte[] body) {
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							process(Connection.this, body);
+						} finally {
+							if (!pausedQueue.isEmpty()) {
+								selector.wakeup();
+							}
+						}
+					}
+				});
+				return true;
+			} catch (RejectedExecutionException e) {
+				return false;
+			}
+		}
+
+		void send(ByteBuffer frame) {
+			writeQueue.add(frame);
+			writeReadyQueue.add(this);
+			selector.wakeup();
+		}
+
+		void write() throws IOException {
+			ByteBuffer frame = null;
+			while ((frame = writeQueue.peek()) != null) {
+				channel.write(frame);
+				if (frame.hasRemaining()) {
+					return;
+				}
+				writeQueue.poll();
+			}
+			//暂停读取时不恢复读事件
+			int readOps = pendingBody == null ? SelectionKey.OP_READ : 0;
+			key.interestOps(readOps);
+			//取消写事件和放入写队列之间的竞争
+			if (!writeQueue.isEmpty()) {
+				key.interestOps(readOps | SelectionKey.OP_WRITE);
+			}
+		}
+
+		void close() {
+			key.cancel();
+			closeQuietly(channel);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013 Primeton.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tools.utility.spi.rmi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tools.utility.impl.rmi.BatchFailure;
+import com.tools.utility.impl.rmi.RemoteInvocationHandler;
+
+/**
+ * 远程对象的批量调用，通过RmiClient.batch取得<br>
+ * 
+ * 在getProxy()返回的记录代理上的调用只被记录，返回null（基本类型返回0、false），
+ * execute()把记录的调用一次发送到远程，按顺序执行后一起返回结果，N次往返变为一次。<br>
+ * 
+ * 示例：<br>
+ * RmiBatch&lt;IAccount&gt; batch = RmiClient.batch(account);<br>
+ * batch.getProxy().getName(id1);<br>
+ * batch.getProxy().getName(id2);<br>
+ * Object[] names = batch.execute();<br>
+ * 
+ * 不是线程安全的。
+ * 
+ * @author wuyuhou
+ *
+ */
+public class RmiBatch<T> {
+	
+	private RemoteInvocationHandler handler;
+	
+	private T recordProxy;
+	
+	private List<Method> methods = new ArrayList<Method>();
+	
+	private List<Object[]> argsList = new ArrayList<Object[]>();
+	
+	private Object[] results = null;
+	
+	@SuppressWarnings("unchecked")
+	RmiBatch(RemoteInvocationHandler handler, Class<T> remoteObjectInterface) {
+		this.handler = handler;
+		this.recordProxy = (T)Proxy.newProxyInstance(remoteObjectInterface.getClassLoader(),
+				new Class[]{remoteObjectInterface}, new RecordInvocationHandler());
+	}
+	
+	/**
+	 * 取得记录代理，在上面的调用只被记录
+	 * 
+	 * @return 记录代理
+	 */
+	public T getProxy() {
+		return recordProxy;
+	}
+	
+	/**
+	 * 已经记录的调用个数
+	 * 
+	 * @return 调用个数
+	 */
+	public int size() {
+		return methods.size();
+	}
+	
+	/**
+	 * 执行记录的调用，执行后清空记录，可以继续记录下一批
+	 * 
+	 * @return 每个调用的结果，抛出异常的调用为null
+	 * @throws Throwable 通讯出错，或者第一个抛出异常的调用的异常（后面的调用仍然执行了，结果通过getResult取得）
+	 */
+	public Object[] execute() throws Throwable {
+		Method[] batchMethods = methods.toArray(new Method[methods.size()]);
+		Object[][] batchArgs = argsList.toArray(new Object[argsList.size()][]);
+		methods.clear();
+		argsList.clear();
+		results = batchMethods.length == 0 ? new Object[0] : handler.invokeBatch(batchMethods, batchArgs);
+		Object[] values = new Object[results.length];
+		Throwable error = null;
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] instanceof BatchFailure) {
+				if (error == null) {
+					error = ((BatchFailure)results[i]).getError();
+				}
+			} else {
+				values[i] = results[i];
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+		return values;
+	}
+	
+	/**
+	 * 取得上一次execute中某个调用的结果
+	 * 
+	 * @param index 调用的顺序，从0开始
+	 * @return 结果
+	 * @throws Throwable 这个调用抛出的异常
+	 */
+	public Object getResult(int index) throws Throwable {
+		if (results == null) {
+			throw new IllegalStateException("Batch is not executed!");
+		}
+		if (results[index] instanceof BatchFailure) {
+			throw ((BatchFailure)results[index]).getError();
+		}
+		return results[index];
+	}
+	
+	private static Object getDefaultValue(Class type) {
+		if (!type.isPrimitive() || type == void.class) {
+			return null;
+		}
+		if (type == boolean.class) {
+			return Boolean.FALSE;
+		}
+		if (type == char.class) {
+			return Character.valueOf((char)0);
+		}
+		if (type == byte.class) {
+			return Byte.valueOf((byte)0);
+		}
+		if (type == short.class) {
+			return Short.valueOf((short)0);
+		}
+		if (type == int.class) {
+			return Integer.valueOf(0);
+		}
+		if (type == long.class) {
+			return Long.valueOf(0L);
+		}
+		if (type == float.class) {
+			return Float.valueOf(0F);
+		}
+		return Double.valueOf(0D);
+	}
+	
+	//只记录调用
+	private class RecordInvocationHandler implements InvocationHandler {
+		
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				if ("equals".equals(method.getName())) {
+					return Boolean.valueOf(proxy == args[0]);
+				}
+				if ("hashCode".equals(method.getName())) {
+					return Integer.valueOf(System.identityHashCode(proxy));
+				}
+				return "RmiBatch recorder[" + methods.size() + "]";
+			}
+			methods.add(method);
+			argsList.add(args);
+			return getDefaultValue(method.getReturnType());
+		}
+	}
+}
\ No newline at end of file
@@ -23,7 +23,10 @@ import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 
+import com.tools.utility.impl.rmi.IMarshalledRemoteObject;
 import com.tools.utility.impl.rmi.IRemoteObjectWrapper;
+import com.tools.utility.impl.rmi.MarshalledRemoteObjectWrapper;
+import com.tools.utility.impl.rmi.NioRemoteObjectWrapper;
 import com.tools.utility.impl.rmi.RemoteInvocationHandler;
 
 /**
@@ -33,10 +36,15 @@ import com.tools.utility.impl.rmi.RemoteInvocationHandler;
  *
  */
 public class RmiClient {
+	
+	//NioRmiServer发布的对象的地址前缀
+	public static final String NIO_SCHEME = "nio://";
+	
 	/**
 	 * 取得远程发布的对象
 	 * 
-	 * @param serviceUrl a name in URL format (without the scheme component)  , rmi://HOST:1199/AccountService
+	 * @param serviceUrl a name in URL format (without the scheme component)  , rmi://HOST:1199/AccountService；
+	 * 			使用NioRmiServer发布的对象为nio://HOST:1199/AccountService
 	 * @param remoteObjectInterface 远程对象接口
      * @return a reference for a remote object
      * @exception NotBoundException if name is not currently bound
@@ -56,11 +64,19 @@ public class RmiClient {
 		if (!remoteObjectInterface.isInterface()) {
 			throw new IllegalArgumentException("Not interface:" + remoteObjectInterface.getName());
 		}
+		if (serviceUrl.trim().startsWith(NIO_SCHEME)) {
+			return getNioRemoteObject(serviceUrl.trim(), remoteObjectInterface);
+		}
 		Remote target = Naming.lookup(serviceUrl);
 		T remoteObject = null;
-		if (target instanceof IRemoteObjectWrapper && remoteObjectInterface != null) {
+		if (target instanceof IMarshalledRemoteObject) {
+			//使用远程对象发布时指定的数据序列化
 			remoteObject = (T)Proxy.newProxyInstance(remoteObjectInterface.getClassLoader(),
-					new Class[]{remoteObjectInterface}, new RemoteInvocationHandler((IRemoteObjectWrapper)target));
+					new Class[]{remoteObjectInterface}, new RemoteInvocationHandler(
+							new MarshalledRemoteObjectWrapper((IMarshalledRemoteObject)target), remoteObjectInterface));
+		} else if (target instanceof IRemoteObjectWrapper && remoteObjectInterface != null) {
+			remoteObject = (T)Proxy.newProxyInstance(remoteObjectInterface.getClassLoader(),
+					new Class[]{remoteObjectInterface}, new RemoteInvocationHandler((IRemoteObjectWrapper)target, remoteObjectInterface));
 		} else {
 			remoteObject = (T)target;
 		}
@@ -96,4 +112,47 @@ public class RmiClient {
 		buf.append("/").append(remoteObjectName);
 		return getRemoteObject(buf.toString(), remoteObjectInterface);
 	}
+	
+	/**
+	 * 开始批量调用，多个调用在一次往返中执行
+	 * 
+	 * @param remoteObject 通过getRemoteObject取得的远程对象
+	 * @return 批量调用
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> RmiBatch<T> batch(T remoteObject) {
+		if (remoteObject == null) {
+			throw new IllegalArgumentException("remoteObject is null!");
+		}
+		if (!Proxy.isProxyClass(remoteObject.getClass())
+				|| !(Proxy.getInvocationHandler(remoteObject) instanceof RemoteInvocationHandler)) {
+			throw new IllegalArgumentException("Not remote object proxy:" + remoteObject.getClass().getName());
+		}
+		RemoteInvocationHandler handler = (RemoteInvocationHandler)Proxy.getInvocationHandler(remoteObject);
+		return new RmiBatch<T>(handler, (Class<T>)remoteObject.getClass().getInterfaces()[0]);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> T getNioRemoteObject(String serviceUrl, Class<T> remoteObjectInterface) throws MalformedURLException, RemoteException, NotBoundException {
+		String hostPortName = serviceUrl.substring(NIO_SCHEME.length());
+		int nameIndex = hostPortName.indexOf('/');
+		int portIndex = hostPortName.lastIndexOf(':', nameIndex);
+		if (nameIndex <= 0 || portIndex <= 0 || nameIndex == hostPortName.length() - 1) {
+			throw new MalformedURLException("Illegal url:" + serviceUrl);
+		}
+		String host = hostPortName.substring(0, portIndex);
+		String remoteObjectName = hostPortName.substring(nameIndex + 1);
+		int port = 0;
+		try {
+			port = Integer.parseInt(hostPortName.substring(portIndex + 1, nameIndex));
+		} catch (NumberFormatException e) {
+			throw new MalformedURLException("Illegal port:" + serviceUrl);
+		}
+		NioRemoteObjectWrapper wrapper = new NioRemoteObjectWrapper(host, port, remoteObjectName);
+		if (!wrapper.isPublished()) {
+			throw new NotBoundException(serviceUrl);
+		}
+		return (T)Proxy.newProxyInstance(remoteObjectInterface.getClassLoader(),
+				new Class[]{remoteObjectInterface}, new RemoteInvocationHandler(wrapper, remoteObjectInterface));
+	}
 }
@@ -34,7 +34,10 @@ import java.util.Map;
 
 import com.tools.logger.api.ILogger;
 import com.tools.logger.api.LoggerFactory;
+import com.tools.utility.impl.rmi.MarshalledRemoteObjectImpl;
+import com.tools.utility.impl.rmi.NioRmiProtocol;
 import com.tools.utility.impl.rmi.RemoteObjectWrapperImpl;
+import com.tools.utility.spi.marshaller.IDataMarshaller;
 
 /**
  * RMI服务端
@@ -339,6 +342,20 @@ public class RmiServer {
 	 * @throws RemoteException
 	 */
 	public void publish(String remoteObjectName, Object remoteObject) throws RemoteException {
+		publish(remoteObjectName, remoteObject, null);
+	}
+
+	/**
+	 *
+	 * 发布rmi对象，参数、结果使用指定的数据序列化，客户端查找远程对象时自动使用相同的数据序列化
+	 *
+	 * @param remoteObjectName
+	 * @param remoteObject 不能是Remote对象
+	 * @param marshaller 数据序列化，需要有公有无参构造方法并且线程安全，为空时使用RMI自己的序列化；
+	 *        要能保持调用数据的类型，支持JdkDataMarshaller、BinaryDataMarshaller，不支持JsonDataMarshaller，异常总是使用JDK序列化
+	 * @throws RemoteException
+	 */
+	public void publish(String remoteObjectName, Object remoteObject, IDataMarshaller marshaller) throws RemoteException {
 		if (remoteObjectName == null || remoteObjectName.trim().length() == 0) {
 			throw new IllegalArgumentException("remoteObjectName is null!");
 		}
@@ -348,7 +365,7 @@ public class RmiServer {
 		if (registry == null) {
 			throw new NullPointerException("registry is null, so remote object publish is impossiable!");
 		}
-		Remote exportedObject = getObjectToPublish(remoteObject);
+		Remote exportedObject = getObjectToPublish(remoteObject, marshaller);
 		remoteObjectMap.put(remoteObjectName, exportedObject);
 
 		if (clientSocketFactory != null) {
@@ -390,10 +407,16 @@ public class RmiServer {
 		}
 	}
 
-	private static Remote getObjectToPublish(Object remoteObject) {
+	private static Remote getObjectToPublish(Object remoteObject, IDataMarshaller marshaller) {
 		if (remoteObject instanceof Remote) {
+			if (marshaller != null) {
+				throw new IllegalArgumentException("Remote object cannot use marshaller:" + remoteObject.getClass().getName());
+			}
 			// conventional RMI service
 			return (Remote) remoteObject;
+		} else if (marshaller != null) {
+			NioRmiProtocol.checkMarshaller(marshaller);
+			return new MarshalledRemoteObjectImpl(remoteObject, marshaller);
 		} else {
 			return new RemoteObjectWrapperImpl(remoteObject);
 		}
@@ -0,0 +1,101 @@
+package test.com;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import com.tools.utility.api.config.Configuration;
+import com.tools.utility.api.config.Value;
+
+/**
+ * 三段式配置增量保存测试：删除、修改value，删除group，删除、添加module后保存，重新解析文件检查
+ */
+public class ConfigurationSaveTest {
+
+	private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+		+ "<application>\n"
+		+ "    <module name=\"m1\">\n"
+		+ "        <group name=\"g1\">\n"
+		+ "            <configValue key=\"a\">1</configValue>\n"
+		+ "            <configValue key=\"b\">2</configValue>\n"
+		+ "        </group>\n"
+		+ "        <group name=\"g2\">\n"
+		+ "            <configValue key=\"c\">3</configValue>\n"
+		+ "        </group>\n"
+		+ "    </module>\n"
+		+ "    <module name=\"m2\">\n"
+		+ "        <group name=\"g1\">\n"
+		+ "            <configValue key=\"d\">4</configValue>\n"
+		+ "        </group>\n"
+		+ "    </module>\n"
+		+ "</application>\n";
+
+	public static void main(String[] args) throws Exception {
+		File file = File.createTempFile("config", ".xml");
+		file.deleteOnExit();
+		write(file, XML);
+
+		Configuration config = new Configuration(file, "UTF-8");
+		config.deleteValue("m1", "g1", "b");
+		config.save();
+		Configuration reloaded = new Configuration(file, "UTF-8");
+		check(reloaded.getConfigValue("m1", "g1", "b") == null, "value b is not deleted");
+		check("1".equals(reloaded.getConfigValue("m1", "g1", "a")), "value a is lost");
+
+		config.deleteGroup("m1", "g2");
+		config.save();
+		reloaded = new Configuration(file, "UTF-8");
+		check(reloaded.getGroup("m1", "g2") == null, "group g2 is not deleted");
+		check(reloaded.getGroup("m1", "g1") != null, "group g1 is lost");
+
+		config.deleteModule("m2");
+		config.save();
+		reloaded = new Configuration(file, "UTF-8");
+		check(reloaded.getModule("m2") == null, "module m2 is not deleted");
+		check(reloaded.getModule("m1") != null, "module m1 is lost");
+
+		config.setValue("m1", "g1", "a", "10");
+		config.save();
+		reloaded = new Configuration(file, "UTF-8");
+		check("10".equals(reloaded.getConfigValue("m1", "g1", "a")), "value a is not changed by Configuration.setValue");
+
+		Value value = config.getGroup("m1", "g1").getValue("a");
+		value.setValue("11");
+		config.save();
+		reloaded = new Configuration(file, "UTF-8");
+		check("11".equals(reloaded.getConfigValue("m1", "g1", "a")), "value a is not changed by Value.setValue");
+
+		config.addModule("m3");
+		config.addValue("m3", "g3", "e", "5");
+		config.save();
+		reloaded = new Configuration(file, "UTF-8");
+		check(reloaded.getModule("m3") != null, "module m3 is not added");
+		check("5".equals(reloaded.getConfigValue("m3", "g3", "e")), "value e is not added");
+		check("11".equals(reloaded.getConfigValue("m1", "g1", "a")), "value a is lost");
+
+		check(config.equals(reloaded), "saved configuration is different: " + reloaded);
+
+		//保存后保留原文件的权限
+		if (file.setExecutable(true)) {
+			config.setValue("m1", "g1", "a", "12");
+			config.save();
+			check(file.canExecute(), "file permissions are not kept");
+		}
+		System.out.println("OK");
+	}
+
+	private static void write(File file, String content) throws Exception {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
\ No newline at end of file
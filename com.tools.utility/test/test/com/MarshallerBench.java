@@ -0,0 +1,147 @@
+package test.com;
+
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.tools.utility.spi.marshaller.DataMarshallerFactory;
+import com.tools.utility.spi.marshaller.IDataMarshaller;
+
+/**
+ * 序列化对比：JDK序列化、Json序列化、二进制序列化<br>
+ * 
+ * 远程调用参数（Json不能还原类型，不参与）和JavaBean两种数据
+ */
+public class MarshallerBench {
+	
+	private static final int COUNT = 100000;
+
+	public static void main(String[] args) throws Exception {
+		Object payload = createPayload();
+		Order order = createOrder();
+		for (int round = 0; round < 3; round++) {
+			StringBuilder buf = new StringBuilder("round " + round + ":");
+			for (String name : new String[]{DataMarshallerFactory.JDK, DataMarshallerFactory.BINARY}) {
+				bench(buf, "args/" + name, DataMarshallerFactory.getDataMarshaller(name), payload, null);
+			}
+			for (String name : new String[]{DataMarshallerFactory.JDK, DataMarshallerFactory.JSON, DataMarshallerFactory.BINARY}) {
+				bench(buf, "bean/" + name, DataMarshallerFactory.getDataMarshaller(name), order, Order.class);
+			}
+			System.out.println(buf);
+		}
+	}
+	
+	private static void bench(StringBuilder buf, String name, IDataMarshaller marshaller, Object data, Class type) throws Exception {
+		int count = DataMarshallerFactory.JSON.equals(name.substring(name.indexOf('/') + 1)) ? COUNT / 10 : COUNT;
+		int size = 0;
+		long begin = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			byte[] bytes = marshaller.marshal(data);
+			size = bytes.length;
+			marshaller.unmarshal(new ByteArrayInputStream(bytes), type);
+		}
+		long time = System.nanoTime() - begin;
+		buf.append(" ").append(name).append("=").append(time / count).append("ns/op,").append(size).append("bytes");
+	}
+	
+	//典型的按方法ID调用的参数
+	private static Object createPayload() {
+		List<Object> items = new ArrayList<Object>();
+		for (int i = 0; i < 10; i++) {
+			Map<String, Object> item = new HashMap<String, Object>();
+			item.put("id", Long.valueOf(i));
+			item.put("name", "item" + i);
+			item.put("price", Double.valueOf(i * 1.5));
+			items.add(item);
+		}
+		return new Object[]{"order-20131001", Integer.valueOf(42), new Date(), items};
+	}
+	
+	private static Order createOrder() {
+		Order order = new Order();
+		order.setNo("order-20131001");
+		order.setQuantity(42);
+		for (int i = 0; i < 10; i++) {
+			Item item = new Item();
+			item.setId(i);
+			item.setName("item" + i);
+			item.setPrice(i * 1.5);
+			order.getItems().add(item);
+		}
+		return order;
+	}
+	
+	public static class Order implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+
+		private String no;
+		
+		private int quantity;
+		
+		private List<Item> items = new ArrayList<Item>();
+
+		public String getNo() {
+			return no;
+		}
+
+		public void setNo(String no) {
+			this.no = no;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public void setQuantity(int quantity) {
+			this.quantity = quantity;
+		}
+
+		public List<Item> getItems() {
+			return items;
+		}
+
+		public void setItems(List<Item> items) {
+			this.items = items;
+		}
+	}
+	
+	public static class Item implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+
+		private long id;
+		
+		private String name;
+		
+		private double price;
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public double getPrice() {
+			return price;
+		}
+
+		public void setPrice(double price) {
+			this.price = price;
+		}
+	}
+}
\ No newline at end of file
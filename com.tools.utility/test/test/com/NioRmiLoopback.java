@@ -0,0 +1,108 @@
+package test.com;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.tools.utility.spi.rmi.NioRmiServer;
+import com.tools.utility.spi.rmi.RmiBatch;
+import com.tools.utility.spi.rmi.RmiClient;
+
+/**
+ * NIO远程调用回环测试：多个线程通过同一个连接并发调用
+ */
+public class NioRmiLoopback {
+	
+	private static final int PORT = 19099;
+	
+	public interface IEcho {
+		String echo(String s);
+		
+		int add(int a, int b);
+		
+		void fail(String message);
+	}
+	
+	public static class Echo implements IEcho {
+		public String echo(String s) {
+			return s;
+		}
+		
+		public int add(int a, int b) {
+			return a + b;
+		}
+		
+		public void fail(String message) {
+			throw new IllegalStateException(message);
+		}
+	}
+
+	public static void main(String[] args) throws Throwable {
+		NioRmiServer server = NioRmiServer.getNioRmiServer("127.0.0.1", PORT);
+		server.start();
+		server.publish("echo", new Echo());
+		try {
+			final IEcho echo = RmiClient.getRemoteObject("nio://127.0.0.1:" + PORT + "/echo", IEcho.class);
+			System.out.println(echo.echo("hello") + " " + echo.add(1, 2));
+			try {
+				echo.fail("expected");
+			} catch (Throwable t) {
+				System.out.println("remote exception: " + t);
+			}
+			
+			ExecutorService pool = Executors.newFixedThreadPool(32);
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			long begin = System.nanoTime();
+			for (int i = 0; i < 32; i++) {
+				final int base = i;
+				futures.add(pool.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						int errors = 0;
+						for (int j = 0; j < 2000; j++) {
+							if (echo.add(base, j) != base + j) {
+								errors++;
+							}
+						}
+						return errors;
+					}
+				}));
+			}
+			int errors = 0;
+			for (Future<Integer> future : futures) {
+				errors += future.get();
+			}
+			pool.shutdown();
+			System.out.println("64000 calls, errors: " + errors + ", " + (System.nanoTime() - begin) / 1000000 + "ms");
+			
+			//批量调用：每批100个调用一次往返
+			RmiBatch<IEcho> batch = RmiClient.batch(echo);
+			errors = 0;
+			begin = System.nanoTime();
+			for (int i = 0; i < 640; i++) {
+				for (int j = 0; j < 100; j++) {
+					batch.getProxy().add(i, j);
+				}
+				Object[] results = batch.execute();
+				for (int j = 0; j < 100; j++) {
+					if (((Integer)results[j]).intValue() != i + j) {
+						errors++;
+					}
+				}
+			}
+			System.out.println("64000 batched calls, errors: " + errors + ", " + (System.nanoTime() - begin) / 1000000 + "ms");
+			batch.getProxy().echo("a");
+			batch.getProxy().fail("in batch");
+			batch.getProxy().echo("b");
+			try {
+				batch.execute();
+			} catch (IllegalStateException e) {
+				System.out.println("batch exception: " + e.getMessage() + ", " + batch.getResult(0) + " " + batch.getResult(2));
+			}
+		} finally {
+			server.stop();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package test.com;
+
+import java.lang.reflect.Field;
+
+import com.tools.utility.api.ReflectUtil;
+import com.tools.utility.api.ReflectUtil.FieldAccessor;
+
+/**
+ * 字段访问性能对比：只比较访问本身，Field、访问器都在循环外取得；
+ * ReflectUtil一行是每次按名称查找的完整路径
+ */
+public class ReflectBench {
+	
+	private static final int COUNT = 2000000;
+
+	public static void main(String[] args) throws Exception {
+		Bean bean = new Bean();
+		Field field = Bean.class.getDeclaredField("value");
+		field.setAccessible(true);
+		FieldAccessor accessor = ReflectUtil.accessor(Bean.class, "value");
+		for (int round = 0; round < 3; round++) {
+			long begin = System.nanoTime();
+			for (int i = 0; i < COUNT; i++) {
+				field.set(bean, field.get(bean));
+			}
+			long reflect = System.nanoTime() - begin;
+			
+			begin = System.nanoTime();
+			for (int i = 0; i < COUNT; i++) {
+				accessor.set(bean, accessor.get(bean));
+			}
+			long cached = System.nanoTime() - begin;
+			
+			begin = System.nanoTime();
+			for (int i = 0; i < COUNT; i++) {
+				ReflectUtil.setValue(bean, "value", ReflectUtil.getFieldValue(Bean.class, "value", false, bean));
+			}
+			long util = System.nanoTime() - begin;
+			System.out.println("round " + round + ": reflect=" + reflect / COUNT + "ns/op, accessor=" + cached / COUNT + "ns/op, ReflectUtil=" + util / COUNT + "ns/op");
+		}
+	}
+	
+	private static class Bean {
+		private String value = "value";
+	}
+}